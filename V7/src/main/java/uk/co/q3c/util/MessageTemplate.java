@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pattern in the form accepted by {@link MessageFormat#format(String, Object...)}, parsed once into literal text and
+ * argument indexes so that it can be formatted any number of times without scanning the pattern again. The rules are
+ * those of {@link MessageFormat}: placeholders are numbered from zero and may appear in any order, "\{" escapes a
+ * placeholder, and if the pattern cannot be parsed, or the number of arguments does not match the number of
+ * placeholders, the pattern is returned unchanged.
+ * <p>
+ * Instances are immutable and thread safe. Formatting uses a buffer held per thread, so the only object created for
+ * each call is the resulting String.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public final class MessageTemplate {
+
+	private static Logger log = LoggerFactory.getLogger(MessageTemplate.class);
+	/**
+	 * A thread's buffer is discarded, rather than kept, if a message makes it grow beyond this
+	 */
+	private static final int MAX_RETAINED_BUFFER = 4096;
+	private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
+		}
+	};
+
+	private final String pattern;
+	/**
+	 * literals[i] precedes the argument at indexes[i]; the final literal follows the last argument
+	 */
+	private final String[] literals;
+	private final int[] indexes;
+	private final boolean valid;
+
+	private MessageTemplate(String pattern, String[] literals, int[] indexes, boolean valid) {
+		super();
+		this.pattern = pattern;
+		this.literals = literals;
+		this.indexes = indexes;
+		this.valid = valid;
+	}
+
+	public static MessageTemplate compile(String pattern) {
+		List<String> literals = new ArrayList<>();
+		List<Integer> indexes = new ArrayList<>();
+		try {
+			parse(pattern, literals, indexes);
+		} catch (RuntimeException e) {
+			return new MessageTemplate(pattern, new String[] { pattern }, new int[0], false);
+		}
+		int[] ix = new int[indexes.size()];
+		for (int i = 0; i < ix.length; i++) {
+			ix[i] = indexes.get(i);
+		}
+		return new MessageTemplate(pattern, literals.toArray(new String[literals.size()]), ix, true);
+	}
+
+	/**
+	 * Splits the pattern at each placeholder. An unclosed or non-numeric placeholder throws an exception
+	 */
+	private static void parse(String pattern, List<String> literals, List<Integer> indexes) {
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < pattern.length()) {
+			char c = pattern.charAt(i);
+			if (c == '\\') {
+				// an escaped '{' is kept along with the character after it, anything else escaped is dropped
+				i++;
+				c = pattern.charAt(i);
+				if (c == '{') {
+					literal.append('{');
+					i++;
+					c = pattern.charAt(i);
+					if (c != '{') {
+						literal.append(c);
+					}
+				}
+			} else if (c != '{') {
+				literal.append(c);
+			}
+			if (c == '{') {
+				int close = pattern.indexOf('}', i + 1);
+				if (close < 0) {
+					throw new IllegalArgumentException("unclosed placeholder");
+				}
+				indexes.add(Integer.valueOf(pattern.substring(i + 1, close)));
+				literals.add(literal.toString());
+				literal.setLength(0);
+				i = close;
+			}
+			i++;
+		}
+		literals.add(literal.toString());
+	}
+
+	/**
+	 * Returns the pattern with its placeholders replaced by {@code arguments}, or the unchanged pattern if the
+	 * arguments do not match the placeholders
+	 * 
+	 * @param arguments
+	 * @return
+	 */
+	public String format(Object... arguments) {
+		if (!matches(arguments)) {
+			return pattern;
+		}
+		StringBuilder buf = buffers.get();
+		buf.setLength(0);
+		appendTo(buf, arguments);
+		String result = buf.toString();
+		if (buf.capacity() > MAX_RETAINED_BUFFER) {
+			buffers.remove();
+		}
+		return result;
+	}
+
+	/**
+	 * As {@link #format(Object...)}, but appends the result to {@code buf}
+	 * 
+	 * @param buf
+	 * @param arguments
+	 * @return
+	 */
+	public StringBuilder formatTo(StringBuilder buf, Object... arguments) {
+		if (matches(arguments)) {
+			appendTo(buf, arguments);
+		} else {
+			buf.append(pattern);
+		}
+		return buf;
+	}
+
+	private boolean matches(Object[] arguments) {
+		if (!valid) {
+			return false;
+		}
+		int count = (arguments == null) ? 0 : arguments.length;
+		if (count != indexes.length) {
+			log.warn(
+					"Message pattern and arguments do not match, there are {} parameters in the pattern, and {} arguments. The pattern is: '{}'",
+					new Object[] { indexes.length, count, pattern });
+			return false;
+		}
+		for (int index : indexes) {
+			if (index >= count) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendTo(StringBuilder buf, Object[] arguments) {
+		for (int i = 0; i < indexes.length; i++) {
+			buf.append(literals[i]);
+			appendArgument(buf, arguments[indexes[i]]);
+		}
+		buf.append(literals[indexes.length]);
+	}
+
+	/**
+	 * Arrays are shown by content, and an argument whose toString() fails does not prevent the message being formatted
+	 */
+	private void appendArgument(StringBuilder buf, Object argument) {
+		if (argument == null) {
+			buf.append("null");
+			return;
+		}
+		try {
+			if (argument.getClass().isArray()) {
+				String s = Arrays.deepToString(new Object[] { argument });
+				buf.append(s, 1, s.length() - 1);
+			} else {
+				buf.append(argument.toString());
+			}
+		} catch (RuntimeException e) {
+			log.warn("Failed toString() on an argument of {}", pattern, e);
+			buf.append("[FAILED toString()]");
+		}
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public int getParameterCount() {
+		return indexes.length;
+	}
+
+	/**
+	 * False if the pattern could not be parsed, in which case {@link #format(Object...)} always returns the pattern
+	 * 
+	 * @return
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+}
@@ -15,5 +15,12 @@ package uk.co.q3c.v7.base.config;
 public class ConfigKeys {
 
 	public static final String SITEMAP_SOURCES_KEY = "sitemap.sources";
+	public static final String UISCOPE_RETENTION_KEY = "uiscope.retention";
+	public static final String UISCOPE_SWEEP_INTERVAL_KEY = "uiscope.sweep.interval";
+	public static final String UISCOPE_ORPHAN_TIMEOUT_KEY = "uiscope.orphan.timeout";
+	public static final String TASK_POOLS_KEY = "tasks.pools";
+	public static final String TASK_QUEUE_CAPACITY_KEY = "tasks.queue.capacity";
+	public static final String TASK_SESSION_LIMIT_KEY = "tasks.session.limit";
+	public static final String SESSION_SWEEP_INTERVAL_KEY = "session.sweep.interval";
 
 }
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import uk.co.q3c.v7.base.config.ApplicationConfigurationModule;
 import uk.co.q3c.v7.base.guice.threadscope.ThreadScopeModule;
+import uk.co.q3c.v7.base.guice.uiscope.AttachedUIScopeModule;
 import uk.co.q3c.v7.base.guice.uiscope.UIScopeModule;
 import uk.co.q3c.v7.base.navigate.sitemap.DefaultStandardPagesModule;
 import uk.co.q3c.v7.base.navigate.sitemap.Sitemap;
@@ -36,6 +37,7 @@ import uk.co.q3c.v7.base.services.ServicesMonitor;
 import uk.co.q3c.v7.base.services.ServicesMonitorModule;
 import uk.co.q3c.v7.base.shiro.DefaultShiroModule;
 import uk.co.q3c.v7.base.shiro.ShiroVaadinModule;
+import uk.co.q3c.v7.base.task.BackgroundTaskModule;
 import uk.co.q3c.v7.base.useropt.DefaultUserOptionModule;
 import uk.co.q3c.v7.base.view.StandardViewModule;
 import uk.co.q3c.v7.base.view.component.DefaultComponentModule;
@@ -94,9 +96,10 @@ public abstract class BaseGuiceServletInjector extends GuiceServletContextListen
 		baseModules.add(new I18NModule());
 		baseModules.add(new ApplicationConfigurationModule());
 		baseModules.add(new SitemapServiceModule());
+		baseModules.add(new BackgroundTaskModule());
 
 		baseModules.add(new ThreadScopeModule());
-		baseModules.add(new UIScopeModule());
+		baseModules.add(uiScopeModule());
 		baseModules.add(new ServicesMonitorModule());
 
 		baseModules.add(shiroModule(ctx.get()));
@@ -126,6 +129,16 @@ public abstract class BaseGuiceServletInjector extends GuiceServletContextListen
 	protected void addSitemapModules(List<Module> baseModules) {
 	}
 
+	/**
+	 * Override this to use a different {@link UIScopeModule}, for example {@link AttachedUIScopeModule} to store
+	 * UIScoped objects with their UI
+	 * 
+	 * @return
+	 */
+	protected Module uiScopeModule() {
+		return new UIScopeModule();
+	}
+
 	protected Module componentModule() {
 		return new DefaultComponentModule();
 	}
@@ -12,12 +12,15 @@
  */
 package uk.co.q3c.v7.base.guice;
 
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemoFilter;
+
 import com.google.inject.servlet.ServletModule;
 
 public class BaseModule extends ServletModule {
 
 	@Override
 	protected void configureServlets() {
+		filter("/*").through(RequestMemoFilter.class);
 		serve("/*").with(BaseServlet.class);
 		// removed when switching to non-web setup to enable push support
 		// ShiroWebModule.bindGuiceFilter(binder());
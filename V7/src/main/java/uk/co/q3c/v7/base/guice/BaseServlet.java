@@ -12,9 +12,28 @@
  */
 package uk.co.q3c.v7.base.guice;
 
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemo;
+import uk.co.q3c.v7.base.guice.threadscope.ScopeContext;
+import uk.co.q3c.v7.base.guice.uiscope.UIScope;
+import uk.co.q3c.v7.base.guice.uiscope.UIScopeSweeper;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.base.shiro.LoginAttemptLog;
+import uk.co.q3c.v7.base.shiro.SecurityAuditLog;
+import uk.co.q3c.v7.base.shiro.SessionSweeper;
+import uk.co.q3c.v7.base.task.BackgroundTaskService;
+
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.vaadin.server.ServiceException;
+import com.vaadin.server.SessionDestroyEvent;
+import com.vaadin.server.SessionDestroyListener;
 import com.vaadin.server.SessionInitEvent;
 import com.vaadin.server.SessionInitListener;
 import com.vaadin.server.UIProvider;
@@ -23,7 +42,7 @@ import com.vaadin.server.VaadinServlet;
 @Singleton
 // @WebServlet(name = "V7 Application", urlPatterns = "/*"), initParams = { @WebInitParam(name = "widgetset",
 // value = "uk.co.q3c.v7.demo.widgetset.V7demoWidgetset") })
-public class BaseServlet extends VaadinServlet implements SessionInitListener {
+public class BaseServlet extends VaadinServlet implements SessionInitListener, SessionDestroyListener {
 
 	/**
 	 * Cannot use constructor injection. Container expects servlet to have no-arg public constructor
@@ -31,9 +50,87 @@ public class BaseServlet extends VaadinServlet implements SessionInitListener {
 	@Inject
 	private UIProvider basicProvider;
 
+	@Inject
+	@Named("UIScope")
+	private UIScope uiScope;
+
+	@Inject
+	private UIScopeSweeper uiScopeSweeper;
+
+	@Inject
+	private SessionSweeper sessionSweeper;
+
+	@Inject
+	private LoginAttemptLog loginAttemptLog;
+
+	@Inject
+	private SecurityAuditLog securityAuditLog;
+
+	@Inject
+	private BackgroundTaskService taskService;
+
+	/**
+	 * Starts the {@link UIScopeSweeper}, {@link SessionSweeper} and {@link BackgroundTaskService}, and the
+	 * {@link LoginAttemptLog} and {@link SecurityAuditLog} if they are {@link Service}s
+	 */
 	@Override
-	protected void servletInitialized() {
+	protected void servletInitialized() throws ServletException {
 		getService().addSessionInitListener(this);
+		getService().addSessionDestroyListener(this);
+		start(uiScopeSweeper);
+		start(sessionSweeper);
+		start(loginAttemptLog);
+		start(securityAuditLog);
+		// last, so that the tasks it runs, logins for example, find the others ready
+		start(taskService);
+	}
+
+	private void start(Object candidate) throws ServletException {
+		if (!(candidate instanceof Service)) {
+			return;
+		}
+		Service service = (Service) candidate;
+		try {
+			service.start();
+		} catch (Exception e) {
+			throw new ServletException("Unable to start " + service.getName(), e);
+		}
+	}
+
+	/**
+	 * Stops the services started by {@link #servletInitialized()}
+	 */
+	@Override
+	public void destroy() {
+		stop(taskService);
+		stop(securityAuditLog);
+		stop(loginAttemptLog);
+		stop(sessionSweeper);
+		stop(uiScopeSweeper);
+		super.destroy();
+	}
+
+	private void stop(Object candidate) {
+		if (candidate instanceof Service) {
+			((Service) candidate).stop();
+		}
+	}
+
+	/**
+	 * Memoises values for the duration of the request (see {@link RequestMemo}), and clears all thread bound context
+	 * at the end of each request, so that nothing is carried over to the next request handled by the same container
+	 * thread
+	 */
+	@Override
+	protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		RequestMemo.begin();
+		try {
+			super.service(request, response);
+		} finally {
+			RequestMemo.end();
+			ScopeContext.reset();
+		}
 	}
 
 	@Override
@@ -41,4 +138,12 @@ public class BaseServlet extends VaadinServlet implements SessionInitListener {
 		event.getSession().addUIProvider(basicProvider);
 	}
 
+	/**
+	 * Releases the UI scopes of any UIs which were not detached before their session was destroyed
+	 */
+	@Override
+	public void sessionDestroy(SessionDestroyEvent event) {
+		uiScope.releaseScopes(event.getSession());
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.requestscope;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoises values for the duration of a single request, so that components which need the same value during a
+ * request (the Subject, page authorisation, a node's URI and so on) share the work of obtaining it without needing to
+ * know about each other. A request is bounded by {@link #begin()} and {@link #end()}, called by
+ * {@link RequestMemoFilter} and {@link uk.co.q3c.v7.base.guice.BaseServlet}. Calls may be nested, and the values are
+ * only cleared by the outermost {@link #end()}.
+ * <p>
+ * Outside of a request, for example in a background thread, nothing is memoised: {@link #get(Object)} always returns
+ * null and {@link #put(Object, Object)} does nothing, so callers always obtain a fresh value.
+ * <p>
+ * A request is handled by a single thread, so values are held per thread and no synchronisation is needed. Keys are
+ * usually built with {@link #key(Object...)}, and should include the owning class so that keys from different
+ * components cannot clash.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class RequestMemo {
+
+	private static class Memo {
+		private final Map<Object, Object> values = new HashMap<>();
+		private int depth;
+	}
+
+	private static final ThreadLocal<Memo> MEMO = new ThreadLocal<>();
+
+	private RequestMemo() {
+	}
+
+	/**
+	 * Starts (or joins) the request for the current thread
+	 */
+	public static void begin() {
+		Memo memo = MEMO.get();
+		if (memo == null) {
+			memo = new Memo();
+			MEMO.set(memo);
+		}
+		memo.depth++;
+	}
+
+	/**
+	 * Ends the request for the current thread, clearing all memoised values if this is the outermost call
+	 */
+	public static void end() {
+		Memo memo = MEMO.get();
+		if (memo == null) {
+			return;
+		}
+		memo.depth--;
+		if (memo.depth <= 0) {
+			MEMO.remove();
+		}
+	}
+
+	public static boolean isActive() {
+		return MEMO.get() != null;
+	}
+
+	/**
+	 * Returns the value memoised for {@code key}, or null if there is none, or no request is active
+	 * 
+	 * @param key
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Object key) {
+		Memo memo = MEMO.get();
+		return (memo == null) ? null : (T) memo.values.get(key);
+	}
+
+	/**
+	 * Memoises {@code value} for the rest of the request. Does nothing if no request is active
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public static void put(Object key, Object value) {
+		Memo memo = MEMO.get();
+		if (memo != null) {
+			memo.values.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes a memoised value, for use when something has happened during the request which makes it invalid
+	 * 
+	 * @param key
+	 */
+	public static void remove(Object key) {
+		Memo memo = MEMO.get();
+		if (memo != null) {
+			memo.values.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all memoised values, but leaves the request active
+	 */
+	public static void clear() {
+		Memo memo = MEMO.get();
+		if (memo != null) {
+			memo.values.clear();
+		}
+	}
+
+	/**
+	 * Returns a key composed of {@code parts}, which is equal to any other key composed of equal parts
+	 * 
+	 * @param parts
+	 * @return
+	 */
+	public static List<Object> key(Object... parts) {
+		return Arrays.asList(parts);
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.requestscope;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.google.inject.Singleton;
+
+/**
+ * Bounds a {@link RequestMemo} request around the rest of the filter chain. {@link uk.co.q3c.v7.base.guice.BaseServlet}
+ * does the same, so that memoisation still applies where the servlet is deployed without the GuiceFilter
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class RequestMemoFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
+			ServletException {
+		RequestMemo.begin();
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			RequestMemo.end();
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.threadscope;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.shiro.util.ThreadContext;
+
+import uk.co.q3c.v7.base.guice.threadscope.ThreadCache.Cache;
+import uk.co.q3c.v7.base.guice.uiscope.UIKey;
+
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * A snapshot of the thread bound context of the current thread, which can be re-entered on another thread. It
+ * captures:
+ * <ul>
+ * <li>the {@link ThreadScoped} cache, so the other thread receives the same instances rather than creating new ones
+ * <li>the current {@link VaadinSession}, {@link UI} and {@link UIKey}, and no other Vaadin {@link CurrentInstance}
+ * values. The request and response in particular are recycled by the container once the request is complete, so
+ * they are never passed on
+ * <li>the Shiro thread context, which holds the Subject and SecurityManager
+ * </ul>
+ * Use:
+ * 
+ * <pre>
+ * ScopeContext context = ScopeContext.capture();
+ * ... then on another thread
+ * ScopeContext previous = context.attach();
+ * try {
+ * 	// do work
+ * } finally {
+ * 	context.detach(previous);
+ * }
+ * </pre>
+ * 
+ * {@link #detach(ScopeContext)} returns the thread to exactly the state it was in before, so that a pooled thread
+ * does not carry one task's context into the next.
+ * <p>
+ * The VaadinSession is current on the other thread, but its lock is not held there. Work which reads or changes the
+ * session or UI must do so through {@link UI#access(Runnable)} or {@link VaadinSession#access(Runnable)}. {@link #wrap(Runnable)}, {@link #wrap(Callable)} and
+ * {@link ScopeContextExecutorService} do all this for you.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class ScopeContext {
+
+	private static final ThreadCache threadCache = new ThreadCache();
+
+	private final Cache cache;
+	private final Map<Class<?>, CurrentInstance> vaadinInstances;
+	private final Map<Object, Object> shiroResources;
+
+	private ScopeContext(Cache cache, Map<Class<?>, CurrentInstance> vaadinInstances,
+			Map<Object, Object> shiroResources) {
+		super();
+		this.cache = cache;
+		this.vaadinInstances = vaadinInstances;
+		this.shiroResources = shiroResources;
+	}
+
+	/**
+	 * Captures the context of the current thread. A {@link ThreadScoped} cache is created if the thread does not yet
+	 * have one, so that anything created by the threads which share this context is shared with the current thread as
+	 * well.
+	 * 
+	 * @return
+	 */
+	public static ScopeContext capture() {
+		return new ScopeContext(threadCache.getCache(), propagatedInstances(), ThreadContext.getResources());
+	}
+
+	/**
+	 * Returns the Vaadin current instances which may be used on another thread, restored with
+	 * {@link CurrentInstance#restoreInstances(Map)}
+	 */
+	private static Map<Class<?>, CurrentInstance> propagatedInstances() {
+		VaadinSession session = VaadinSession.getCurrent();
+		UI ui = UI.getCurrent();
+		UIKey uiKey = CurrentInstance.get(UIKey.class);
+		// set the values to be propagated on this thread, take the snapshot, then put back what was here
+		Map<Class<?>, CurrentInstance> all = CurrentInstance.getInstances(false);
+		CurrentInstance.clearAll();
+		CurrentInstance.set(VaadinSession.class, session);
+		CurrentInstance.set(UI.class, ui);
+		CurrentInstance.set(UIKey.class, uiKey);
+		Map<Class<?>, CurrentInstance> propagated = new HashMap<>(CurrentInstance.getInstances(false));
+		CurrentInstance.clearAll();
+		CurrentInstance.restoreInstances(all);
+		return propagated;
+	}
+
+	/**
+	 * Captures the context of the current thread without creating anything, for use when restoring it later
+	 * 
+	 * @return
+	 */
+	private static ScopeContext peek() {
+		return new ScopeContext(threadCache.peekCache(), CurrentInstance.getInstances(false),
+				ThreadContext.getResources());
+	}
+
+	/**
+	 * Makes this context the context of the current thread, replacing anything already there.
+	 * 
+	 * @return the context which was replaced, which must be passed to {@link #detach(ScopeContext)} when the work is
+	 *         complete
+	 */
+	public ScopeContext attach() {
+		ScopeContext previous = peek();
+		apply(this);
+		return previous;
+	}
+
+	/**
+	 * Restores the context the current thread had before {@link #attach()} was called
+	 * 
+	 * @param previous
+	 *            the value returned by {@link #attach()}
+	 */
+	public void detach(ScopeContext previous) {
+		apply(previous);
+	}
+
+	private static void apply(ScopeContext context) {
+		threadCache.setCache(context.cache);
+		CurrentInstance.clearAll();
+		if (context.vaadinInstances != null) {
+			CurrentInstance.restoreInstances(context.vaadinInstances);
+		}
+		ThreadContext.remove();
+		if (context.shiroResources != null) {
+			ThreadContext.setResources(context.shiroResources);
+		}
+	}
+
+	/**
+	 * Returns a Runnable which runs {@code task} within this context
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public Runnable wrap(final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				ScopeContext previous = attach();
+				try {
+					task.run();
+				} finally {
+					detach(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a Callable which calls {@code task} within this context
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public <T> Callable<T> wrap(final Callable<T> task) {
+		return new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				ScopeContext previous = attach();
+				try {
+					return task.call();
+				} finally {
+					detach(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Removes all thread bound context from the current thread. Called at the end of each request by
+	 * {@link uk.co.q3c.v7.base.guice.BaseServlet}, and may be used at the end of any other unit of work on a thread
+	 * which will be reused.
+	 */
+	public static void reset() {
+		threadCache.reset();
+		CurrentInstance.clearAll();
+		ThreadContext.remove();
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.threadscope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Wraps an {@link ExecutorService} so that each task runs within the {@link ScopeContext} of the thread which submitted
+ * it. {@link ThreadScoped} instances, the current UIKey, VaadinSession and UI, and the Shiro Subject are therefore
+ * available to the task, and the executor's threads are returned to their previous state when each task completes.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class ScopeContextExecutorService implements ExecutorService {
+
+	private final ExecutorService delegate;
+
+	public ScopeContextExecutorService(ExecutorService delegate) {
+		super();
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		delegate.execute(ScopeContext.capture().wrap(command));
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		return delegate.submit(ScopeContext.capture().wrap(task));
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result) {
+		return delegate.submit(ScopeContext.capture().wrap(task), result);
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		return delegate.submit(ScopeContext.capture().wrap(task));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return delegate.invokeAll(wrapAll(tasks));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		return delegate.invokeAny(wrapAll(tasks));
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+	}
+
+	private <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+		ScopeContext context = ScopeContext.capture();
+		List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			wrapped.add(context.wrap(task));
+		}
+		return wrapped;
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+}
@@ -1,7 +1,7 @@
 package uk.co.q3c.v7.base.guice.threadscope;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.inject.Key;
 
@@ -15,21 +15,44 @@ import com.google.inject.Key;
  * @see CustomScopes#THREAD
  */
 public class ThreadCache {
-	// use lazy init to avoid memory overhead when not using the scope?
-	private static final ThreadLocal<Cache> THREAD_LOCAL = new ThreadLocal<Cache>() {
-		@Override
-		protected Cache initialValue() {
-			return new Cache();
-		}
-	};
+	// lazy init, so that a thread which has never used the scope can be distinguished from one which has
+	private static final ThreadLocal<Cache> THREAD_LOCAL = new ThreadLocal<Cache>();
 
 	public ThreadCache() {
 	}
 
 	public Cache getCache() {
+		Cache cache = THREAD_LOCAL.get();
+		if (cache == null) {
+			cache = new Cache();
+			THREAD_LOCAL.set(cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the cache for the current thread without creating one, so may return null
+	 * 
+	 * @return
+	 */
+	public Cache peekCache() {
 		return THREAD_LOCAL.get();
 	}
 
+	/**
+	 * Makes {@code cache} the cache for the current thread, or removes the current thread's cache if {@code cache} is
+	 * null. Used by {@link ScopeContext} to carry a cache to another thread, and to restore the original afterwards.
+	 * 
+	 * @param cache
+	 */
+	public void setCache(Cache cache) {
+		if (cache == null) {
+			THREAD_LOCAL.remove();
+		} else {
+			THREAD_LOCAL.set(cache);
+		}
+	}
+
 	/**
 	 * Execute this if you plan to reuse the same thread, e.g. in a servlet environment threads might get reused.
 	 * Preferably, call this method in a finally block to make sure that it executes, so that you avoid possible memory
@@ -40,10 +63,11 @@ public class ThreadCache {
 	}
 
 	/**
-	 * Cache class for type capture and minimizing ThreadLocal lookups.
+	 * Cache class for type capture and minimizing ThreadLocal lookups. A cache may be shared by more than one thread
+	 * when it has been propagated by a {@link ScopeContext}, so it is thread safe.
 	 */
 	public static class Cache {
-		private final Map<Key<?>, Object> map = new HashMap<Key<?>, Object>();
+		private final ConcurrentMap<Key<?>, Object> map = new ConcurrentHashMap<Key<?>, Object>();
 
 		public Cache() {
 		}
@@ -58,5 +82,22 @@ public class ThreadCache {
 		public <T> void add(Key<T> key, T value) {
 			map.put(key, value);
 		}
+
+		/**
+		 * Adds {@code value} unless there is already a value for {@code key}, and returns whichever is then held.
+		 * 
+		 * @param key
+		 * @param value
+		 * @return
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T addIfAbsent(Key<T> key, T value) {
+			T existing = (T) map.putIfAbsent(key, value);
+			return (existing == null) ? value : existing;
+		}
+
+		public int size() {
+			return map.size();
+		}
 	}
 }
@@ -25,7 +25,10 @@ public class ThreadScope implements Scope {
 				T value = cache.get(key);
 				if (value == null) {
 					value = creator.get();
-					cache.add(key, value);
+					// a null cannot be held, and a cache shared through a ScopeContext may have been filled meanwhile
+					if (value != null) {
+						value = cache.addIfAbsent(key, value);
+					}
 				}
 				return value;
 			}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * An alternative to {@link UIScope}, which keeps each UI's scoped objects in a {@link UIScopeStore} held by the
+ * {@link ScopedUI} itself, rather than in a global cache. There is therefore nothing to release when a UI is detached,
+ * nothing to leak if it never is, and the scoped objects are serialized along with the UI.
+ * <p>
+ * The store is normally taken directly from the current UI, so a lookup is a field read and a map probe. While a UI
+ * is being constructed it is not yet available from {@link UI#getCurrent()}, so the
+ * {@link uk.co.q3c.v7.base.ui.ScopedUIProvider} clears the current UI and places the new UI's store in
+ * {@link CurrentInstance} for the duration of the construction.
+ * <p>
+ * To use this scope, use {@link AttachedUIScopeModule} in place of {@link UIScopeModule}.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class AttachedUIScope implements Scope {
+
+	private static Logger log = LoggerFactory.getLogger(AttachedUIScope.class);
+
+	@Override
+	public <T> Provider<T> scope(final Key<T> key, final Provider<T> unscoped) {
+		final String keyName = key.toString();
+		return new Provider<T>() {
+			@Override
+			public T get() {
+				UIScopeStore store = currentStore();
+
+				@SuppressWarnings("unchecked")
+				T current = (T) store.get(keyName);
+				if (current != null) {
+					return current;
+				}
+
+				// only this UI's store is locked, and the check repeated in case another thread got there first
+				synchronized (store) {
+					@SuppressWarnings("unchecked")
+					T existing = (T) store.get(keyName);
+					if (existing != null) {
+						return existing;
+					}
+					current = unscoped.get();
+					if (current == null) {
+						return null;
+					}
+					store.put(keyName, current);
+				}
+				if (log.isDebugEnabled()) {
+					log.debug("new instance of {} created for {}", current.getClass().getSimpleName(),
+							store.getUiKey());
+				}
+				return current;
+			}
+
+			@Override
+			public String toString() {
+				return unscoped + "[AttachedUIScope]";
+			}
+		};
+	}
+
+	private UIScopeStore currentStore() {
+		// the usual case, a field read from the current UI
+		UI ui = UI.getCurrent();
+		if (ui instanceof ScopedUI) {
+			UIScopeStore store = ((ScopedUI) ui).getScopeStore();
+			if (store != null) {
+				return store;
+			}
+		}
+		// a UI is under construction, and the provider has cleared the current UI while it is
+		UIScopeStore store = CurrentInstance.get(UIScopeStore.class);
+		if (store != null) {
+			return store;
+		}
+		throw new UIScopeException("There is no UIScopeStore available. UIScoped objects can only be provided during the construction of a ScopedUI by a ScopedUIProvider, or while a ScopedUI is current");
+	}
+
+	@Override
+	public String toString() {
+		return "AttachedUIScope";
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import com.google.inject.Scope;
+
+/**
+ * Use in place of {@link UIScopeModule} to store {@link UIScoped} objects with their UI, using
+ * {@link AttachedUIScope}. The global {@link UIScope} is still bound, so that code which refers to it continues to
+ * work, but it will remain empty: the {@link uk.co.q3c.v7.base.ui.ScopedUIProvider} does not start a scope in it, and
+ * the {@link uk.co.q3c.v7.base.ui.ScopedUI} does not bind its session to it, when this scope is in use.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class AttachedUIScopeModule extends UIScopeModule {
+
+	@Override
+	protected Scope uiScopedScope() {
+		return new AttachedUIScope();
+	}
+
+}
@@ -12,6 +12,8 @@
  */
 package uk.co.q3c.v7.base.guice.uiscope;
 
+import java.io.Serializable;
+
 /**
  * This class is entirely passive - it is a surrogate for the UI itself during the IoC process in support of
  * {@link UIScoped}. <br>
@@ -22,28 +24,124 @@ package uk.co.q3c.v7.base.guice.uiscope;
  * by a {@link UIKey}, which is available from the start of UI construction. The UI itself, and any UIScoped injections
  * are then linked by that {@link UIKey} instance.<br>
  * <br>
- * The counter value is set by the {@link UIKeyProvider}
+ * A key is made up of a {@link #getNode()} value, which identifies the JVM which generated it (a node id combined with
+ * the start up epoch of that JVM), and a {@link #getSequence()} value, which is unique within that JVM. Keys are
+ * therefore unique across a cluster and across restarts. Both values are set by the {@link UIKeyProvider}. <br>
+ * <br>
+ * The key is used for every {@link UIScope} lookup, so it is kept to two longs with a hash code calculated once. It
+ * serializes to just those two values, and {@link #toCompactString()} / {@link #fromCompactString(String)} provide a
+ * short String form.
  */
-public class UIKey implements Comparable<UIKey> {
-	private final int counter;
+public class UIKey implements Comparable<UIKey>, Serializable {
+	private static final long serialVersionUID = 1L;
+	private final long node;
+	private final long sequence;
+	private transient int hash;
 
-	public UIKey(int counter) {
+	public UIKey(long node, long sequence) {
 		super();
-		this.counter = counter;
+		this.node = node;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Creates a key with a node value of 0. Intended mainly for testing, and for keys which do not need to be unique
+	 * beyond a single JVM
+	 * 
+	 * @param counter
+	 */
+	public UIKey(int counter) {
+		this(0, counter);
 	}
 
+	/**
+	 * Returns the sequence, truncated to an int. Retained for compatibility, use {@link #getSequence()} instead
+	 * 
+	 * @return
+	 */
 	public int getCounter() {
-		return counter;
+		return (int) sequence;
+	}
+
+	public long getNode() {
+		return node;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the node and sequence in base 36, separated by a '.'
+	 * 
+	 * @return
+	 */
+	public String toCompactString() {
+		return Long.toString(node, Character.MAX_RADIX) + '.' + Long.toString(sequence, Character.MAX_RADIX);
+	}
+
+	/**
+	 * Reverses {@link #toCompactString()}
+	 * 
+	 * @param compact
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if {@code compact} is not a valid compact form
+	 */
+	public static UIKey fromCompactString(String compact) {
+		int index = (compact == null) ? -1 : compact.indexOf('.');
+		if (index < 0) {
+			throw new IllegalArgumentException("Not a valid UIKey: " + compact);
+		}
+		try {
+			long node = Long.parseLong(compact.substring(0, index), Character.MAX_RADIX);
+			long sequence = Long.parseLong(compact.substring(index + 1), Character.MAX_RADIX);
+			return new UIKey(node, sequence);
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Not a valid UIKey: " + compact, nfe);
+		}
 	}
 
 	@Override
 	public String toString() {
-		return "UIKey:" + counter;
+		return "UIKey:" + toCompactString();
 	}
 
 	@Override
 	public int compareTo(UIKey other) {
-		return this.getCounter() - other.getCounter();
+		if (node != other.node) {
+			return (node < other.node) ? -1 : 1;
+		}
+		if (sequence != other.sequence) {
+			return (sequence < other.sequence) ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Sequences are unique within a node, so the sequence dominates the hash. Calculated once, as it is used on every
+	 * {@link UIScope} lookup
+	 */
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = (int) (sequence ^ (sequence >>> 32)) * 31 + (int) (node ^ (node >>> 32));
+			hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UIKey other = (UIKey) obj;
+		return (sequence == other.sequence) && (node == other.node);
 	}
 
 }
@@ -12,15 +12,69 @@
  */
 package uk.co.q3c.v7.base.guice.uiscope;
 
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.inject.Provider;
 
+/**
+ * Generates {@link UIKey} instances which are unique across a cluster and across restarts, without locking.
+ * <p>
+ * The node value of each key is the node id in the upper 32 bits and the start up epoch (in seconds) in the lower 32
+ * bits. The node id is taken from the system property {@link #NODE_ID_PROPERTY} if set, otherwise it is derived from
+ * the host name and JVM name (which includes the process id). The sequence is a static {@link AtomicLong}, so keys are
+ * unique however many instances of this provider are created.
+ * 
+ * @author David Sowerby
+ * 
+ */
 public class UIKeyProvider implements Provider<UIKey> {
-	private static int counter = 0;
+	private static Logger log = LoggerFactory.getLogger(UIKeyProvider.class);
+
+	/**
+	 * System property which can be used to give each node in a cluster an explicit, stable id
+	 */
+	public static final String NODE_ID_PROPERTY = "v7.node.id";
+
+	private static final long node = (((long) nodeId()) << 32) | ((System.currentTimeMillis() / 1000) & 0xFFFFFFFFL);
+	private static final AtomicLong sequence = new AtomicLong();
 
 	@Override
 	public UIKey get() {
-		counter++;
-		return new UIKey(counter);
+		return new UIKey(node, sequence.incrementAndGet());
+	}
+
+	/**
+	 * The node value given to every key generated in this JVM
+	 * 
+	 * @return
+	 */
+	public static long getNode() {
+		return node;
+	}
+
+	private static int nodeId() {
+		String configured = System.getProperty(NODE_ID_PROPERTY);
+		if (configured != null) {
+			try {
+				return Integer.parseInt(configured.trim());
+			} catch (NumberFormatException nfe) {
+				log.warn("System property {} should be an integer, but is '{}'.  Using a generated id", NODE_ID_PROPERTY,
+						configured);
+			}
+		}
+		String host;
+		try {
+			host = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			host = "unknown";
+		}
+		return (host + '/' + ManagementFactory.getRuntimeMXBean().getName()).hashCode();
 	}
 
 }
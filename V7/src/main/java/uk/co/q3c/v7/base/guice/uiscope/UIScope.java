@@ -12,32 +12,66 @@
  */
 package uk.co.q3c.v7.base.guice.uiscope;
 
-import java.util.HashMap;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.q3c.v7.base.ui.ScopedUI;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Key;
 import com.google.inject.Provider;
 import com.google.inject.Scope;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 
+/**
+ * Guice scope for {@link UIScoped} objects. Each UI has its own cache of scoped objects, identified by its
+ * {@link UIKey}.
+ * <p>
+ * The scope is accessed concurrently by request threads for many different UIs, so the caches are held in a
+ * {@link ConcurrentHashMap} keyed by {@link UIKey} (which hashes on its node value and sequence number), and each UI's
+ * own cache is also concurrent. Lookups of existing instances take no locks at all. Creation of a new instance locks only the cache
+ * of the UI concerned, so that two threads cannot create duplicate instances for the same UI, while threads working
+ * for other UIs are not held up. Scoped objects which depend on other scoped objects of the same UI are created by the
+ * same thread, and the lock is re-entrant, so nested creation does not deadlock.
+ * <p>
+ * A scope is normally released by {@link ScopedUI#detach()}. In case that never happens (a crashed client, or a session
+ * timing out while the server is restarting), each scope is also associated with its {@link VaadinSession} by
+ * {@link #bindSession(UIKey, VaadinSession)}, all scopes for a session are released by
+ * {@link #releaseScopes(VaadinSession)} when the session is destroyed, and {@link #sweep(long)} (called periodically
+ * by the {@link UIScopeSweeper}) releases any which have been left behind. How scoped objects are held is set by
+ * {@link #setRetention(UIScopeRetention)}, and {@link #getMetrics()} reports on the current state of the scope.
+ * 
+ * @author David Sowerby
+ * 
+ */
 public class UIScope implements Scope {
 
 	private static Logger log = LoggerFactory.getLogger(UIScope.class);
 
-	private static UIScope current;
+	private static final UIScope current = new UIScope();
 
-	private final Map<UIKey, Map<Key<?>, Object>> cache = new TreeMap<UIKey, Map<Key<?>, Object>>();
+	private static final String SETUP_HINT = "This can happen if you include UIScoped components in your ScopedUIProvider, or you are testing and have not set up the test fixture correctly.  For the latter, try sub-classing UITestBase and calling createTestUI() or createBasicUI() to prepare the UIScope correctly.  If you are not testing please report a bug";
+
+	private final ConcurrentMap<UIKey, UIScopeCache> cache = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Class<?>, Long> shallowSizes = new ConcurrentHashMap<>();
+	private final AtomicLong releasedByDetach = new AtomicLong();
+	private final AtomicLong releasedBySession = new AtomicLong();
+	private final AtomicLong releasedBySweep = new AtomicLong();
+	private volatile UIScopeRetention retention = UIScopeRetention.STRONG;
 
 	public UIScope() {
 		super();
-		log.debug("creating UIScope " + this);
+		log.debug("creating UIScope {}", this);
 	}
 
 	@Override
@@ -45,71 +79,79 @@ public class UIScope implements Scope {
 		return new Provider<T>() {
 			@Override
 			public T get() {
-				// get the scope cache for the current UI
-				log.debug("looking for a UIScoped instance of {}", key.getClass().getName());
-
-				// get the current UIKey. It should always be there, as it is created before the UI
-				UIKey uiKey = CurrentInstance.get(UIKey.class);
-				// this may be null if we are in the process of constructing the UI
-				ScopedUI currentUI = (ScopedUI) UI.getCurrent();
-				final String msg = "This can happen if you include UIScoped components in your ScopedUIProvider, or you are testing and have not set up the test fixture correctly.  For the latter, try sub-classing UITestBase and calling createTestUI() or createBasicUI() to prepare the UIScope correctly.  If you are not testing please report a bug";
-				if (uiKey == null) {
-					if (currentUI == null) {
-						throw new UIScopeException("UI and uiKey are null. " + msg);
-					} else {
-						// this can happen when the framework switches UIs
-						uiKey = currentUI.getInstanceKey();
-						if (uiKey == null) {
-							throw new UIScopeException("uiKey is null and cannot be obtained from the UI. " + msg);
-						}
-					}
-				}
-
-				// currentUI may be null if we are in the process of constructing the UI
-				// if not null just check that it hasn't got out of sync with its uikey
-				if (currentUI != null) {
-					if (!uiKey.equals(currentUI.getInstanceKey())) {
-						throw new UIScopeException(
-								"The UI and its UIKey have got out of sync.  Results are unpredictable. " + msg);
-					}
-				}
-
-				log.debug("looking for cache for key: " + uiKey);
-				Map<Key<?>, Object> scopedObjects = getScopedObjectMap(uiKey);
-				// this line should fail tests but having trouble setting up a decent test. TestBench needed?
-				// Map<Key<?>, Object> scopedObjects = getScopedObjectMap(CurrentInstance.get(UIKey.class));
-
-				// retrieve an existing instance if possible
+				UIScopeCache scopedObjects = getScopedObjectMap(currentKey());
 
+				// retrieve an existing instance if possible, without locking
 				@SuppressWarnings("unchecked")
 				T current = (T) scopedObjects.get(key);
-
 				if (current != null) {
-					log.debug("returning existing instance of " + current.getClass().getSimpleName());
 					return current;
 				}
 
-				// or create the first instance and cache it
-				current = unscoped.get();
-				scopedObjects.put(key, current);
-				log.debug("new instance of " + current.getClass().getSimpleName() + " created, as none in cache");
+				// or create the first instance and cache it. Only this UI's cache is locked, and the check is
+				// repeated in case another thread created the instance while this one was waiting
+				synchronized (scopedObjects) {
+					@SuppressWarnings("unchecked")
+					T existing = (T) scopedObjects.get(key);
+					if (existing != null) {
+						return existing;
+					}
+					current = unscoped.get();
+					if (current == null) {
+						return null;
+					}
+					scopedObjects.put(key, current, retention);
+				}
+				if (log.isDebugEnabled()) {
+					log.debug("new instance of {} created, as none in cache", current.getClass().getSimpleName());
+				}
 				return current;
 			}
 		};
 	}
 
-	private <T> Map<Key<?>, Object> getScopedObjectMap(UIKey uiKey) {
+	/**
+	 * Returns the {@link UIKey} for the UI currently being processed, checking that it is consistent with the current
+	 * UI if there is one
+	 * 
+	 * @return
+	 */
+	private UIKey currentKey() {
+		// get the current UIKey. It should always be there, as it is created before the UI
+		UIKey uiKey = CurrentInstance.get(UIKey.class);
+		// this may be null if we are in the process of constructing the UI
+		ScopedUI currentUI = (ScopedUI) UI.getCurrent();
+		if (uiKey == null) {
+			if (currentUI == null) {
+				throw new UIScopeException("UI and uiKey are null. " + SETUP_HINT);
+			} else {
+				// this can happen when the framework switches UIs
+				uiKey = currentUI.getInstanceKey();
+				if (uiKey == null) {
+					throw new UIScopeException("uiKey is null and cannot be obtained from the UI. " + SETUP_HINT);
+				}
+			}
+		}
+
+		// currentUI may be null if we are in the process of constructing the UI
+		// if not null just check that it hasn't got out of sync with its uikey
+		if (currentUI != null) {
+			if (!uiKey.equals(currentUI.getInstanceKey())) {
+				throw new UIScopeException("The UI and its UIKey have got out of sync.  Results are unpredictable. "
+						+ SETUP_HINT);
+			}
+		}
+		return uiKey;
+	}
+
+	private UIScopeCache getScopedObjectMap(UIKey uiKey) {
 
 		// return an existing cache instance
-		if (cache.containsKey(uiKey)) {
-			Map<Key<?>, Object> scopedObjects = cache.get(uiKey);
-			log.debug("scope cache retrieved for UI key: " + uiKey);
+		UIScopeCache scopedObjects = cache.get(uiKey);
+		if (scopedObjects != null) {
 			return scopedObjects;
-		} else {
-
-			return createCacheEntry(uiKey);
 		}
-
+		return createCacheEntry(uiKey);
 	}
 
 	public boolean cacheHasEntryFor(UIKey uiKey) {
@@ -121,26 +163,198 @@ public class UIScope implements Scope {
 	}
 
 	public void startScope(UIKey uiKey) {
-		if (!cacheHasEntryFor(uiKey)) {
-			createCacheEntry(uiKey);
-		}
+		createCacheEntry(uiKey);
 	}
 
-	private HashMap<Key<?>, Object> createCacheEntry(UIKey uiKey) {
-		HashMap<Key<?>, Object> uiEntry = new HashMap<Key<?>, Object>();
-		cache.put(uiKey, uiEntry);
-		log.debug("created a scope cache for UIScope with key: " + uiKey);
+	/**
+	 * Creates the cache for {@code uiKey} unless another thread has already done so, and returns whichever cache is in
+	 * place
+	 * 
+	 * @param uiKey
+	 * @return
+	 */
+	private UIScopeCache createCacheEntry(UIKey uiKey) {
+		UIScopeCache uiEntry = new UIScopeCache();
+		UIScopeCache existing = cache.putIfAbsent(uiKey, uiEntry);
+		if (existing != null) {
+			return existing;
+		}
+		log.debug("created a scope cache for UIScope with key: {}", uiKey);
 		return uiEntry;
 	}
 
 	public void releaseScope(UIKey uiKey) {
-		cache.remove(uiKey);
+		if ((uiKey != null) && (cache.remove(uiKey) != null)) {
+			releasedByDetach.incrementAndGet();
+		}
 	}
 
-	public static UIScope getCurrent() {
-		if (current == null) {
-			current = new UIScope();
+	/**
+	 * Associates the scope for {@code uiKey} with {@code session}, so that it can be expired with the session. Called
+	 * by {@link ScopedUI} once the UI has a session.
+	 * 
+	 * @param uiKey
+	 * @param session
+	 */
+	public void bindSession(UIKey uiKey, VaadinSession session) {
+		if ((uiKey == null) || (session == null)) {
+			return;
+		}
+		getScopedObjectMap(uiKey).setSession(session);
+	}
+
+	/**
+	 * Releases every scope associated with {@code session}. Called when a session is destroyed, this catches any UIs
+	 * which were never detached.
+	 * 
+	 * @param session
+	 * @return the number of scopes released
+	 */
+	public int releaseScopes(VaadinSession session) {
+		int released = 0;
+		for (Map.Entry<UIKey, UIScopeCache> entry : cache.entrySet()) {
+			if (entry.getValue().getSession() == session) {
+				if (cache.remove(entry.getKey(), entry.getValue())) {
+					released++;
+				}
+			}
 		}
+		releasedBySession.addAndGet(released);
+		if (released > 0) {
+			log.debug("released {} UI scopes for a destroyed session", released);
+		}
+		return released;
+	}
+
+	/**
+	 * Releases any scope which has been left behind, that is, where:
+	 * <ol>
+	 * <li>its session has been garbage collected or invalidated
+	 * <li>its session has had no requests for longer than the session's maximum inactive interval, plus
+	 * {@code orphanTimeout} milliseconds grace (the session timestamp is only updated at the end of a request)
+	 * <li>it was never associated with a session, and is older than {@code orphanTimeout} milliseconds (for example,
+	 * when construction of the UI failed)
+	 * </ol>
+	 * Also removes any objects held by soft or weak references which have been cleared. Sessions are not locked, the
+	 * values read from them can only be slightly stale, which at worst delays the release to the next sweep.
+	 * 
+	 * @param orphanTimeout
+	 * @return the number of scopes released
+	 */
+	public int sweep(long orphanTimeout) {
+		long now = System.currentTimeMillis();
+		int released = 0;
+		for (Map.Entry<UIKey, UIScopeCache> entry : cache.entrySet()) {
+			UIScopeCache scopeCache = entry.getValue();
+			if (isExpired(scopeCache, now, orphanTimeout)) {
+				if (cache.remove(entry.getKey(), scopeCache)) {
+					released++;
+					log.debug("sweep released the scope for {}, which had not been released by its UI", entry.getKey());
+				}
+			} else {
+				scopeCache.purgeCleared();
+			}
+		}
+		releasedBySweep.addAndGet(released);
+		return released;
+	}
+
+	private boolean isExpired(UIScopeCache scopeCache, long now, long orphanTimeout) {
+		if (!scopeCache.hasSession()) {
+			return now - scopeCache.getCreatedAt() > orphanTimeout;
+		}
+		VaadinSession session = scopeCache.getSession();
+		if (session == null) {
+			return true;
+		}
+		try {
+			WrappedSession wrappedSession = session.getSession();
+			if (wrappedSession == null) {
+				return true;
+			}
+			int maxInactiveInterval = wrappedSession.getMaxInactiveInterval();
+			if (maxInactiveInterval <= 0) {
+				return false;
+			}
+			long lastActive = Math.max(session.getLastRequestTimestamp(), scopeCache.getCreatedAt());
+			return now - lastActive > (maxInactiveInterval * 1000L) + orphanTimeout;
+		} catch (IllegalStateException ise) {
+			// the underlying session has been invalidated
+			return true;
+		}
+	}
+
+	public UIScopeRetention getRetention() {
+		return retention;
+	}
+
+	/**
+	 * Sets the retention used for objects created from now on. Objects already in the cache are not affected.
+	 * 
+	 * @param retention
+	 */
+	public void setRetention(UIScopeRetention retention) {
+		this.retention = retention;
+	}
+
+	/**
+	 * Returns a snapshot of the scope's current state
+	 * 
+	 * @return
+	 */
+	public UIScopeMetrics getMetrics() {
+		ImmutableMap.Builder<UIKey, Integer> objectsPerScope = ImmutableMap.builder();
+		long estimatedBytes = 0;
+		for (Map.Entry<UIKey, UIScopeCache> entry : cache.entrySet()) {
+			UIScopeCache scopeCache = entry.getValue();
+			objectsPerScope.put(entry.getKey(), scopeCache.size());
+			for (Object object : scopeCache.objects()) {
+				estimatedBytes += shallowSize(object.getClass());
+			}
+		}
+		return new UIScopeMetrics(objectsPerScope.build(), estimatedBytes, releasedByDetach.get(),
+				releasedBySession.get(), releasedBySweep.get());
+	}
+
+	/**
+	 * A rough estimate of the shallow size of an instance of {@code clazz}, assuming a 12 byte header, 4 byte
+	 * references and 8 byte alignment. Cached, as the same classes appear in every UI.
+	 */
+	private long shallowSize(Class<?> clazz) {
+		Long size = shallowSizes.get(clazz);
+		if (size != null) {
+			return size;
+		}
+		long bytes = 12;
+		for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					bytes += fieldSize(field.getType());
+				}
+			}
+		}
+		bytes = (bytes + 7) & ~7L;
+		shallowSizes.putIfAbsent(clazz, bytes);
+		return bytes;
+	}
+
+	private int fieldSize(Class<?> type) {
+		if ((type == long.class) || (type == double.class)) {
+			return 8;
+		}
+		if ((type == int.class) || (type == float.class)) {
+			return 4;
+		}
+		if ((type == short.class) || (type == char.class)) {
+			return 2;
+		}
+		if ((type == byte.class) || (type == boolean.class)) {
+			return 1;
+		}
+		return 4;
+	}
+
+	public static UIScope getCurrent() {
 		return current;
 	}
 
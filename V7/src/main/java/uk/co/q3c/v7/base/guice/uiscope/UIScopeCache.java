@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.inject.Key;
+import com.vaadin.server.VaadinSession;
+
+/**
+ * The objects held by {@link UIScope} for a single UI, together with the information needed to decide when the scope
+ * can be expired: the time it was created and (once the UI has been initialised) the {@link VaadinSession} it belongs
+ * to. The session is only weakly referenced, so that a forgotten scope never keeps a session alive.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class UIScopeCache {
+
+	/**
+	 * Marks values which are held by reference according to {@link UIScopeRetention}, so that they can be told apart
+	 * from scoped objects which happen to be references themselves
+	 */
+	private interface RetainedValue {
+		Object get();
+	}
+
+	private static class SoftValue extends SoftReference<Object> implements RetainedValue {
+		SoftValue(Object referent) {
+			super(referent);
+		}
+	}
+
+	private static class WeakValue extends WeakReference<Object> implements RetainedValue {
+		WeakValue(Object referent) {
+			super(referent);
+		}
+	}
+
+	private final ConcurrentMap<Key<?>, Object> objects = new ConcurrentHashMap<>();
+	private final long createdAt;
+	private volatile WeakReference<VaadinSession> sessionRef;
+
+	UIScopeCache() {
+		super();
+		createdAt = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the object for {@code key}, or null if there is none, or it was held by a soft or weak reference which has
+	 * since been cleared
+	 */
+	Object get(Key<?> key) {
+		Object value = objects.get(key);
+		if (value instanceof RetainedValue) {
+			return ((RetainedValue) value).get();
+		}
+		return value;
+	}
+
+	void put(Key<?> key, Object object, UIScopeRetention retention) {
+		switch (retention) {
+		case SOFT:
+			objects.put(key, new SoftValue(object));
+			return;
+		case WEAK:
+			objects.put(key, new WeakValue(object));
+			return;
+		default:
+			objects.put(key, object);
+		}
+	}
+
+	/**
+	 * Removes entries whose soft or weak references have been cleared
+	 * 
+	 * @return the number of entries removed
+	 */
+	int purgeCleared() {
+		int removed = 0;
+		Iterator<Object> iter = objects.values().iterator();
+		while (iter.hasNext()) {
+			Object value = iter.next();
+			if ((value instanceof RetainedValue) && (((RetainedValue) value).get() == null)) {
+				iter.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * A snapshot of the objects currently held, with any soft or weak references resolved. Cleared references are
+	 * omitted
+	 */
+	Collection<Object> objects() {
+		Collection<Object> values = new ArrayList<>(objects.size());
+		for (Object value : objects.values()) {
+			Object object = (value instanceof RetainedValue) ? ((RetainedValue) value).get() : value;
+			if (object != null) {
+				values.add(object);
+			}
+		}
+		return values;
+	}
+
+	int size() {
+		return objects.size();
+	}
+
+	long getCreatedAt() {
+		return createdAt;
+	}
+
+	void setSession(VaadinSession session) {
+		sessionRef = new WeakReference<>(session);
+	}
+
+	boolean hasSession() {
+		return sessionRef != null;
+	}
+
+	/**
+	 * Returns the session this scope belongs to. Returns null if no session has been set, or the session has been
+	 * garbage collected. Use {@link #hasSession()} to tell the difference
+	 */
+	VaadinSession getSession() {
+		WeakReference<VaadinSession> ref = sessionRef;
+		return (ref == null) ? null : ref.get();
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An immutable snapshot of the state of {@link UIScope}, obtained from {@link UIScope#getMetrics()}. The retained size
+ * is a shallow estimate (object headers and fields of the scoped objects themselves, not the object graphs they refer
+ * to), and is intended for spotting trends rather than exact accounting.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class UIScopeMetrics {
+
+	private final int liveScopes;
+	private final int totalObjects;
+	private final int maxObjectsPerScope;
+	private final long estimatedRetainedBytes;
+	private final long releasedByDetach;
+	private final long releasedBySession;
+	private final long releasedBySweep;
+	private final ImmutableMap<UIKey, Integer> objectsPerScope;
+
+	public UIScopeMetrics(ImmutableMap<UIKey, Integer> objectsPerScope, long estimatedRetainedBytes,
+			long releasedByDetach, long releasedBySession, long releasedBySweep) {
+		super();
+		this.objectsPerScope = objectsPerScope;
+		this.estimatedRetainedBytes = estimatedRetainedBytes;
+		this.releasedByDetach = releasedByDetach;
+		this.releasedBySession = releasedBySession;
+		this.releasedBySweep = releasedBySweep;
+		int total = 0;
+		int max = 0;
+		for (Integer count : objectsPerScope.values()) {
+			total += count;
+			max = Math.max(max, count);
+		}
+		this.liveScopes = objectsPerScope.size();
+		this.totalObjects = total;
+		this.maxObjectsPerScope = max;
+	}
+
+	public int getLiveScopes() {
+		return liveScopes;
+	}
+
+	public int getTotalObjects() {
+		return totalObjects;
+	}
+
+	public int getMaxObjectsPerScope() {
+		return maxObjectsPerScope;
+	}
+
+	public double getAverageObjectsPerScope() {
+		return (liveScopes == 0) ? 0 : (double) totalObjects / liveScopes;
+	}
+
+	public ImmutableMap<UIKey, Integer> getObjectsPerScope() {
+		return objectsPerScope;
+	}
+
+	public long getEstimatedRetainedBytes() {
+		return estimatedRetainedBytes;
+	}
+
+	/**
+	 * The number of scopes released normally, when their UI was detached
+	 */
+	public long getReleasedByDetach() {
+		return releasedByDetach;
+	}
+
+	/**
+	 * The number of scopes released because their {@link com.vaadin.server.VaadinSession} was destroyed
+	 */
+	public long getReleasedBySession() {
+		return releasedBySession;
+	}
+
+	/**
+	 * The number of scopes released by the sweeper. These are scopes which would otherwise have leaked, so a steadily
+	 * increasing value indicates UIs which are not being detached
+	 */
+	public long getReleasedBySweep() {
+		return releasedBySweep;
+	}
+
+	@Override
+	public String toString() {
+		return "liveScopes=" + liveScopes + ", totalObjects=" + totalObjects + ", maxObjectsPerScope="
+				+ maxObjectsPerScope + ", estimatedRetainedBytes=" + estimatedRetainedBytes + ", releasedByDetach="
+				+ releasedByDetach + ", releasedBySession=" + releasedBySession + ", releasedBySweep="
+				+ releasedBySweep;
+	}
+
+}
@@ -13,9 +13,14 @@
 package uk.co.q3c.v7.base.guice.uiscope;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Scope;
 import com.google.inject.name.Names;
 
 public class UIScopeModule extends AbstractModule {
+	/**
+	 * The name of a boolean constant which is true if {@link UIScoped} objects are held by {@link AttachedUIScope}
+	 */
+	public static final String ATTACHED_UI_SCOPE = "AttachedUIScope";
 	private final UIScope uiScope;
 
 	public UIScopeModule() {
@@ -27,14 +32,26 @@ public class UIScopeModule extends AbstractModule {
 	@Override
 	public void configure() {
 
-		// tell Guice about the scope
-		bindScope(UIScoped.class, uiScope);
+		// tell Guice about the scope, and make it available to the ScopedUIProvider
+		Scope scope = uiScopedScope();
+		bindScope(UIScoped.class, scope);
+		bindConstant().annotatedWith(Names.named(ATTACHED_UI_SCOPE)).to(scope instanceof AttachedUIScope);
 
 		// make our scope instance injectable
 		bind(UIScope.class).annotatedWith(Names.named("UIScope")).toInstance(uiScope);
 
 	}
 
+	/**
+	 * The scope to bind to {@link UIScoped}. Override to use a different implementation, see for example
+	 * {@link AttachedUIScopeModule}
+	 * 
+	 * @return
+	 */
+	protected Scope uiScopedScope() {
+		return uiScope;
+	}
+
 	public UIScope getUiScope() {
 		return uiScope;
 	}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * Determines how {@link UIScope} holds on to the objects it has created for a UI.
+ * <ol>
+ * <li>{@link #STRONG} : the default. Objects are held until the scope is released, which is the expected behaviour of
+ * a Guice scope
+ * <li>{@link #SOFT} : objects are held through a {@link SoftReference}, and may be discarded under memory pressure if
+ * nothing else refers to them
+ * <li>{@link #WEAK} : objects are held through a {@link WeakReference}, so the scope cache never keeps an object alive
+ * on its own. Only suitable where all UIScoped objects are reachable from the UI itself
+ * </ol>
+ * If an object held by a soft or weak reference is discarded, a new instance will be created the next time it is
+ * requested.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public enum UIScopeRetention {
+	STRONG, SOFT, WEAK
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
+/**
+ * Holds the {@link UIScoped} objects of a single UI, for use by {@link AttachedUIScope}. An instance is created by the
+ * {@link uk.co.q3c.v7.base.ui.ScopedUIProvider} before the UI is constructed, and is then held by the
+ * {@link ScopedUI} itself, so the objects are released with the UI and are serialized with it.
+ * <p>
+ * Guice keys are not serializable, so objects are stored against the String form of their key. The scope calculates
+ * that String once per binding, not on each lookup.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class UIScopeStore implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final UIKey uiKey;
+	private final ConcurrentMap<String, Object> objects = new ConcurrentHashMap<>();
+
+	public UIScopeStore(UIKey uiKey) {
+		super();
+		this.uiKey = uiKey;
+	}
+
+	public UIKey getUiKey() {
+		return uiKey;
+	}
+
+	public Object get(String keyName) {
+		return objects.get(keyName);
+	}
+
+	public void put(String keyName, Object object) {
+		objects.put(keyName, object);
+	}
+
+	public int size() {
+		return objects.size();
+	}
+
+	public void clear() {
+		objects.clear();
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.config.ApplicationConfigurationService;
+import uk.co.q3c.v7.base.config.ConfigKeys;
+import uk.co.q3c.v7.base.services.AbstractServiceI18N;
+import uk.co.q3c.v7.base.services.AutoStart;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.i18n.DescriptionKey;
+import uk.co.q3c.v7.i18n.LabelKey;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+/**
+ * Periodically calls {@link UIScope#sweep(long)} to release UI scopes which have been left behind, and logs the
+ * {@link UIScopeMetrics} whenever anything is released. The following values are read from the application
+ * configuration when the service starts:
+ * <ol>
+ * <li>{@link ConfigKeys#UISCOPE_SWEEP_INTERVAL_KEY} : seconds between sweeps, default 60
+ * <li>{@link ConfigKeys#UISCOPE_ORPHAN_TIMEOUT_KEY} : seconds before a scope which was never associated with a session
+ * is considered abandoned, default 300
+ * <li>{@link ConfigKeys#UISCOPE_RETENTION_KEY} : one of the {@link UIScopeRetention} values, default STRONG
+ * </ol>
+ * If the configuration service fails to start, the defaults are used.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class UIScopeSweeper extends AbstractServiceI18N {
+
+	private static Logger log = LoggerFactory.getLogger(UIScopeSweeper.class);
+	public static final long DEFAULT_SWEEP_INTERVAL = 60;
+	public static final long DEFAULT_ORPHAN_TIMEOUT = 300;
+
+	@AutoStart
+	private final ApplicationConfigurationService configurationService;
+	private final UIScope uiScope;
+	private ScheduledExecutorService executor;
+	private long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+	private long orphanTimeout = DEFAULT_ORPHAN_TIMEOUT;
+
+	@Inject
+	protected UIScopeSweeper(Translate translate, ApplicationConfigurationService configurationService,
+			@Named("UIScope") UIScope uiScope) {
+		super(translate);
+		this.configurationService = configurationService;
+		this.uiScope = uiScope;
+		setNameKey(LabelKey.UIScope_Sweeper);
+		setDescriptionKey(DescriptionKey.UIScope_Sweeper);
+	}
+
+	@Override
+	public Status start() throws Exception {
+		readConfiguration();
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("v7-uiscope-sweeper-%d").setDaemon(true).build());
+		executor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+		return Status.STARTED;
+	}
+
+	private void readConfiguration() {
+		CompositeConfiguration configuration = configurationService.getConfiguration();
+		if ((getStatus() == Status.DEPENDENCY_FAILED) || (configuration == null)) {
+			log.warn("Application configuration is not available, {} will use default settings", getName());
+			return;
+		}
+		sweepInterval = Math.max(1, configuration.getLong(ConfigKeys.UISCOPE_SWEEP_INTERVAL_KEY,
+				DEFAULT_SWEEP_INTERVAL));
+		orphanTimeout = configuration.getLong(ConfigKeys.UISCOPE_ORPHAN_TIMEOUT_KEY, DEFAULT_ORPHAN_TIMEOUT);
+		String retention = configuration.getString(ConfigKeys.UISCOPE_RETENTION_KEY, UIScopeRetention.STRONG.name());
+		try {
+			uiScope.setRetention(UIScopeRetention.valueOf(retention.toUpperCase()));
+		} catch (IllegalArgumentException iae) {
+			log.warn("A value of {} in {} is invalid", retention, ConfigKeys.UISCOPE_RETENTION_KEY);
+		}
+	}
+
+	/**
+	 * Carries out a single sweep. Exceptions are caught and logged, as an exception escaping from a scheduled task
+	 * would stop any further sweeps
+	 * 
+	 * @return the number of scopes released
+	 */
+	public int sweep() {
+		try {
+			int released = uiScope.sweep(orphanTimeout * 1000);
+			if (released > 0) {
+				log.info("{} UI scopes released which had not been released by their UI. {}", released,
+						uiScope.getMetrics());
+			}
+			return released;
+		} catch (Exception e) {
+			log.error("UIScope sweep failed", e);
+			return 0;
+		}
+	}
+
+	@Override
+	public Status stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		return Status.STOPPED;
+	}
+
+	@Override
+	public void serviceStatusChange(Service service, Status fromStatus, Status toStatus) {
+		// configuration is only read at start up, nothing to do
+	}
+
+	public long getSweepInterval() {
+		return sweepInterval;
+	}
+
+	public long getOrphanTimeout() {
+		return orphanTimeout;
+	}
+
+}
@@ -316,6 +316,7 @@ public class DefaultV7Navigator implements V7Navigator {
 			currentNode = node;
 			currentNavigationState = navigationState;
 			changeView(view);
+			pageAccessController.recordNavigation(subject, node);
 		} else {
 			throw new UnauthorizedException(navigationState.getVirtualPage());
 		}
@@ -16,6 +16,7 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 
 import uk.co.q3c.v7.i18n.I18NKey;
+import uk.co.q3c.v7.i18n.I18NKeyValues;
 
 public enum StandardPageKey implements I18NKey<StandardPageLabels> {
 
@@ -39,7 +40,7 @@ public enum StandardPageKey implements I18NKey<StandardPageLabels> {
 
 	@Override
 	public String getValue(Locale locale) {
-		String mapValue = getBundle(locale).getValue(this);
+		String mapValue = I18NKeyValues.valueOf(this, locale);
 		if (mapValue == null) {
 			return this.name().replace("_", " ");
 		} else {
@@ -14,7 +14,11 @@ package uk.co.q3c.v7.base.navigate.sitemap;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.configuration.CompositeConfiguration;
 import org.slf4j.Logger;
@@ -40,6 +44,10 @@ import com.google.inject.Singleton;
 public class DefaultSitemapService extends AbstractServiceI18N implements SitemapService {
 
 	private static Logger log = LoggerFactory.getLogger(DefaultSitemapService.class);
+	/**
+	 * The number of URIs below which a bulk validation is not split any further
+	 */
+	private static final int VALIDATION_BATCH_SIZE = 512;
 	@AutoStart
 	private final ApplicationConfigurationService configurationService;
 	private final Provider<FileSitemapLoader> fileSitemapLoaderProvider;
@@ -51,6 +59,7 @@ public class DefaultSitemapService extends AbstractServiceI18N implements Sitema
 	private final Provider<DirectSitemapLoader> directSitemapLoaderProvider;
 	private final Provider<AnnotationSitemapLoader> annotationSitemapLoaderProvider;
 	private final SitemapChecker sitemapChecker;
+	private ForkJoinPool validationPool;
 
 	@Inject
 	protected DefaultSitemapService(ApplicationConfigurationService configurationService, Translate translate,
@@ -88,6 +97,7 @@ public class DefaultSitemapService extends AbstractServiceI18N implements Sitema
 		if (!loaded) {
 			throw new SitemapException("No valid sources found");
 		}
+		validationPool = new ForkJoinPool();
 		return Status.STARTED;
 	}
 
@@ -104,6 +114,7 @@ public class DefaultSitemapService extends AbstractServiceI18N implements Sitema
 		log.debug("Checking Sitemap");
 		sitemapChecker.check();
 		log.debug("Sitemap checked, no errors found");
+		sitemap.publish();
 	}
 
 	/**
@@ -171,6 +182,10 @@ public class DefaultSitemapService extends AbstractServiceI18N implements Sitema
 	@Override
 	public Status stop() {
 		loaded = false;
+		if (validationPool != null) {
+			validationPool.shutdown();
+			validationPool = null;
+		}
 		return Status.STOPPED;
 	}
 
@@ -196,6 +211,59 @@ public class DefaultSitemapService extends AbstractServiceI18N implements Sitema
 		return sitemap;
 	}
 
+	/**
+	 * Splits {@code uris} into batches of up to {@link #VALIDATION_BATCH_SIZE} and validates them in parallel using
+	 * {@link Sitemap#validate(String)}. The Sitemap is only read, so no locking is required once it has been loaded.
+	 * 
+	 * @see uk.co.q3c.v7.base.navigate.sitemap.SitemapService#validate(java.util.Collection)
+	 */
+	@Override
+	public List<UriValidationResult> validate(Collection<String> uris) {
+		ForkJoinPool pool = validationPool;
+		if (!isStarted() || (pool == null)) {
+			throw new SitemapException("The Sitemap service must be started before URIs can be validated");
+		}
+		String[] source = uris.toArray(new String[uris.size()]);
+		UriValidationResult[] results = new UriValidationResult[source.length];
+		pool.invoke(new ValidationTask(sitemap, source, results, 0, source.length));
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Validates a range of URIs, writing each result into the same index of the results array, so that there is no
+	 * need to merge the outputs of the sub-tasks
+	 */
+	private static class ValidationTask extends RecursiveAction {
+
+		private final Sitemap sitemap;
+		private final String[] uris;
+		private final UriValidationResult[] results;
+		private final int from;
+		private final int to;
+
+		ValidationTask(Sitemap sitemap, String[] uris, UriValidationResult[] results, int from, int to) {
+			super();
+			this.sitemap = sitemap;
+			this.uris = uris;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= VALIDATION_BATCH_SIZE) {
+				for (int i = from; i < to; i++) {
+					results[i] = sitemap.validate(uris[i]);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ValidationTask(sitemap, uris, results, from, mid), new ValidationTask(sitemap, uris,
+					results, mid, to));
+		}
+	}
+
 	public boolean isLoaded() {
 		return loaded;
 	}
@@ -16,14 +16,17 @@ import static com.google.common.base.Preconditions.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import uk.co.q3c.util.BasicForest;
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemo;
 import uk.co.q3c.v7.base.navigate.NavigationState;
 import uk.co.q3c.v7.base.navigate.StandardPageKey;
 import uk.co.q3c.v7.base.navigate.URIFragmentHandler;
+import uk.co.q3c.v7.base.shiro.PageAccessControl;
 import uk.co.q3c.v7.base.shiro.PagePermission;
 import uk.co.q3c.v7.i18n.Translate;
 
@@ -58,6 +61,7 @@ public class Sitemap {
 
 	private int nextNodeId = 0;
 	private int errors = 0;
+	private volatile int structureVersion = 0;
 	private final Map<StandardPageKey, SitemapNode> standardPages = new HashMap<>();
 	private String report;
 	// Uses LinkedHashMap to retain insertion order
@@ -66,6 +70,19 @@ public class Sitemap {
 	private final Map<String, SitemapNode> uriMap = new LinkedHashMap<>();
 	private final URIFragmentHandler uriHandler;
 	private final Translate translate;
+	/**
+	 * The key of this Sitemap's {@link UriMemo} in the {@link RequestMemo}
+	 */
+	private final Object uriMemoKey = new Object();
+
+	/**
+	 * The URIs built during a request, keyed by node identity (nodes are compared by id, which is not unique until a
+	 * node has been added), valid only for the structure version they were built for
+	 */
+	private static class UriMemo {
+		private final Map<SitemapNode, String> uris = new IdentityHashMap<>();
+		private int version = -1;
+	}
 
 	@Inject
 	public Sitemap(URIFragmentHandler uriHandler, Translate translate) {
@@ -76,13 +93,48 @@ public class Sitemap {
 	}
 
 	/**
-	 * Returns the full URI for {@code node}
+	 * Returns the full URI for {@code node}. The result is memoised for the duration of a request (see
+	 * {@link RequestMemo}), until the structure of the Sitemap or the segment of any of its nodes changes. A node which
+	 * has not been added to this Sitemap has no parents, so its URI is just its segment and is not memoised
 	 * 
 	 * @param node
 	 * @return
 	 */
 	public String uri(SitemapNode node) {
 		checkNotNull(node);
+		if (node.getSitemap() != this) {
+			return buildUri(node);
+		}
+		UriMemo memo = RequestMemo.get(uriMemoKey);
+		if (memo == null) {
+			if (!RequestMemo.isActive()) {
+				return buildUri(node);
+			}
+			memo = new UriMemo();
+			RequestMemo.put(uriMemoKey, memo);
+		}
+		int version = structureVersion;
+		if (memo.version != version) {
+			memo.uris.clear();
+			memo.version = version;
+		}
+		String uri = memo.uris.get(node);
+		if (uri == null) {
+			uri = buildUri(node);
+			memo.uris.put(node, uri);
+		}
+		return uri;
+	}
+
+	/**
+	 * Called by a node of this Sitemap when its segment changes, which changes its URI and the URIs of all its
+	 * descendants
+	 */
+	void segmentChanged() {
+		structureVersion++;
+	}
+
+	private String buildUri(SitemapNode node) {
 		StringBuilder buf = new StringBuilder(node.getUriSegment());
 		prependParent(node, buf);
 		return buf.toString();
@@ -191,8 +243,10 @@ public class Sitemap {
 	 */
 	public void addChild(SitemapNode parentNode, SitemapNode childNode) {
 		checkNotNull(childNode);
+		structureVersion++;
 		if ((parentNode != null) && (!containsNode(parentNode))) {
 			forest.addNode(parentNode);
+			parentNode.setSitemap(this);
 			String newUri = uri(parentNode);
 			parentNode.setId(nextNodeId());
 			uriMap.put(newUri, parentNode);
@@ -207,6 +261,7 @@ public class Sitemap {
 
 		// add it to structure first, otherwise the uri will be wrong
 		forest.addChild(parentNode, childNode);
+		childNode.setSitemap(this);
 		uriMap.put(uri(childNode), childNode);
 
 	}
@@ -227,6 +282,7 @@ public class Sitemap {
 	private void removeNode(SitemapNode node) {
 		String uri = uri(node);
 		forest.removeNode(node);
+		structureVersion++;
 		uriMap.remove(uri);
 	}
 
@@ -254,6 +310,15 @@ public class Sitemap {
 		return ImmutableMap.copyOf(standardPages);
 	}
 
+	/**
+	 * Returns a number which changes whenever a node is added to, moved within or removed from the Sitemap
+	 * 
+	 * @return
+	 */
+	public int getStructureVersion() {
+		return structureVersion;
+	}
+
 	public boolean hasErrors() {
 		return errors > 0;
 	}
@@ -517,6 +582,50 @@ public class Sitemap {
 		return node;
 	}
 
+	/**
+	 * Returns the node for {@code virtualPage}, or the closest available if there is no exact match. Equivalent to
+	 * {@link #nodeNearestFor(NavigationState)}, but trims the virtual page in place rather than re-joining path
+	 * segments for each attempt
+	 * 
+	 * @param virtualPage
+	 * @return
+	 */
+	private SitemapNode nodeNearestForPage(String virtualPage) {
+		String path = virtualPage;
+		SitemapNode node = uriMap.get(path);
+		while (node == null) {
+			int index = path.lastIndexOf('/');
+			if (index < 0) {
+				return null;
+			}
+			path = path.substring(0, index);
+			node = uriMap.get(path);
+		}
+		return node;
+	}
+
+	/**
+	 * Validates a single {@code uri} against this {@link Sitemap}, capturing the exact match, the nearest match, any
+	 * redirect and the resulting {@link PageAccessControl} in one pass. Only read access is made to the Sitemap, so
+	 * this method may safely be called concurrently once the Sitemap has been loaded. For bulk validation use
+	 * {@link SitemapService#validate(java.util.Collection)}
+	 * 
+	 * @param uri
+	 * @return
+	 */
+	public UriValidationResult validate(String uri) {
+		String virtualPage = uriHandler.navigationState(uri).getVirtualPage();
+		SitemapNode node = uriMap.get(virtualPage);
+		SitemapNode nearestNode = (node == null) ? nodeNearestForPage(virtualPage) : node;
+		String redirectPage = null;
+		SitemapNode redirectNode = null;
+		if (redirects.containsKey(virtualPage)) {
+			redirectPage = getRedirectPageFor(virtualPage);
+			redirectNode = uriMap.get(redirectPage);
+		}
+		return new UriValidationResult(uri, virtualPage, node, nearestNode, redirectPage, redirectNode);
+	}
+
 	/**
 	 * returns a list of {@link SitemapNode} matching the virtual page of the {@code navigationState} provided. Uses the
 	 * {@link URIFragmentHandler} to get URI path segments and {@link Sitemap} to obtain the node chain.
@@ -583,13 +692,48 @@ public class Sitemap {
 	}
 
 	/**
-	 * Returns a {@link PagePermission} object for {@code node}
+	 * Returns the view {@link PagePermission} for {@code node}. Permissions are compiled once, by {@link #publish()},
+	 * and only recompiled if the structure of the Sitemap or the node's URI segment changes, so that a permission check
+	 * does not need to parse any strings.
 	 * 
 	 * @param node
 	 * @return
 	 */
 	public PagePermission pagePermission(SitemapNode node) {
-		return new PagePermission(navigationState(node));
+		return compiledPermissions(node).getViewPermission();
+	}
+
+	/**
+	 * Returns the edit {@link PagePermission} for {@code node}
+	 * 
+	 * @see #pagePermission(SitemapNode)
+	 * @param node
+	 * @return
+	 */
+	public PagePermission editPagePermission(SitemapNode node) {
+		return compiledPermissions(node).getEditPermission();
+	}
+
+	private SitemapNode.CompiledPermissions compiledPermissions(SitemapNode node) {
+		int version = structureVersion;
+		SitemapNode.CompiledPermissions compiled = node.getCompiledPermissions();
+		if ((compiled == null) || (compiled.getVersion() != version)) {
+			String virtualPage = navigationState(node).getVirtualPage();
+			compiled = new SitemapNode.CompiledPermissions(new PagePermission(virtualPage, false, false),
+					new PagePermission(virtualPage, false, true), version);
+			node.setCompiledPermissions(compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Compiles the {@link PagePermission}s for every node. Called by the {@link SitemapService} once the Sitemap has
+	 * been loaded and checked
+	 */
+	public void publish() {
+		for (SitemapNode node : getAllNodes()) {
+			compiledPermissions(node);
+		}
 	}
 
 	/**
@@ -23,6 +23,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import uk.co.q3c.v7.base.navigate.V7Navigator;
 import uk.co.q3c.v7.base.shiro.PageAccessControl;
+import uk.co.q3c.v7.base.shiro.PagePermission;
 import uk.co.q3c.v7.base.view.V7View;
 import uk.co.q3c.v7.i18n.I18NKey;
 import uk.co.q3c.v7.i18n.LabelKey;
@@ -72,6 +73,37 @@ public class SitemapNode {
 	 * {@link PageAccessControl#ROLES}
 	 */
 	private final Set<String> roles = new HashSet<>();
+	/**
+	 * The permissions compiled for a node, published as one immutable object so that a reader on another thread
+	 * never sees a view permission from one compilation with the edit permission or version of another
+	 */
+	static final class CompiledPermissions {
+		private final PagePermission viewPermission;
+		private final PagePermission editPermission;
+		private final int version;
+
+		CompiledPermissions(PagePermission viewPermission, PagePermission editPermission, int version) {
+			super();
+			this.viewPermission = viewPermission;
+			this.editPermission = editPermission;
+			this.version = version;
+		}
+
+		PagePermission getViewPermission() {
+			return viewPermission;
+		}
+
+		PagePermission getEditPermission() {
+			return editPermission;
+		}
+
+		int getVersion() {
+			return version;
+		}
+	}
+
+	private volatile CompiledPermissions permissions;
+	private Sitemap sitemap;
 
 	public SitemapNode(String uriSegment, Class<? extends V7View> viewClass, I18NKey<?> labelKey, Locale locale,
 			Collator collator, Translate translate) {
@@ -92,6 +124,57 @@ public class SitemapNode {
 
 	public void setUriSegment(String uriSegment) {
 		this.uriSegment = uriSegment;
+		permissions = null;
+		if (sitemap != null) {
+			sitemap.segmentChanged();
+		}
+	}
+
+	/**
+	 * The Sitemap this node has been added to, or null if it has not been added to one
+	 * 
+	 * @return
+	 */
+	Sitemap getSitemap() {
+		return sitemap;
+	}
+
+	void setSitemap(Sitemap sitemap) {
+		this.sitemap = sitemap;
+	}
+
+	/**
+	 * The view permission for this node, as compiled by {@link Sitemap#publish()}. Use
+	 * {@link Sitemap#pagePermission(SitemapNode)} rather than calling this directly, as it will recompile the permission
+	 * if the Sitemap has changed since it was published
+	 * 
+	 * @return
+	 */
+	public PagePermission getViewPermission() {
+		CompiledPermissions compiled = permissions;
+		return (compiled == null) ? null : compiled.getViewPermission();
+	}
+
+	/**
+	 * @see #getViewPermission()
+	 * @return
+	 */
+	public PagePermission getEditPermission() {
+		CompiledPermissions compiled = permissions;
+		return (compiled == null) ? null : compiled.getEditPermission();
+	}
+
+	/**
+	 * The permissions compiled for this node, or null if none have been compiled since it last changed
+	 * 
+	 * @return
+	 */
+	CompiledPermissions getCompiledPermissions() {
+		return permissions;
+	}
+
+	void setCompiledPermissions(CompiledPermissions permissions) {
+		this.permissions = permissions;
 	}
 
 	public I18NKey<?> getLabelKey() {
@@ -12,10 +12,23 @@
  */
 package uk.co.q3c.v7.base.navigate.sitemap;
 
+import java.util.Collection;
+import java.util.List;
+
 import uk.co.q3c.v7.base.services.ServiceI18N;
 
 public interface SitemapService extends ServiceI18N {
 
 	Sitemap getSitemap();
 
+	/**
+	 * Validates every URI in {@code uris} against the current {@link Sitemap}, in parallel, and returns the results in
+	 * the same order as {@code uris}. Each result is the equivalent of calling {@link Sitemap#validate(String)}. The
+	 * service must be started before this method is called.
+	 * 
+	 * @param uris
+	 * @return
+	 */
+	List<UriValidationResult> validate(Collection<String> uris);
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.navigate.sitemap;
+
+import uk.co.q3c.v7.base.shiro.PageAccessControl;
+
+/**
+ * The result of validating a single URI against the {@link Sitemap}, as returned by {@link Sitemap#validate(String)}
+ * and {@link SitemapService#validate(java.util.Collection)}. Only the virtual page part of the URI is used, parameters
+ * are ignored.
+ * <p>
+ * <ul>
+ * <li>{@link #getNode()} is the node which exactly matches the virtual page, or null if there is none
+ * <li>{@link #getNearestNode()} follows the same rules as {@link Sitemap#nodeNearestFor(String)}
+ * <li>{@link #getRedirectPage()} is the final page of any redirect chain, or null if the page is not redirected
+ * <li>{@link #getTargetNode()} is the node a user would actually arrive at, that is, the redirect target if there is
+ * one, otherwise the matching node
+ * </ul>
+ * Instances are immutable.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class UriValidationResult {
+
+	private final String uri;
+	private final String virtualPage;
+	private final SitemapNode node;
+	private final SitemapNode nearestNode;
+	private final String redirectPage;
+	private final SitemapNode redirectNode;
+
+	public UriValidationResult(String uri, String virtualPage, SitemapNode node, SitemapNode nearestNode,
+			String redirectPage, SitemapNode redirectNode) {
+		super();
+		this.uri = uri;
+		this.virtualPage = virtualPage;
+		this.node = node;
+		this.nearestNode = nearestNode;
+		this.redirectPage = redirectPage;
+		this.redirectNode = redirectNode;
+	}
+
+	/**
+	 * The URI as originally supplied
+	 * 
+	 * @return
+	 */
+	public String getUri() {
+		return uri;
+	}
+
+	public String getVirtualPage() {
+		return virtualPage;
+	}
+
+	public SitemapNode getNode() {
+		return node;
+	}
+
+	public SitemapNode getNearestNode() {
+		return nearestNode;
+	}
+
+	public String getRedirectPage() {
+		return redirectPage;
+	}
+
+	public SitemapNode getRedirectNode() {
+		return redirectNode;
+	}
+
+	public boolean isRedirected() {
+		return redirectPage != null;
+	}
+
+	/**
+	 * Returns the redirect target node if the page is redirected, otherwise the exactly matching node. May be null
+	 * 
+	 * @return
+	 */
+	public SitemapNode getTargetNode() {
+		return isRedirected() ? redirectNode : node;
+	}
+
+	/**
+	 * Returns true if the URI leads to a page in the {@link Sitemap}, either directly or through a redirect
+	 * 
+	 * @return
+	 */
+	public boolean isValid() {
+		return getTargetNode() != null;
+	}
+
+	/**
+	 * Returns the {@link PageAccessControl} of the {@link #getTargetNode()}, or null if the URI is not valid
+	 * 
+	 * @return
+	 */
+	public PageAccessControl getPageAccessControl() {
+		SitemapNode target = getTargetNode();
+		return (target == null) ? null : target.getPageAccessControl();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("uri=");
+		buf.append(uri);
+		buf.append(", valid=");
+		buf.append(isValid());
+		buf.append(", redirectPage=");
+		buf.append((redirectPage == null) ? "none" : redirectPage);
+		buf.append(", pageAccessControl=");
+		buf.append(getPageAccessControl());
+		return buf.toString();
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.subject.Subject;
+
+import uk.co.q3c.v7.base.task.TaskCallback;
+
+/**
+ * Logs in the current {@link Subject} without holding the VaadinSession lock while the realms are called, so that slow
+ * credential checks do not stall the user's other requests, or use up the container's request threads.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public interface AsyncAuthenticator {
+
+	/**
+	 * Starts a login with {@code token}. The outcome is delivered to {@code callback} while holding the VaadinSession
+	 * lock, so it may update the UI directly. On success the callback receives the logged in Subject. On failure it
+	 * receives the {@link AuthenticationException} raised by the realms, or a {@link LoginRejectedException} if the
+	 * login could not be accepted because too many are in progress. A rejection is delivered immediately, on the
+	 * calling thread.
+	 * 
+	 * @param token
+	 * @param callback
+	 */
+	void login(UsernamePasswordToken token, TaskCallback<Subject> callback);
+
+}
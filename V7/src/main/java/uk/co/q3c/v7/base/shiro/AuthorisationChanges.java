@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.inject.Singleton;
+
+/**
+ * Keeps a version number for the authorisation information of each principal, which changes whenever that information
+ * may have changed. {@link BoundedCacheManager} reports a change whenever cached authorisation information is removed
+ * or cleared, which is how an {@link org.apache.shiro.realm.AuthorizingRealm} signals that roles or permissions have
+ * changed, and {@link PageAccessController} compares versions to decide whether its {@link PageAuthorisations} are
+ * still valid. Neither needs to know about the other, and a change is seen by every session of the principal.
+ * <p>
+ * Versions are only held for principals which have changed, up to {@link #MAX_PRINCIPALS}. Beyond that, the change is
+ * treated as a change for everyone and the individual versions are dropped.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class AuthorisationChanges {
+
+	public static final int MAX_PRINCIPALS = 10000;
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentMap<Object, Long> principals = new ConcurrentHashMap<>();
+	/**
+	 * The version at which the information for every principal last changed
+	 */
+	private volatile long all;
+
+	/**
+	 * Records that the authorisation information for {@code principal} may have changed
+	 * 
+	 * @param principal
+	 */
+	public void principalChanged(Object principal) {
+		if (principal == null) {
+			return;
+		}
+		if (principals.size() >= MAX_PRINCIPALS) {
+			allChanged();
+			return;
+		}
+		principals.put(principal, sequence.incrementAndGet());
+	}
+
+	/**
+	 * Records that the authorisation information for every principal may have changed
+	 */
+	public void allChanged() {
+		all = sequence.incrementAndGet();
+		// every individual version is now older than the new value of all
+		principals.clear();
+	}
+
+	/**
+	 * Returns the current version of the authorisation information for {@code principal}. The value is only
+	 * meaningful when compared with an earlier one.
+	 * 
+	 * @param principal
+	 * @return
+	 */
+	public long versionFor(Object principal) {
+		long version = all;
+		if (principal != null) {
+			Long changed = principals.get(principal);
+			if ((changed != null) && (changed > version)) {
+				version = changed;
+			}
+		}
+		return version;
+	}
+
+}
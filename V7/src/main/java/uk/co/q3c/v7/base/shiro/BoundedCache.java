@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.subject.PrincipalCollection;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An in-memory Shiro {@link Cache} which holds at most {@code maxEntries} entries, discarding the least recently used
+ * when full, and treats an entry as absent once it is older than {@code timeToLive} milliseconds. Created by
+ * {@link BoundedCacheManager}.
+ * <p>
+ * Removing or clearing entries is reported to {@link AuthorisationChanges}, if one is given, because that is how a
+ * realm signals that authorisation information has changed.
+ * <p>
+ * Access is synchronized. The cache is used for authorisation information, where a lookup is far cheaper than the
+ * realm call it replaces and contention is low, so a single lock is sufficient.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class BoundedCache<K, V> implements Cache<K, V> {
+
+	private static class TimedValue<V> {
+		private final V value;
+		private final long expiresAt;
+
+		TimedValue(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final String name;
+	private final int maxEntries;
+	private final long timeToLive;
+	private final LinkedHashMap<K, TimedValue<V>> entries;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+	private final AuthorisationChanges changes;
+
+	public BoundedCache(String name, final int maxEntries, long timeToLive) {
+		this(name, maxEntries, timeToLive, null);
+	}
+
+	/**
+	 * @param changes
+	 *            notified when entries are removed or cleared, may be null
+	 */
+	public BoundedCache(String name, final int maxEntries, long timeToLive, AuthorisationChanges changes) {
+		super();
+		this.changes = changes;
+		this.name = name;
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive;
+		// access order, so that the eldest entry is the least recently used
+		this.entries = new LinkedHashMap<K, TimedValue<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, TimedValue<V>> eldest) {
+				if (size() > BoundedCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	@Override
+	public synchronized V get(K key) throws CacheException {
+		TimedValue<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (entry.expiresAt < System.currentTimeMillis()) {
+			entries.remove(key);
+			expirations++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	@Override
+	public synchronized V put(K key, V value) throws CacheException {
+		TimedValue<V> previous = entries.put(key,
+				new TimedValue<V>(value, System.currentTimeMillis() + timeToLive));
+		return (previous == null) ? null : previous.value;
+	}
+
+	@Override
+	public synchronized V remove(K key) throws CacheException {
+		TimedValue<V> previous = entries.remove(key);
+		if (changes != null) {
+			changes.principalChanged(principalOf(key));
+		}
+		return (previous == null) ? null : previous.value;
+	}
+
+	private Object principalOf(Object key) {
+		return (key instanceof PrincipalCollection) ? ((PrincipalCollection) key).getPrimaryPrincipal() : key;
+	}
+
+	/**
+	 * Removes every entry for {@code principal}, whether the key is the principal itself or a
+	 * {@link PrincipalCollection} with {@code principal} as its primary principal (as used by
+	 * {@link org.apache.shiro.realm.AuthorizingRealm})
+	 * 
+	 * @param principal
+	 * @return the number of entries removed
+	 */
+	public synchronized int removePrincipal(Object principal) {
+		int removed = 0;
+		Iterator<K> iter = entries.keySet().iterator();
+		while (iter.hasNext()) {
+			if (principal.equals(principalOf(iter.next()))) {
+				iter.remove();
+				removed++;
+			}
+		}
+		if (changes != null) {
+			changes.principalChanged(principal);
+		}
+		return removed;
+	}
+
+	@Override
+	public synchronized void clear() throws CacheException {
+		entries.clear();
+		if (changes != null) {
+			changes.allChanged();
+		}
+	}
+
+	@Override
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized Set<K> keys() {
+		return ImmutableSet.copyOf(entries.keySet());
+	}
+
+	@Override
+	public synchronized Collection<V> values() {
+		Collection<V> values = new ArrayList<>(entries.size());
+		for (TimedValue<V> entry : entries.values()) {
+			values.add(entry.value);
+		}
+		return values;
+	}
+
+	public synchronized CacheMetrics getMetrics() {
+		return new CacheMetrics(name, entries.size(), maxEntries, hits, misses, evictions, expirations);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A Shiro {@link CacheManager} which creates {@link BoundedCache}s, all with the same size limit and time to live.
+ * Bound by {@link DefaultShiroModule#bindCacheManager()}, and set on the security manager, which passes it to every
+ * realm. For an {@link org.apache.shiro.realm.AuthorizingRealm} with authorisation caching enabled, this means
+ * {@code doGetAuthorizationInfo} is only called once per principal per time to live, instead of on every check.
+ * <p>
+ * Cached authorisation information for a principal is removed on logout (by Shiro) and on login (by
+ * {@link V7SecurityManager}, through {@link #invalidatePrincipal(Object)}), so that a change in a user's roles or
+ * permissions takes effect no later than their next login, or the expiry of the entry. Every removal is reported to
+ * {@link AuthorisationChanges}, so that {@link PageAccessController} recalculates page access at the same time.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class BoundedCacheManager implements CacheManager {
+
+	private static Logger log = LoggerFactory.getLogger(BoundedCacheManager.class);
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	private final ConcurrentMap<String, BoundedCache<?, ?>> caches = new ConcurrentHashMap<>();
+	private final int maxEntries;
+	private final long timeToLive;
+	private final AuthorisationChanges changes;
+
+	@Inject
+	public BoundedCacheManager(AuthorisationChanges changes) {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE, changes);
+	}
+
+	public BoundedCacheManager() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+	}
+
+	public BoundedCacheManager(int maxEntries, long timeToLive) {
+		this(maxEntries, timeToLive, new AuthorisationChanges());
+	}
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of entries in each cache
+	 * @param timeToLive
+	 *            in milliseconds
+	 * @param changes
+	 *            told of every removal, so that others can tell when authorisation information has changed
+	 */
+	public BoundedCacheManager(int maxEntries, long timeToLive, AuthorisationChanges changes) {
+		super();
+		this.maxEntries = maxEntries;
+		this.timeToLive = timeToLive;
+		this.changes = changes;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+		BoundedCache<?, ?> cache = caches.get(name);
+		if (cache == null) {
+			BoundedCache<?, ?> newCache = new BoundedCache<K, V>(name, maxEntries, timeToLive, changes);
+			cache = caches.putIfAbsent(name, newCache);
+			if (cache == null) {
+				log.debug("cache '{}' created, with a maximum of {} entries", name, maxEntries);
+				cache = newCache;
+			}
+		}
+		return (Cache<K, V>) cache;
+	}
+
+	/**
+	 * Removes all entries for {@code principal} from every cache
+	 * 
+	 * @param principal
+	 */
+	public void invalidatePrincipal(Object principal) {
+		if (principal == null) {
+			return;
+		}
+		for (BoundedCache<?, ?> cache : caches.values()) {
+			cache.removePrincipal(principal);
+		}
+		changes.principalChanged(principal);
+	}
+
+	public AuthorisationChanges getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Returns a snapshot of the metrics for each cache, keyed by cache name
+	 * 
+	 * @return
+	 */
+	public Map<String, CacheMetrics> getMetrics() {
+		ImmutableMap.Builder<String, CacheMetrics> builder = ImmutableMap.builder();
+		for (BoundedCache<?, ?> cache : caches.values()) {
+			builder.put(cache.getName(), cache.getMetrics());
+		}
+		return builder.build();
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+/**
+ * An immutable snapshot of the state of a {@link BoundedCache}
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class CacheMetrics {
+
+	private final String name;
+	private final int size;
+	private final int maxEntries;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long expirations;
+
+	public CacheMetrics(String name, int size, int maxEntries, long hits, long misses, long evictions,
+			long expirations) {
+		super();
+		this.name = name;
+		this.size = size;
+		this.maxEntries = maxEntries;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.expirations = expirations;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * The number of entries discarded because the cache was full
+	 * 
+	 * @return
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * The number of entries discarded because they had reached their time to live
+	 * 
+	 * @return
+	 */
+	public long getExpirations() {
+		return expirations;
+	}
+
+	/**
+	 * The proportion of lookups which found a value, between 0 and 1
+	 * 
+	 * @return
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(name);
+		buf.append(": size=");
+		buf.append(size);
+		buf.append("/");
+		buf.append(maxEntries);
+		buf.append(", hits=");
+		buf.append(hits);
+		buf.append(", misses=");
+		buf.append(misses);
+		buf.append(", evictions=");
+		buf.append(evictions);
+		buf.append(", expirations=");
+		buf.append(expirations);
+		return buf.toString();
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.apache.shiro.authz.permission.WildcardPermissionResolver;
+
+/**
+ * Resolves each permission string only once, so that the permissions a Realm returns as strings are not parsed again on
+ * every permission check. Together with the precompiled {@link PagePermission} held by each SitemapNode, this means a
+ * page permission check does no string parsing at all. Resolution is delegated to a
+ * {@link CompiledPermissionResolver}, so that the permissions can be compiled into a {@link PermissionTrie}, unless
+ * another resolver, such as Shiro's {@link WildcardPermissionResolver}, is supplied. The resolved permissions must be
+ * immutable, or at least never modified.
+ * <p>
+ * To protect against an unbounded number of distinct strings, nothing more is cached once {@link #MAX_ENTRIES} have
+ * been resolved.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class CachingPermissionResolver implements PermissionResolver {
+
+	public static final int MAX_ENTRIES = 10000;
+
+	private final PermissionResolver delegate;
+	private final ConcurrentMap<String, Permission> resolved = new ConcurrentHashMap<>();
+
+	public CachingPermissionResolver() {
+		this(new CompiledPermissionResolver());
+	}
+
+	public CachingPermissionResolver(PermissionResolver delegate) {
+		super();
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Permission resolvePermission(String permissionString) {
+		Permission permission = resolved.get(permissionString);
+		if (permission == null) {
+			permission = delegate.resolvePermission(permissionString);
+			if (resolved.size() < MAX_ENTRIES) {
+				resolved.put(permissionString, permission);
+			}
+		}
+		return permission;
+	}
+
+	public int size() {
+		return resolved.size();
+	}
+
+	public void clear() {
+		resolved.clear();
+	}
+
+}
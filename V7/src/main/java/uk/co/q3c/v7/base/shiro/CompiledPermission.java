@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A {@link WildcardPermission} whose parts are parsed once, on construction, and then held in immutable form, so that
+ * an instance can be shared and used for any number of checks without further parsing. The parts are available through
+ * {@link #parts()}, which allows a {@link PermissionTrie} to compile them.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class CompiledPermission extends WildcardPermission {
+
+	private List<Set<String>> frozenParts;
+	private int hash;
+
+	/**
+	 * For sub-classes, which must call {@link #compile(String)} in their constructors
+	 */
+	protected CompiledPermission() {
+		super();
+	}
+
+	public CompiledPermission(String wildcardString) {
+		super();
+		compile(wildcardString);
+	}
+
+	protected void compile(String wildcardString) {
+		setParts(wildcardString);
+		ImmutableList.Builder<Set<String>> builder = ImmutableList.builder();
+		for (Set<String> part : super.getParts()) {
+			builder.add(ImmutableSet.copyOf(part));
+		}
+		frozenParts = builder.build();
+		hash = frozenParts.hashCode();
+	}
+
+	@Override
+	protected List<Set<String>> getParts() {
+		return frozenParts;
+	}
+
+	/**
+	 * The parts of the permission, each being the set of sub-parts. The list and sets are immutable
+	 * 
+	 * @return
+	 */
+	public List<Set<String>> parts() {
+		return frozenParts;
+	}
+
+	/**
+	 * Equal permissions are always implied, which avoids a part by part comparison
+	 * 
+	 * @see org.apache.shiro.authz.permission.WildcardPermission#implies(org.apache.shiro.authz.Permission)
+	 */
+	@Override
+	public boolean implies(Permission p) {
+		if (equals(p)) {
+			return true;
+		}
+		return super.implies(p);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof CompiledPermission) {
+			CompiledPermission other = (CompiledPermission) o;
+			return (hash == other.hash) && frozenParts.equals(other.frozenParts);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+
+/**
+ * Resolves permission strings to {@link CompiledPermission}s, which behave exactly as Shiro's WildcardPermission, but
+ * can be compiled into a {@link PermissionTrie}
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class CompiledPermissionResolver implements PermissionResolver {
+
+	@Override
+	public Permission resolvePermission(String permissionString) {
+		return new CompiledPermission(permissionString);
+	}
+
+}
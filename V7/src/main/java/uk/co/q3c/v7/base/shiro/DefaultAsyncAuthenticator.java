@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.task.BackgroundTaskService;
+import uk.co.q3c.v7.base.task.TaskCallback;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Default implementation of {@link AsyncAuthenticator}. Login is split in two. The realm calls, through
+ * {@link V7SecurityManager#authenticate(org.apache.shiro.authc.AuthenticationToken)}, run in the
+ * {@link BackgroundTaskService#AUTHENTICATION_POOL}. The new Subject is then created and stored in the VaadinSession,
+ * through {@link V7SecurityManager#login(Subject, org.apache.shiro.authc.AuthenticationToken, AuthenticationInfo)},
+ * when the result is delivered to the UI.
+ * <p>
+ * Admission control comes from the pool: its queue is bounded, and so is the number of tasks per VaadinSession. When
+ * either is full the login is rejected at once, with a {@link LoginRejectedException}, rather than waiting. The
+ * {@link BackgroundTaskService} is started by the servlet; if it has not been, the login is done synchronously and a
+ * warning is logged.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class DefaultAsyncAuthenticator implements AsyncAuthenticator {
+
+	private static Logger log = LoggerFactory.getLogger(DefaultAsyncAuthenticator.class);
+	private final BackgroundTaskService taskService;
+	private final SubjectProvider subjectProvider;
+	private final Provider<V7SecurityManager> securityManagerProvider;
+	private final AtomicLong rejected = new AtomicLong();
+
+	@Inject
+	protected DefaultAsyncAuthenticator(BackgroundTaskService taskService, SubjectProvider subjectProvider,
+			Provider<V7SecurityManager> securityManagerProvider) {
+		super();
+		this.taskService = taskService;
+		this.subjectProvider = subjectProvider;
+		this.securityManagerProvider = securityManagerProvider;
+	}
+
+	@Override
+	public void login(final UsernamePasswordToken token, final TaskCallback<Subject> callback) {
+		final Subject subject = subjectProvider.get();
+		if (!taskService.isStarted()) {
+			log.warn("{} has not been started, login for {} is done on the request thread", taskService.getName(),
+					token.getUsername());
+			loginNow(subject, token, callback);
+			return;
+		}
+		final V7SecurityManager securityManager = securityManagerProvider.get();
+		Callable<AuthenticationInfo> authentication = new Callable<AuthenticationInfo>() {
+			@Override
+			public AuthenticationInfo call() throws Exception {
+				return securityManager.authenticate(token);
+			}
+		};
+		TaskCallback<AuthenticationInfo> completion = new TaskCallback<AuthenticationInfo>() {
+
+			@Override
+			public void onSuccess(AuthenticationInfo info) {
+				Subject loggedIn;
+				try {
+					loggedIn = securityManager.login(subject, token, info);
+				} catch (AuthenticationException ae) {
+					callback.onFailure(ae);
+					return;
+				}
+				callback.onSuccess(loggedIn);
+			}
+
+			@Override
+			public void onFailure(Throwable cause) {
+				if (cause instanceof AuthenticationException) {
+					securityManager.loginFailed(token, (AuthenticationException) cause, subject);
+				}
+				callback.onFailure(cause);
+			}
+		};
+		try {
+			taskService.submit(BackgroundTaskService.AUTHENTICATION_POOL, authentication, completion);
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			log.warn("Login for {} rejected: {}", token.getUsername(), e.getMessage());
+			callback.onFailure(new LoginRejectedException("Too many logins in progress", e));
+		}
+	}
+
+	private void loginNow(Subject subject, UsernamePasswordToken token, TaskCallback<Subject> callback) {
+		try {
+			subject.login(token);
+		} catch (AuthenticationException ae) {
+			callback.onFailure(ae);
+			return;
+		}
+		callback.onSuccess(subject);
+	}
+
+	/**
+	 * The number of logins rejected because the authentication pool was saturated
+	 * 
+	 * @return
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+}
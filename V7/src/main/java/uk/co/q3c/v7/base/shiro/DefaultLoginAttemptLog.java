@@ -13,88 +13,332 @@
 package uk.co.q3c.v7.base.shiro;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-
-import com.google.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Singleton;
 
+/**
+ * Tracks login attempts per username and per client address (the host of the token, where there is one). Failed
+ * attempts are counted over a sliding window (15 minutes by default), so they decay with time, and an
+ * {@link ExcessiveAttemptsException} is thrown when either the username or the address reaches its limit within the
+ * window. The address limit protects against credential stuffing, where many usernames are tried from one address.
+ * <p>
+ * The log is safe for concurrent use, without locking on the login path. Its size is bounded: when
+ * {@link #setMaximumEntries(int)} usernames or addresses are being tracked, those which have been idle longest are
+ * discarded. A username or address with failed attempts within the window is never discarded, as that would reset
+ * its count; if all the entries have failures within the window, a failed attempt for a username or address which is
+ * not yet tracked is rejected with an {@link ExcessiveAttemptsException}, and a successful one is simply not
+ * recorded.
+ * 
+ * @author David Sowerby
+ * 
+ */
 @Singleton
 public class DefaultLoginAttemptLog implements LoginAttemptLog {
 
-	private int maxAttempts = 3;
-	private final Map<String, Integer> unsuccessful = new TreeMap<>();
-	private final Map<String, List<DateTime>> successful = new TreeMap<>();
-	private final Map<String, DateTime> latestSuccessful = new TreeMap<>();
+	private static Logger log = LoggerFactory.getLogger(DefaultLoginAttemptLog.class);
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	public static final int DEFAULT_MAX_ATTEMPTS_PER_ADDRESS = 50;
+	public static final int DEFAULT_MAX_ENTRIES = 100000;
+	public static final int WINDOW_BUCKETS = 15;
+	public static final long DEFAULT_WINDOW_MILLIS = 15 * 60 * 1000;
+
+	private static class Record {
+		private final SlidingWindowCounter failures;
+		private final AtomicInteger successes = new AtomicInteger();
+		private volatile long lastSuccess;
+		private volatile long lastAccess;
+
+		Record(long windowMillis) {
+			failures = new SlidingWindowCounter(WINDOW_BUCKETS, Math.max(1, windowMillis / WINDOW_BUCKETS));
+		}
+	}
+
+	private static class Candidate implements Comparable<Candidate> {
+		private final String key;
+		private final Record record;
+		private final long lastAccess;
+
+		Candidate(String key, Record record) {
+			this.key = key;
+			this.record = record;
+			this.lastAccess = record.lastAccess;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return (lastAccess < other.lastAccess) ? -1 : ((lastAccess == other.lastAccess) ? 0 : 1);
+		}
+	}
+
+	private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private volatile int maxAttemptsPerAddress = DEFAULT_MAX_ATTEMPTS_PER_ADDRESS;
+	private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+	private volatile long windowMillis = DEFAULT_WINDOW_MILLIS;
+	private final ConcurrentMap<String, Record> users = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Record> addresses = new ConcurrentHashMap<>();
+	private final AtomicBoolean evictingUsers = new AtomicBoolean(false);
+	private final AtomicBoolean evictingAddresses = new AtomicBoolean(false);
 
 	@Override
 	public void setMaximumAttempts(int maxAttempts) {
 		this.maxAttempts = maxAttempts;
 	}
 
+	/**
+	 * The number of failed attempts allowed from a single client address within the window, across all usernames
+	 * 
+	 * @param maxAttemptsPerAddress
+	 */
+	public void setMaximumAttemptsPerAddress(int maxAttemptsPerAddress) {
+		this.maxAttemptsPerAddress = maxAttemptsPerAddress;
+	}
+
+	/**
+	 * The maximum number of usernames, and separately of addresses, which are tracked at any one time
+	 * 
+	 * @param maxEntries
+	 */
+	public void setMaximumEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * The period over which failed attempts are counted. Applies only to usernames and addresses not already being
+	 * tracked
+	 * 
+	 * @param windowMillis
+	 */
+	public void setWindowMillis(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
 	@Override
 	public void recordSuccessfulAttempt(UsernamePasswordToken upToken) {
-		String username = upToken.getUsername();
-		List<DateTime> list = successful.get(username);
-		if (list == null) {
-			list = new ArrayList<>();
-			successful.put(username, list);
-
+		long now = System.currentTimeMillis();
+		Record record = record(users, evictingUsers, upToken.getUsername(), now);
+		if (record == null) {
+			return;
 		}
-		DateTime now = DateTime.now();
-		latestSuccessful.put(username, now);
-		list.add(now);
+		record.successes.incrementAndGet();
+		record.lastSuccess = now;
 	}
 
 	/**
-	 * records a failed login attempt and throws a ExcessiveAttemptsException if the number of attempts exceeds
-	 * {@link #maxAttempts}
+	 * records a failed login attempt and throws a ExcessiveAttemptsException if the number of attempts within the
+	 * window, for either the username or the client address, reaches its maximum
 	 * 
 	 * @see uk.co.q3c.v7.base.shiro.LoginAttemptLog#recordFailedAttempt(org.apache.shiro.authc.UsernamePasswordToken)
 	 */
 	@Override
 	public void recordFailedAttempt(UsernamePasswordToken upToken) {
-		Integer record = unsuccessful.get(upToken.getUsername());
-		int count = 0;
-		if (record == null) {
-			count = 0;
-		} else {
-			count = record;
+		long now = System.currentTimeMillis();
+		int userCount = fail(users, evictingUsers, upToken.getUsername(), now);
+		int addressCount = 0;
+		if (upToken.getHost() != null) {
+			addressCount = fail(addresses, evictingAddresses, upToken.getHost(), now);
 		}
-		count++;
-		if (count >= maxAttempts) {
+		if ((userCount < 0) || (addressCount < 0)) {
+			log.warn("Login attempt log is full, failed attempt for {} rejected", upToken.getUsername());
+			throw new ExcessiveAttemptsException("Login failed after maximum attempts");
+		}
+		if (userCount >= maxAttempts) {
+			throw new ExcessiveAttemptsException("Login failed after maximum attempts");
+		}
+		if (addressCount >= maxAttemptsPerAddress) {
+			log.warn("Maximum failed login attempts reached from {}", upToken.getHost());
 			throw new ExcessiveAttemptsException("Login failed after maximum attempts");
 		}
-		unsuccessful.put(upToken.getUsername(), new Integer(count));
 	}
 
-	@Override
-	public int failedAttempts(String username) {
-		Integer record = unsuccessful.get(username);
+	/**
+	 * Records a failure against {@code key}, and returns the count within the window, or -1 if the log is full and
+	 * {@code key} is not already tracked
+	 */
+	private int fail(ConcurrentMap<String, Record> records, AtomicBoolean evicting, String key, long now) {
+		Record record = record(records, evicting, key, now);
 		if (record == null) {
-			return 0;
-		} else {
-			return record;
+			return -1;
+		}
+		int count = record.failures.increment(now);
+		// the record may have been evicted, before this failure was counted, by another thread
+		if (records.get(key) != record) {
+			records.putIfAbsent(key, record);
 		}
+		return count;
+	}
+
+	/**
+	 * Returns the record for {@code key}, creating it if necessary, or null if it is not tracked and there is no room
+	 * for it
+	 */
+	private Record record(ConcurrentMap<String, Record> records, AtomicBoolean evicting, String key, long now) {
+		Record record = records.get(key);
+		if (record == null) {
+			if ((records.size() >= maxEntries) && !evict(records, evicting, now)) {
+				return null;
+			}
+			Record newRecord = new Record(windowMillis);
+			record = records.putIfAbsent(key, newRecord);
+			if (record == null) {
+				record = newRecord;
+			}
+		}
+		record.lastAccess = now;
+		return record;
+	}
+
+	/**
+	 * Reduces {@code records} to 90% of {@link #maxEntries}, removing those which have been idle longest. Records with
+	 * failures within the window are not removed. Only one thread evicts a map at a time; others carry on without
+	 * waiting
+	 * 
+	 * @return false if {@code records} is still full after eviction
+	 */
+	private boolean evict(ConcurrentMap<String, Record> records, AtomicBoolean evicting, long now) {
+		if (!evicting.compareAndSet(false, true)) {
+			return true;
+		}
+		try {
+			int excess = records.size() - (maxEntries / 10) * 9;
+			List<Candidate> candidates = new ArrayList<>();
+			for (Map.Entry<String, Record> entry : records.entrySet()) {
+				if (entry.getValue().failures.count(now) == 0) {
+					candidates.add(new Candidate(entry.getKey(), entry.getValue()));
+				}
+			}
+			Collections.sort(candidates);
+			int removed = 0;
+			for (Candidate candidate : candidates) {
+				if (removed >= excess) {
+					break;
+				}
+				if (records.remove(candidate.key, candidate.record)) {
+					removed++;
+				}
+			}
+			log.debug("login attempt log reduced to {} entries", records.size());
+			return records.size() < maxEntries;
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Applies an event which has already happened, for example when rebuilding the log from a journal. Limits are not
+	 * checked. Events should be replayed in time order
+	 * 
+	 * @param event
+	 */
+	void replay(LoginAttemptEvent event) {
+		long time = event.getTime();
+		switch (event.getType()) {
+		case FAILURE:
+			fail(users, evictingUsers, event.getUsername(), time);
+			if (event.getHost() != null) {
+				fail(addresses, evictingAddresses, event.getHost(), time);
+			}
+			return;
+		case SUCCESS:
+			Record record = record(users, evictingUsers, event.getUsername(), time);
+			if (record == null) {
+				return;
+			}
+			record.successes.incrementAndGet();
+			record.lastSuccess = Math.max(record.lastSuccess, time);
+			return;
+		case CLEAR:
+			clearUnsuccessful(event.getUsername());
+			return;
+		}
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	@Override
+	public int failedAttempts(String username) {
+		Record record = users.get(username);
+		return (record == null) ? 0 : record.failures.count(System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the number of failed attempts from {@code address} within the window
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public int failedAttemptsFromAddress(String address) {
+		Record record = addresses.get(address);
+		return (record == null) ? 0 : record.failures.count(System.currentTimeMillis());
 	}
 
 	@Override
 	public DateTime dateOfLastSuccess(String username) {
-		return latestSuccessful.get(username);
+		Record record = users.get(username);
+		return ((record == null) || (record.lastSuccess == 0)) ? null : new DateTime(record.lastSuccess);
 	}
 
+	/**
+	 * Returns the number of successful attempts since {@code username} started to be tracked. This is reset if the
+	 * username is evicted
+	 * 
+	 * @see uk.co.q3c.v7.base.shiro.LoginAttemptLog#successfulAttempts(java.lang.String)
+	 */
 	@Override
 	public int successfulAttempts(String username) {
-		return successful.get(username).size();
+		Record record = users.get(username);
+		return (record == null) ? 0 : record.successes.get();
 	}
 
+	/**
+	 * Clears the failed attempts for {@code username}. Failures recorded against the client address are not affected
+	 * 
+	 * @see uk.co.q3c.v7.base.shiro.LoginAttemptLog#clearUnsuccessful(java.lang.String)
+	 */
 	@Override
 	public void clearUnsuccessful(String username) {
-		unsuccessful.remove(username);
+		Record record = users.get(username);
+		if (record == null) {
+			return;
+		}
+		// keep the success history
+		Record cleared = new Record(windowMillis);
+		cleared.successes.set(record.successes.get());
+		cleared.lastSuccess = record.lastSuccess;
+		cleared.lastAccess = record.lastAccess;
+		users.replace(username, record, cleared);
+	}
+
+	/**
+	 * The number of usernames currently tracked
+	 * 
+	 * @return
+	 */
+	public int trackedUsers() {
+		return users.size();
+	}
+
+	/**
+	 * The number of client addresses currently tracked
+	 * 
+	 * @return
+	 */
+	public int trackedAddresses() {
+		return addresses.size();
 	}
 
 }
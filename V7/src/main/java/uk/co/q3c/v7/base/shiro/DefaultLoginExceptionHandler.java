@@ -24,6 +24,8 @@ public class DefaultLoginExceptionHandler implements LoginExceptionHandler {
 	// TODO i18N
 	private final V7Navigator navigator;
 	public static final String invalidLogin = "That username or password was not recognised";
+	public static final String busy = "The system is busy, please try again in a moment";
+	public static final String failed = "The login could not be completed, please try again";
 	public static final String concurrent = "This account is already in use.  You must log out of that session before you can log in again.";
 
 	@Inject
@@ -66,4 +68,14 @@ public class DefaultLoginExceptionHandler implements LoginExceptionHandler {
 		navigator.navigateTo(StandardPageKey.Enable_Account);
 	}
 
+	@Override
+	public void loginRejected(LoginView loginView, UsernamePasswordToken token) {
+		loginView.setStatusMessage(busy);
+	}
+
+	@Override
+	public void loginFailed(LoginView loginView, UsernamePasswordToken token) {
+		loginView.setStatusMessage(failed);
+	}
+
 }
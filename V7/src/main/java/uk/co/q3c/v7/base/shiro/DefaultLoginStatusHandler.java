@@ -45,21 +45,27 @@ import com.vaadin.ui.UI;
 @UIScoped
 public class DefaultLoginStatusHandler implements LoginStatusHandler {
 	private static Logger log = LoggerFactory.getLogger(DefaultLoginStatusHandler.class);
+	private static final String AUDITED_PRINCIPAL = DefaultLoginStatusHandler.class.getName() + ".auditedPrincipal";
 	private final List<LoginStatusListener> listeners = new ArrayList<>();
 	private final VaadinSessionProvider sessionProvider;
 	private final SubjectIdentifier subjectIdentifier;
 
 	private final SubjectProvider subjectProvider;
 	private final V7Navigator navigator;
+	private final PageAccessController pageAccessController;
+	private final SecurityAuditLog auditLog;
 
 	@Inject
 	protected DefaultLoginStatusHandler(VaadinSessionProvider sessionProvider, SubjectIdentifier subjectIdentifier,
-			SubjectProvider subjectProvider, V7Navigator navigator) {
+			SubjectProvider subjectProvider, V7Navigator navigator, PageAccessController pageAccessController,
+			SecurityAuditLog auditLog) {
 		super();
 		this.sessionProvider = sessionProvider;
 		this.subjectIdentifier = subjectIdentifier;
 		this.subjectProvider = subjectProvider;
 		this.navigator = navigator;
+		this.pageAccessController = pageAccessController;
+		this.auditLog = auditLog;
 	}
 
 	@Override
@@ -84,15 +90,49 @@ public class DefaultLoginStatusHandler implements LoginStatusHandler {
 		navigator.loginStatusChange(subject.isAuthenticated(), subject);
 	}
 
+	/**
+	 * This handler's own UI responds at once. Other UIs in the session are updated through
+	 * {@link UI#access(Runnable)}, with repeated changes coalesced, except those which are closing. See
+	 * {@link LoginStatusDispatcher}
+	 * <p>
+	 * The change is recorded in the {@link SecurityAuditLog} as a {@link SecurityEvent#LOGIN} or
+	 * {@link SecurityEvent#LOGOUT}.
+	 * 
+	 * @see uk.co.q3c.v7.base.shiro.LoginStatusHandler#initiateStatusChange()
+	 */
 	@Override
 	public void initiateStatusChange() {
 
+		Subject subject = subjectProvider.get();
 		VaadinSession session = sessionProvider.get();
+		audit(subject, session);
+		// recalculate the page authorisations once, before any UI needs them
+		pageAccessController.refresh(subject);
+		LoginStatusDispatcher dispatcher = LoginStatusDispatcher.forSession(session);
 		Collection<UI> uIs = session.getUIs();
 
 		for (UI ui : uIs) {
 			ScopedUI sui = (ScopedUI) ui;
-			sui.getLoginStatusHandler().respondToStatusChange();
+			if (sui.getLoginStatusHandler() == this) {
+				respondToStatusChange();
+			} else if (!ui.isClosing()) {
+				dispatcher.schedule(ui);
+			}
+		}
+	}
+
+	/**
+	 * The principal has already gone by the time a logout is reported, so the principal given at login is kept in the
+	 * session to be recorded with the logout
+	 */
+	private void audit(Subject subject, VaadinSession session) {
+		if (subject.isAuthenticated()) {
+			session.setAttribute(AUDITED_PRINCIPAL, subject.getPrincipal());
+			auditLog.record(SecurityEvent.LOGIN, subject.getPrincipal(), null, null);
+		} else {
+			Object principal = session.getAttribute(AUDITED_PRINCIPAL);
+			session.setAttribute(AUDITED_PRINCIPAL, null);
+			auditLog.record(SecurityEvent.LOGOUT, principal, null, null);
 		}
 	}
 
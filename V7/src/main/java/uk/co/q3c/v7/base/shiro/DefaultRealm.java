@@ -4,12 +4,12 @@ import org.apache.shiro.authc.AccountException;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.authc.credential.CredentialsMatcher;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
-import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.realm.activedirectory.ActiveDirectoryRealm;
 import org.apache.shiro.realm.jdbc.JdbcRealm;
 import org.apache.shiro.realm.ldap.JndiLdapRealm;
@@ -19,17 +19,21 @@ import uk.co.q3c.v7.base.navigate.sitemap.Sitemap;
 
 import com.google.inject.Inject;
 
-public class DefaultRealm extends AuthorizingRealm {
+public class DefaultRealm extends TrieAuthorizingRealm {
 
 	private final LoginAttemptLog loginAttemptLog;
 	private final Sitemap sitemap;
+	private final SecurityAuditLog auditLog;
 
 	@Inject
-	protected DefaultRealm(LoginAttemptLog loginAttemptLog, CredentialsMatcher matcher, Sitemap sitemap) {
+	protected DefaultRealm(LoginAttemptLog loginAttemptLog, CredentialsMatcher matcher, Sitemap sitemap,
+			SecurityAuditLog auditLog) {
 		super(matcher);
 		this.loginAttemptLog = loginAttemptLog;
 		this.sitemap = sitemap;
-		setCachingEnabled(false);
+		this.auditLog = auditLog;
+		// cached by the CacheManager set by the security manager, if there is one
+		setAuthorizationCachingEnabled(true);
 	}
 
 	@Override
@@ -41,8 +45,8 @@ public class DefaultRealm extends AuthorizingRealm {
 	 * This Realm implementation is not expected to be used in a real system, not least because anyone can log in as
 	 * long as they have a password of 'password'! <br>
 	 * <br>
-	 * It does however demonstrate the use of {@link LoginAttemptLog} to track login attempts Authorises all users to
-	 * access the private pages of the {@link Sitemap}
+	 * It does however demonstrate the use of {@link LoginAttemptLog} to track login attempts, and of
+	 * {@link SecurityAuditLog} to audit them. Authorises all users to access the private pages of the {@link Sitemap}
 	 * 
 	 * @see org.apache.shiro.realm.AuthorizingRealm#doGetAuthorizationInfo(org.apache.shiro.subject.PrincipalCollection)
 	 */
@@ -60,9 +64,16 @@ public class DefaultRealm extends AuthorizingRealm {
 
 		if (password.equals("password")) {
 			loginAttemptLog.recordSuccessfulAttempt(upToken);
+			auditLog.record(SecurityEvent.LOGIN_SUCCESS, username, upToken.getHost(), getName());
 			return new SimpleAuthenticationInfo(username, password, this.getName());
 		} else {
-			loginAttemptLog.recordFailedAttempt(upToken);
+			auditLog.record(SecurityEvent.LOGIN_FAILURE, username, upToken.getHost(), getName());
+			try {
+				loginAttemptLog.recordFailedAttempt(upToken);
+			} catch (ExcessiveAttemptsException eae) {
+				auditLog.record(SecurityEvent.LOCKOUT, username, upToken.getHost(), eae.getMessage());
+				throw eae;
+			}
 			return null;
 		}
 
@@ -15,6 +15,7 @@ package uk.co.q3c.v7.base.shiro;
 import java.util.Collection;
 
 import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.config.ConfigurationException;
 import org.apache.shiro.guice.ShiroModule;
 import org.apache.shiro.mgt.SecurityManager;
@@ -41,10 +42,16 @@ public class DefaultShiroModule extends ShiroModule {
 
 		bindCredentialsMatcher();
 		bindLoginAttemptLog();
+		expose(LoginAttemptLog.class);
 		bindRealms();
+		bindCacheManager();
 		bindSubjectIdentifier();
 		expose(SubjectIdentifier.class);
+		bindSecurityAuditLog();
+		expose(SecurityAuditLog.class);
 		bindSubjectProvider();
+		bind(SessionSweeper.class);
+		expose(SessionSweeper.class);
 
 	}
 
@@ -62,6 +69,14 @@ public class DefaultShiroModule extends ShiroModule {
 		bindRealm().to(DefaultRealm.class);
 	}
 
+	/**
+	 * Override this to bind your own Shiro {@link CacheManager}, which is used by the security manager and all realms.
+	 * Authorisation information is cached only by realms which have authorisation caching enabled
+	 */
+	protected void bindCacheManager() {
+		bind(CacheManager.class).to(BoundedCacheManager.class);
+	}
+
 	/**
 	 * Override this to bind your own implementation of {@link LoginAttemptLog}
 	 */
@@ -69,6 +84,13 @@ public class DefaultShiroModule extends ShiroModule {
 		bind(LoginAttemptLog.class).to(DefaultLoginAttemptLog.class);
 	}
 
+	/**
+	 * Override this to bind your own implementation of {@link SecurityAuditLog}
+	 */
+	protected void bindSecurityAuditLog() {
+		bind(SecurityAuditLog.class).to(RingBufferSecurityAuditLog.class);
+	}
+
 	/**
 	 * Override this method to bind your own {@link CredentialsMatcher} implementation
 	 */
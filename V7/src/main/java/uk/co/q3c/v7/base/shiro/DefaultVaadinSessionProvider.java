@@ -39,4 +39,9 @@ public class DefaultVaadinSessionProvider implements VaadinSessionProvider {
 		return session;
 	}
 
+	@Override
+	public VaadinSession getIfPresent() {
+		return VaadinSession.getCurrent();
+	}
+
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.util.ResourceUtils;
+import uk.co.q3c.v7.base.services.AbstractServiceI18N;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.i18n.DescriptionKey;
+import uk.co.q3c.v7.i18n.LabelKey;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A {@link LoginAttemptLog} which keeps its state through restarts, and shares it with other applications on the same
+ * host which use the same journal file. Attempts are counted in memory by a {@link DefaultLoginAttemptLog}, and each
+ * attempt is also queued for a background thread, which writes the queue to a memory-mapped {@link LoginAttemptJournal}
+ * in batches, every {@link #FLUSH_INTERVAL} ms. The login request never waits for the file. The same thread applies any
+ * events written by other applications, and compacts the journal when it is {@link #COMPACTION_THRESHOLD} full, or
+ * every {@link #COMPACTION_INTERVAL} ms. If a compaction leaves the journal above the threshold (because most of its
+ * events are still within the window), the next is not attempted until the journal has filled half of the remaining
+ * space.
+ * <p>
+ * The journal is opened, and the in-memory window rebuilt from it, when the service is started: the failures still
+ * within the window, plus the successes. Until then, attempts are counted in memory only. {@link #stop()} writes any
+ * pending events and closes the journal.
+ * <p>
+ * To use this implementation, override {@link DefaultShiroModule#bindLoginAttemptLog()}. The journal is
+ * {@link #JOURNAL_FILE_NAME} in {@link ResourceUtils#userTempDirectory()}; override {@link #journalFile()} to change it.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class JournalledLoginAttemptLog extends AbstractServiceI18N implements LoginAttemptLog {
+
+	private static Logger log = LoggerFactory.getLogger(JournalledLoginAttemptLog.class);
+	public static final String JOURNAL_FILE_NAME = "v7-login-attempts.journal";
+	public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+	public static final long FLUSH_INTERVAL = 100;
+	public static final long COMPACTION_INTERVAL = 10 * 60 * 1000;
+	public static final double COMPACTION_THRESHOLD = 0.75;
+	private static final int MAX_PENDING = 100000;
+
+	private final DefaultLoginAttemptLog window;
+	private final File file;
+	private final int capacity;
+	private final long instanceId = new Random().nextLong() ^ System.nanoTime();
+	private final BlockingQueue<LoginAttemptEvent> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile LoginAttemptJournal journal;
+	private ScheduledExecutorService writer;
+	private long lastCompaction;
+	private double compactionFill = COMPACTION_THRESHOLD;
+
+	@Inject
+	protected JournalledLoginAttemptLog(Translate translate, DefaultLoginAttemptLog window) {
+		this(translate, window, null, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Uses the journal in {@code file}, or in {@link #journalFile()} if {@code file} is null
+	 * 
+	 * @param translate
+	 * @param window
+	 * @param file
+	 * @param capacity
+	 *            the size of the journal in bytes, if it has to be created
+	 */
+	public JournalledLoginAttemptLog(Translate translate, DefaultLoginAttemptLog window, File file, int capacity) {
+		super(translate);
+		this.window = window;
+		this.file = file;
+		this.capacity = capacity;
+		setNameKey(LabelKey.Login_Attempt_Journal);
+		setDescriptionKey(DescriptionKey.Login_Attempt_Journal);
+	}
+
+	@Override
+	public synchronized Status start() throws Exception {
+		journal = new LoginAttemptJournal((file == null) ? journalFile() : file, capacity);
+		rebuild();
+		lastCompaction = System.currentTimeMillis();
+		compactionFill = COMPACTION_THRESHOLD;
+		writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("v7-login-attempt-journal-%d").setDaemon(true).build());
+		writer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+		return Status.STARTED;
+	}
+
+	/**
+	 * Calls {@link #close()}
+	 * 
+	 * @see uk.co.q3c.v7.base.services.Service#stop()
+	 */
+	@Override
+	public Status stop() {
+		try {
+			close();
+			return Status.STOPPED;
+		} catch (IOException e) {
+			log.error("Unable to close the login attempt journal", e);
+			return Status.FAILED_TO_STOP;
+		}
+	}
+
+	@Override
+	public void serviceStatusChange(Service service, Status fromStatus, Status toStatus) {
+		// no dependencies
+	}
+
+	protected File journalFile() {
+		return new File(ResourceUtils.userTempDirectory(), JOURNAL_FILE_NAME);
+	}
+
+	private void rebuild() throws IOException {
+		long cutoff = System.currentTimeMillis() - window.getWindowMillis();
+		int count = 0;
+		for (LoginAttemptEvent event : journal.readAll()) {
+			if ((event.getTime() >= cutoff) || (event.getType() == LoginAttemptEvent.Type.SUCCESS)) {
+				window.replay(event);
+				count++;
+			}
+		}
+		log.debug("Login attempt log rebuilt from {} journal events", count);
+	}
+
+	/**
+	 * Writes pending events to the journal and applies events from other instances. Called by the background thread,
+	 * but may also be called directly
+	 */
+	public synchronized void flush() {
+		if (journal == null) {
+			return;
+		}
+		List<LoginAttemptEvent> batch = new ArrayList<>();
+		pending.drainTo(batch);
+		long now = System.currentTimeMillis();
+		long cutoff = now - window.getWindowMillis();
+		try {
+			for (LoginAttemptEvent event : journal.append(batch, instanceId, cutoff)) {
+				window.replay(event);
+			}
+			if ((journal.fill() > compactionFill) || (now - lastCompaction > COMPACTION_INTERVAL)) {
+				journal.compact(cutoff);
+				lastCompaction = now;
+				double fill = journal.fill();
+				compactionFill = Math.max(COMPACTION_THRESHOLD, fill + (1 - fill) / 2);
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to update the login attempt journal", e);
+		}
+	}
+
+	/**
+	 * Stops the background thread, writes any pending events and closes the journal. Does nothing if the journal is
+	 * not open
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		ScheduledExecutorService stopping;
+		synchronized (this) {
+			stopping = writer;
+			writer = null;
+		}
+		if (stopping == null) {
+			return;
+		}
+		stopping.shutdown();
+		try {
+			stopping.awaitTermination(FLUSH_INTERVAL * 10, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			flush();
+			journal.close();
+			journal = null;
+		}
+	}
+
+	private void enqueue(LoginAttemptEvent.Type type, String username, String host) {
+		if (journal == null) {
+			return;
+		}
+		if (!pending.offer(new LoginAttemptEvent(type, username, host, System.currentTimeMillis(), instanceId))) {
+			if (dropped.incrementAndGet() % 1000 == 1) {
+				log.warn("Login attempt journal queue is full, {} events dropped", dropped.get());
+			}
+		}
+	}
+
+	@Override
+	public void setMaximumAttempts(int maxAttempts) {
+		window.setMaximumAttempts(maxAttempts);
+	}
+
+	@Override
+	public void recordSuccessfulAttempt(UsernamePasswordToken upToken) {
+		enqueue(LoginAttemptEvent.Type.SUCCESS, upToken.getUsername(), upToken.getHost());
+		window.recordSuccessfulAttempt(upToken);
+	}
+
+	/**
+	 * The attempt is journalled even if it exceeds the maximum, so that the lockout is kept
+	 * 
+	 * @see uk.co.q3c.v7.base.shiro.LoginAttemptLog#recordFailedAttempt(org.apache.shiro.authc.UsernamePasswordToken)
+	 */
+	@Override
+	public void recordFailedAttempt(UsernamePasswordToken upToken) {
+		enqueue(LoginAttemptEvent.Type.FAILURE, upToken.getUsername(), upToken.getHost());
+		window.recordFailedAttempt(upToken);
+	}
+
+	@Override
+	public int failedAttempts(String username) {
+		return window.failedAttempts(username);
+	}
+
+	@Override
+	public DateTime dateOfLastSuccess(String username) {
+		return window.dateOfLastSuccess(username);
+	}
+
+	@Override
+	public int successfulAttempts(String username) {
+		return window.successfulAttempts(username);
+	}
+
+	@Override
+	public void clearUnsuccessful(String username) {
+		enqueue(LoginAttemptEvent.Type.CLEAR, username, null);
+		window.clearUnsuccessful(username);
+	}
+
+	/**
+	 * The number of events which could not be queued for the journal, because the queue was full
+	 * 
+	 * @return
+	 */
+	public long getDroppedEvents() {
+		return dropped.get();
+	}
+
+}
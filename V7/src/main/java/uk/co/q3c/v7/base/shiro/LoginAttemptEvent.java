@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+/**
+ * A single login attempt, or the clearing of failed attempts, as recorded in a {@link LoginAttemptJournal}. Instances
+ * are immutable.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class LoginAttemptEvent {
+
+	enum Type {
+		FAILURE, SUCCESS, CLEAR
+	}
+
+	private final Type type;
+	private final String username;
+	private final String host;
+	private final long time;
+	private final long instanceId;
+
+	LoginAttemptEvent(Type type, String username, String host, long time, long instanceId) {
+		super();
+		this.type = type;
+		this.username = username;
+		this.host = host;
+		this.time = time;
+		this.instanceId = instanceId;
+	}
+
+	Type getType() {
+		return type;
+	}
+
+	String getUsername() {
+		return username;
+	}
+
+	/**
+	 * The client address, may be null
+	 * 
+	 * @return
+	 */
+	String getHost() {
+		return host;
+	}
+
+	long getTime() {
+		return time;
+	}
+
+	/**
+	 * Identifies the {@link JournalledLoginAttemptLog} which recorded the event, so that an instance does not apply its
+	 * own events twice
+	 * 
+	 * @return
+	 */
+	long getInstanceId() {
+		return instanceId;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + username + "@" + host + " at " + time;
+	}
+
+}
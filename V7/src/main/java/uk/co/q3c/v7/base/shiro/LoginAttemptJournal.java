@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of {@link LoginAttemptEvent}s, held in a memory-mapped file of fixed capacity. The file may be
+ * shared by several applications on the same host. Each change is made while holding an exclusive lock on the file, and
+ * {@link #append(List, long, long)} returns any events written by other instances since the previous call.
+ * <p>
+ * When the journal is full, or when {@link #compact(long)} is called, it is rewritten in place, keeping only the events
+ * after a cutoff time, plus the latest success for each username. Compaction increments a generation number in the
+ * header. Other instances which see the change skip to the new end of the journal. Any of their events which had not
+ * yet been read are lost to them, which is acceptable for a lockout record.
+ * <p>
+ * Layout: a header of {@link #HEADER_SIZE} bytes (magic, version, generation, end of data), followed by records of
+ * [int length][byte type][long time][long instance id][username][host]. Strings are written as a short length (-1 for
+ * null) followed by UTF-8 bytes.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class LoginAttemptJournal {
+
+	private static Logger log = LoggerFactory.getLogger(LoginAttemptJournal.class);
+	static final int HEADER_SIZE = 32;
+	private static final int MAGIC = 0x56374c41;
+	private static final int VERSION = 1;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int GENERATION_OFFSET = 8;
+	private static final int END_OFFSET = 16;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * A file lock is held by the JVM, not the thread, so journals in the same JVM which share a file must also
+	 * synchronise with each other
+	 */
+	private static final ConcurrentMap<String, Object> monitors = new ConcurrentHashMap<>();
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final Object monitor;
+	private final int capacity;
+	private long generation;
+	private int readPosition;
+
+	/**
+	 * Opens the journal in {@code file}, creating it with {@code capacity} bytes if it does not exist or is not a valid
+	 * journal. An existing journal keeps its own capacity
+	 * 
+	 * @param file
+	 * @param capacity
+	 * @throws IOException
+	 */
+	LoginAttemptJournal(File file, int capacity) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		monitor = monitorFor(file.getCanonicalPath());
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				boolean valid = isValid();
+				this.capacity = valid ? (int) channel.size() : Math.max(capacity, HEADER_SIZE * 2);
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+				if (!valid) {
+					log.info("Creating login attempt journal in {}", file);
+					buffer.putInt(MAGIC_OFFSET, MAGIC);
+					buffer.putInt(VERSION_OFFSET, VERSION);
+					buffer.putLong(GENERATION_OFFSET, 0);
+					buffer.putInt(END_OFFSET, HEADER_SIZE);
+					buffer.force();
+				}
+				generation = buffer.getLong(GENERATION_OFFSET);
+				readPosition = HEADER_SIZE;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	private static Object monitorFor(String path) {
+		Object monitor = monitors.get(path);
+		if (monitor == null) {
+			Object newMonitor = new Object();
+			monitor = monitors.putIfAbsent(path, newMonitor);
+			if (monitor == null) {
+				monitor = newMonitor;
+			}
+		}
+		return monitor;
+	}
+
+	private boolean isValid() throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer header = ByteBuffer.allocate(8);
+		channel.read(header, 0);
+		return (header.getInt(MAGIC_OFFSET) == MAGIC) && (header.getInt(VERSION_OFFSET) == VERSION);
+	}
+
+	/**
+	 * Returns all the events in the journal, in the order they were written, and marks them as read
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	List<LoginAttemptEvent> readAll() throws IOException {
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				generation = buffer.getLong(GENERATION_OFFSET);
+				List<LoginAttemptEvent> events = read(HEADER_SIZE, end(), null);
+				readPosition = end();
+				return events;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Writes {@code events} to the end of the journal, compacting it to events after {@code cutoff} if there is not
+	 * enough room. Events which still do not fit are dropped. Returns the events written by other instances since
+	 * the last call, excluding those with the same instance id as {@code events}
+	 * 
+	 * @param events
+	 * @param instanceId
+	 * @param cutoff
+	 * @return
+	 * @throws IOException
+	 */
+	List<LoginAttemptEvent> append(List<LoginAttemptEvent> events, long instanceId, long cutoff) throws IOException {
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				List<LoginAttemptEvent> foreign;
+				if (buffer.getLong(GENERATION_OFFSET) != generation) {
+					generation = buffer.getLong(GENERATION_OFFSET);
+					readPosition = end();
+					foreign = new ArrayList<>();
+				} else {
+					foreign = read(readPosition, end(), instanceId);
+				}
+				if (!events.isEmpty()) {
+					List<byte[]> records = new ArrayList<>(events.size());
+					int required = 0;
+					for (LoginAttemptEvent event : events) {
+						byte[] record = encode(event);
+						records.add(record);
+						required += record.length;
+					}
+					if (end() + required > capacity) {
+						compactLocked(cutoff);
+					}
+					int position = end();
+					int dropped = 0;
+					for (byte[] record : records) {
+						if (position + record.length > capacity) {
+							dropped++;
+							continue;
+						}
+						buffer.position(position);
+						buffer.put(record);
+						position += record.length;
+					}
+					if (dropped > 0) {
+						log.warn("Login attempt journal is full, {} events dropped", dropped);
+					}
+					buffer.putInt(END_OFFSET, position);
+					buffer.force();
+				}
+				readPosition = end();
+				return foreign;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Rewrites the journal, keeping only the events at or after {@code cutoff}, plus the latest success for each
+	 * username
+	 * 
+	 * @param cutoff
+	 * @throws IOException
+	 */
+	void compact(long cutoff) throws IOException {
+		synchronized (monitor) {
+			FileLock lock = channel.lock();
+			try {
+				compactLocked(cutoff);
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	private void compactLocked(long cutoff) {
+		List<LoginAttemptEvent> events = read(HEADER_SIZE, end(), null);
+		Map<String, LoginAttemptEvent> lastSuccess = new HashMap<>();
+		for (LoginAttemptEvent event : events) {
+			if (event.getType() == LoginAttemptEvent.Type.SUCCESS) {
+				lastSuccess.put(event.getUsername(), event);
+			}
+		}
+		int position = HEADER_SIZE;
+		for (LoginAttemptEvent event : events) {
+			if ((event.getTime() >= cutoff) || (lastSuccess.get(event.getUsername()) == event)) {
+				byte[] record = encode(event);
+				buffer.position(position);
+				buffer.put(record);
+				position += record.length;
+			}
+		}
+		log.debug("Login attempt journal compacted from {} to {} bytes", end(), position);
+		generation++;
+		buffer.putLong(GENERATION_OFFSET, generation);
+		buffer.putInt(END_OFFSET, position);
+		buffer.force();
+		readPosition = position;
+	}
+
+	/**
+	 * The proportion of the journal in use, from 0 to 1
+	 * 
+	 * @return
+	 */
+	double fill() {
+		return (double) end() / capacity;
+	}
+
+	void close() throws IOException {
+		synchronized (monitor) {
+			buffer.force();
+			channel.close();
+			raf.close();
+		}
+	}
+
+	private int end() {
+		return buffer.getInt(END_OFFSET);
+	}
+
+	private byte[] encode(LoginAttemptEvent event) {
+		byte[] username = bytes(event.getUsername());
+		byte[] host = bytes(event.getHost());
+		int length = 1 + 8 + 8 + 2 + length(username) + 2 + length(host);
+		ByteBuffer record = ByteBuffer.allocate(4 + length);
+		record.putInt(length);
+		record.put((byte) event.getType().ordinal());
+		record.putLong(event.getTime());
+		record.putLong(event.getInstanceId());
+		putString(record, username);
+		putString(record, host);
+		return record.array();
+	}
+
+	/**
+	 * Reads the events between {@code from} and {@code to}, skipping those from {@code excludeInstance} if it is not
+	 * null. A record whose contents are damaged is skipped, using its length. If the length itself is damaged, the
+	 * records which follow cannot be found, so the journal is truncated at that point, and later appends overwrite the
+	 * damage. Must be called with the file locked
+	 */
+	private List<LoginAttemptEvent> read(int from, int to, Long excludeInstance) {
+		List<LoginAttemptEvent> events = new ArrayList<>();
+		ByteBuffer view = buffer.duplicate();
+		view.limit(Math.min(to, capacity));
+		view.position(from);
+		LoginAttemptEvent.Type[] types = LoginAttemptEvent.Type.values();
+		while (view.remaining() >= 4) {
+			int length = view.getInt();
+			if ((length <= 0) || (length > view.remaining())) {
+				int damaged = view.position() - 4;
+				log.warn("Damaged record in login attempt journal at {}, journal truncated", damaged);
+				// other instances may have read past this point, a new generation makes them skip to the new end
+				generation++;
+				buffer.putLong(GENERATION_OFFSET, generation);
+				buffer.putInt(END_OFFSET, damaged);
+				buffer.force();
+				break;
+			}
+			int next = view.position() + length;
+			int type;
+			long time;
+			long instanceId;
+			String username;
+			String host;
+			try {
+				type = view.get();
+				time = view.getLong();
+				instanceId = view.getLong();
+				username = getString(view);
+				host = getString(view);
+				if (view.position() > next) {
+					throw new BufferUnderflowException();
+				}
+			} catch (BufferUnderflowException | NegativeArraySizeException e) {
+				log.warn("Damaged record in login attempt journal at {}, skipped", next - length - 4);
+				view.position(next);
+				continue;
+			}
+			view.position(next);
+			if ((type < 0) || (type >= types.length) || (username == null)) {
+				continue;
+			}
+			if ((excludeInstance == null) || (excludeInstance != instanceId)) {
+				events.add(new LoginAttemptEvent(types[type], username, host, time, instanceId));
+			}
+		}
+		return events;
+	}
+
+	private byte[] bytes(String s) {
+		if (s == null) {
+			return null;
+		}
+		byte[] bytes = s.getBytes(UTF8);
+		return (bytes.length > Short.MAX_VALUE) ? Arrays.copyOf(bytes, Short.MAX_VALUE) : bytes;
+	}
+
+	private int length(byte[] bytes) {
+		return (bytes == null) ? 0 : bytes.length;
+	}
+
+	private void putString(ByteBuffer record, byte[] bytes) {
+		if (bytes == null) {
+			record.putShort((short) -1);
+		} else {
+			record.putShort((short) bytes.length);
+			record.put(bytes);
+		}
+	}
+
+	private String getString(ByteBuffer view) {
+		int length = view.getShort();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		view.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
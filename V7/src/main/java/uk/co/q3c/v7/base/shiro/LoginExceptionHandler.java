@@ -96,4 +96,23 @@ public interface LoginExceptionHandler {
 	 */
 	void disabledAccount(LoginView loginView, UsernamePasswordToken token);
 
+	/**
+	 * Response to {@link LoginRejectedException}, which occurs when the system is too busy to accept the login. The
+	 * credentials have not been checked, so the user should simply be asked to try again
+	 * 
+	 * @param loginView
+	 * @param token
+	 */
+	void loginRejected(LoginView loginView, UsernamePasswordToken token);
+
+	/**
+	 * Response to a login which did not complete, for a reason other than a Shiro authentication failure - for example
+	 * an error in a realm, or the login being cancelled. The credentials may not have been checked, so the user should
+	 * be asked to try again
+	 * 
+	 * @param loginView
+	 * @param token
+	 */
+	void loginFailed(LoginView loginView, UsernamePasswordToken token);
+
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Delivers login status changes to the UIs of one {@link VaadinSession}, on behalf of {@link DefaultLoginStatusHandler}
+ * . A change is delivered through {@link UI#access(Runnable)}, so it runs after the request which made the change has
+ * been processed, with the target UI current. The UI's components are updated on the server straight away, and the
+ * browser receives the changes with the UI's next response, so a UI which is not showing is brought up to date when it
+ * is next used. While a delivery to a UI is waiting, further changes are coalesced into it; the handler reads the
+ * current Subject when it runs, so nothing is lost.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class LoginStatusDispatcher {
+
+	private static Logger log = LoggerFactory.getLogger(LoginStatusDispatcher.class);
+	private final Set<Integer> pending = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	/**
+	 * Returns the dispatcher for {@code session}, creating it if necessary. The caller must hold the session lock
+	 * 
+	 * @param session
+	 * @return
+	 */
+	static LoginStatusDispatcher forSession(VaadinSession session) {
+		LoginStatusDispatcher dispatcher = session.getAttribute(LoginStatusDispatcher.class);
+		if (dispatcher == null) {
+			dispatcher = new LoginStatusDispatcher();
+			session.setAttribute(LoginStatusDispatcher.class, dispatcher);
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * Queues a login status change for {@code ui}, unless one is already waiting
+	 * 
+	 * @param ui
+	 */
+	void schedule(final UI ui) {
+		final int uiId = ui.getUIId();
+		if (!pending.add(uiId)) {
+			log.debug("login status change for UI {} coalesced", uiId);
+			return;
+		}
+		try {
+			ui.access(new Runnable() {
+				@Override
+				public void run() {
+					pending.remove(uiId);
+					((ScopedUI) ui).getLoginStatusHandler().respondToStatusChange();
+				}
+			});
+		} catch (UIDetachedException e) {
+			pending.remove(uiId);
+		}
+	}
+
+}
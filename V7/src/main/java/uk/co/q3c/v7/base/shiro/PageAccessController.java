@@ -12,18 +12,33 @@
  */
 package uk.co.q3c.v7.base.shiro;
 
+import java.util.BitSet;
+
 import org.apache.shiro.subject.Subject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemo;
 import uk.co.q3c.v7.base.navigate.sitemap.Sitemap;
 import uk.co.q3c.v7.base.navigate.sitemap.SitemapNode;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
+import com.vaadin.server.VaadinSession;
 
 /**
  * Delegate for user access control when relating specifically to pages.
+ * <p>
+ * Where there is a current VaadinSession, the pages the Subject may view are calculated in a single pass over the
+ * {@link Sitemap} and held in the session as {@link PageAuthorisations}, so that each check is a single bit test. The
+ * set is recalculated when the Subject's principal or authentication state, or the structure of the Sitemap, changes,
+ * and when {@link AuthorisationChanges} reports that the Subject's roles or permissions may have changed (which the
+ * {@link BoundedCacheManager} does whenever a realm removes cached authorisation information).
+ * {@link #refresh(Subject)} is called on login and logout.
+ * <p>
+ * Without a session (or where the session lock is not held, as in a background thread) each page is checked
+ * individually, with the results memoised for the duration of a request (see {@link RequestMemo}), keyed on the
+ * authentication state of the Subject as well as the Subject and node.
  * 
  * @author David Sowerby
  * 
@@ -31,19 +46,135 @@ import com.google.inject.Inject;
 public class PageAccessController {
 
 	private static Logger log = LoggerFactory.getLogger(PageAccessController.class);
+
+	/**
+	 * The URI of a page, built only when the audit log writes it
+	 */
+	private static final class PageURI {
+		private final Sitemap sitemap;
+		private final SitemapNode node;
+
+		PageURI(Sitemap sitemap, SitemapNode node) {
+			this.sitemap = sitemap;
+			this.node = node;
+		}
+
+		@Override
+		public String toString() {
+			return sitemap.uri(node);
+		}
+	}
+
 	private final Sitemap sitemap;
+	private final SecurityAuditLog auditLog;
+	private final AuthorisationChanges authorisationChanges;
 
 	@Inject
-	protected PageAccessController(Sitemap sitemap) {
+	protected PageAccessController(Sitemap sitemap, SecurityAuditLog auditLog,
+			AuthorisationChanges authorisationChanges) {
 		super();
+		this.authorisationChanges = authorisationChanges;
 		this.sitemap = sitemap;
+		this.auditLog = auditLog;
 	}
 
 	public boolean isAuthorised(Subject subject, SitemapNode node) {
-		String virtualPage = sitemap.navigationState(node).getVirtualPage();
 		Preconditions.checkNotNull(subject, "subject");
 		Preconditions.checkNotNull(node, "node");
-		Preconditions.checkNotNull(virtualPage, "virtualPage");
+		VaadinSession session = lockedSession();
+		if (session != null) {
+			PageAuthorisations authorisations = session.getAttribute(PageAuthorisations.class);
+			if ((authorisations == null)
+					|| (!authorisations.isValidFor(subject, sitemap.getStructureVersion(),
+							authorisationChanges.versionFor(subject.getPrincipal())))) {
+				authorisations = refresh(subject);
+			}
+			Boolean authorised = authorisations.isAuthorised(node);
+			if (authorised != null) {
+				return authorised;
+			}
+		}
+		return memoisedIsAuthorised(subject, node);
+	}
+
+	/**
+	 * Calculates the pages {@code subject} may view, and stores the result in the current VaadinSession, if there is
+	 * one
+	 * 
+	 * @param subject
+	 * @return
+	 */
+	public PageAuthorisations refresh(Subject subject) {
+		Preconditions.checkNotNull(subject, "subject");
+		int version = sitemap.getStructureVersion();
+		// taken before the calculation, so that a change during it causes another
+		long authorisationVersion = authorisationChanges.versionFor(subject.getPrincipal());
+		BitSet evaluated = new BitSet();
+		BitSet authorised = new BitSet();
+		for (SitemapNode node : sitemap.getAllNodes()) {
+			evaluated.set(node.getId());
+			if (checkAuthorised(subject, node)) {
+				authorised.set(node.getId());
+			}
+		}
+		PageAuthorisations authorisations = new PageAuthorisations(subject, version, authorisationVersion, evaluated,
+				authorised);
+		VaadinSession session = lockedSession();
+		if (session != null) {
+			session.setAttribute(PageAuthorisations.class, authorisations);
+		}
+		log.debug("page authorisations calculated, {} of {} pages authorised", authorisations.getAuthorisedCount(),
+				evaluated.cardinality());
+		return authorisations;
+	}
+
+	/**
+	 * Records, in the {@link SecurityAuditLog}, that {@code subject} has been shown the page for {@code node}, unless
+	 * the page is public. Called by the navigator once access has been allowed; refusals reach the log through
+	 * {@link V7ErrorHandler}. {@link #isAuthorised(Subject, SitemapNode)} does not record anything, because it is also
+	 * used to decide what to offer the user, for example in a navigation tree. The page URI is not built here, but by
+	 * the audit log when it writes the event
+	 * 
+	 * @param subject
+	 * @param node
+	 */
+	public void recordNavigation(Subject subject, SitemapNode node) {
+		if (node.getPageAccessControl() != PageAccessControl.PUBLIC) {
+			auditLog.record(SecurityEvent.PAGE_ACCESS, subject.getPrincipal(), null, new PageURI(sitemap, node));
+		}
+	}
+
+	/**
+	 * Discards the {@link PageAuthorisations} held by the current VaadinSession, so that they are recalculated on the
+	 * next check. This is not needed when roles or permissions are changed through the realm's authorisation cache,
+	 * which is detected through {@link AuthorisationChanges}, but can be used if they are changed some other way
+	 */
+	public void invalidate() {
+		VaadinSession session = lockedSession();
+		if (session != null) {
+			session.setAttribute(PageAuthorisations.class, null);
+		}
+	}
+
+	private VaadinSession lockedSession() {
+		VaadinSession session = VaadinSession.getCurrent();
+		return ((session != null) && session.hasLock()) ? session : null;
+	}
+
+	private boolean memoisedIsAuthorised(Subject subject, SitemapNode node) {
+		Object key = RequestMemo.key(PageAccessController.class, subject, node, subject.isAuthenticated(),
+				subject.isRemembered());
+		Boolean authorised = RequestMemo.get(key);
+		if (authorised == null) {
+			authorised = checkAuthorised(subject, node);
+			RequestMemo.put(key, authorised);
+		}
+		return authorised;
+	}
+
+	private boolean checkAuthorised(Subject subject, SitemapNode node) {
+		Preconditions.checkNotNull(subject, "subject");
+		Preconditions.checkNotNull(node, "node");
 		Preconditions.checkNotNull(node.getPageAccessControl(), "node.getPageAccessControl(), " + node.getUriSegment());
 		switch (node.getPageAccessControl()) {
 		case AUTHENTICATION:
@@ -51,7 +182,7 @@ public class PageAccessController {
 		case GUEST:
 			return (!subject.isAuthenticated()) && (!subject.isRemembered());
 		case PERMISSION:
-			return subject.isPermitted(new PagePermission(virtualPage));
+			return subject.isPermitted(sitemap.pagePermission(node));
 		case PUBLIC:
 			return true;
 		case ROLES:
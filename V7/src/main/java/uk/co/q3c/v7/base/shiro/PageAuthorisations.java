@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+import org.apache.shiro.subject.Subject;
+
+import uk.co.q3c.v7.base.navigate.sitemap.SitemapNode;
+
+import com.google.common.base.Objects;
+
+/**
+ * The pages a Subject may view, as a bitset over {@link SitemapNode} ids, calculated in one pass by
+ * {@link PageAccessController#refresh(Subject)} and held in the VaadinSession. Instances are immutable.
+ * <p>
+ * The set is only valid for the same principal, authentication state, Sitemap structure version and
+ * {@link AuthorisationChanges} version it was calculated for, see {@link #isValidFor(Subject, int, long)}.
+ * <p>
+ * The principal is not serialized, so after deserialization the set is treated as invalid and is recalculated.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class PageAuthorisations implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final BitSet evaluated;
+	private final BitSet authorised;
+	private final int sitemapVersion;
+	private final long authorisationVersion;
+	private final transient Object principal;
+	private final boolean authenticated;
+	private final boolean remembered;
+	// false after deserialization, when the principal is no longer available
+	private final transient boolean live;
+
+	public PageAuthorisations(Subject subject, int sitemapVersion, long authorisationVersion, BitSet evaluated,
+			BitSet authorised) {
+		super();
+		this.authorisationVersion = authorisationVersion;
+		this.principal = subject.getPrincipal();
+		this.authenticated = subject.isAuthenticated();
+		this.remembered = subject.isRemembered();
+		this.sitemapVersion = sitemapVersion;
+		this.evaluated = (BitSet) evaluated.clone();
+		this.authorised = (BitSet) authorised.clone();
+		this.live = true;
+	}
+
+	/**
+	 * Returns true if this set was calculated for a Subject in the same state as {@code subject}, and for the current
+	 * versions of the Sitemap and of the Subject's authorisation information
+	 * 
+	 * @param subject
+	 * @param currentSitemapVersion
+	 * @param currentAuthorisationVersion
+	 * @return
+	 */
+	public boolean isValidFor(Subject subject, int currentSitemapVersion, long currentAuthorisationVersion) {
+		return live && (sitemapVersion == currentSitemapVersion)
+				&& (authorisationVersion == currentAuthorisationVersion)
+				&& (authenticated == subject.isAuthenticated()) && (remembered == subject.isRemembered())
+				&& Objects.equal(principal, subject.getPrincipal());
+	}
+
+	/**
+	 * Returns whether the Subject may view the page represented by {@code node}, or null if the node was not in the
+	 * Sitemap when the set was calculated
+	 * 
+	 * @param node
+	 * @return
+	 */
+	public Boolean isAuthorised(SitemapNode node) {
+		int id = node.getId();
+		if ((id < 0) || (!evaluated.get(id))) {
+			return null;
+		}
+		return authorised.get(id);
+	}
+
+	public int getAuthorisedCount() {
+		return authorised.cardinality();
+	}
+
+}
@@ -12,11 +12,18 @@
  */
 package uk.co.q3c.v7.base.shiro;
 
-import org.apache.shiro.authz.permission.WildcardPermission;
-
 import uk.co.q3c.v7.base.navigate.NavigationState;
 
-public class PagePermission extends WildcardPermission {
+/**
+ * A Shiro permission for viewing or editing a page. As a {@link CompiledPermission}, the permission string is parsed
+ * once, on construction, so an instance can be shared and used for any number of checks without further parsing.
+ * {@link uk.co.q3c.v7.base.navigate.sitemap.Sitemap#pagePermission(uk.co.q3c.v7.base.navigate.sitemap.SitemapNode)}
+ * returns an instance compiled when the Sitemap was published.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class PagePermission extends CompiledPermission {
 
 	public PagePermission(NavigationState navigationState) {
 		super();
@@ -81,8 +88,7 @@ public class PagePermission extends WildcardPermission {
 		String wildcard = appendWildcard ? ":*" : "";
 
 		String permissionString = prefix + action + pagePerm + wildcard;
-		setParts(permissionString);
-
+		compile(permissionString);
 	}
 
 }
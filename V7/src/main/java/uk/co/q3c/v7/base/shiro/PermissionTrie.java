@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A set of held permissions, compiled into a prefix trie over the permission parts, so that {@link #implies(Permission)}
+ * costs time in proportion to the number of parts in the permission being checked, rather than the number of
+ * permissions held. The result is always the same as checking each held permission with
+ * {@link WildcardPermission#implies(Permission)}:
+ * <ul>
+ * <li>a held part containing the wildcard matches any part, and is held as a single wildcard child
+ * <li>a held part with several sub-parts is held as one child for each sub-part
+ * <li>a held permission which ends before the permission being checked implies it
+ * <li>a held permission which is longer than the permission being checked implies it only if all its remaining parts
+ * are wildcards
+ * </ul>
+ * Only {@link CompiledPermission}s expose their parts, so other held permissions are checked linearly, and so is a
+ * permission being checked which is not a CompiledPermission. So is one with more than one sub-part in any part,
+ * because it must be matched by a single held permission containing all of them, which the trie cannot represent.
+ * <p>
+ * Instances are immutable once built, and safe to share between threads.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class PermissionTrie {
+
+	private static final String WILDCARD = "*";
+
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<>(4);
+		private Node wildcard;
+		/**
+		 * A held permission ends at this node
+		 */
+		private boolean terminal;
+		/**
+		 * A held permission ends at this node, or can be reached from it through wildcards only
+		 */
+		private boolean wildcardTerminal;
+
+		Node child(String part) {
+			if (WILDCARD.equals(part)) {
+				if (wildcard == null) {
+					wildcard = new Node();
+				}
+				return wildcard;
+			}
+			Node child = children.get(part);
+			if (child == null) {
+				child = new Node();
+				children.put(part, child);
+			}
+			return child;
+		}
+
+		boolean computeWildcardTerminal() {
+			for (Node child : children.values()) {
+				child.computeWildcardTerminal();
+			}
+			boolean viaWildcard = (wildcard != null) && wildcard.computeWildcardTerminal();
+			wildcardTerminal = terminal || viaWildcard;
+			return wildcardTerminal;
+		}
+	}
+
+	private final Node root = new Node();
+	private final List<Permission> linear;
+	private final Collection<Permission> permissions;
+	private final boolean empty;
+
+	public PermissionTrie(Collection<? extends Permission> permissions) {
+		super();
+		this.permissions = ImmutableList.copyOf(permissions);
+		List<Permission> others = new ArrayList<>();
+		for (Permission permission : permissions) {
+			List<Set<String>> parts = partsOf(permission);
+			if (parts == null) {
+				others.add(permission);
+			} else {
+				add(root, parts, 0);
+			}
+		}
+		root.computeWildcardTerminal();
+		linear = ImmutableList.copyOf(others);
+		empty = this.permissions.isEmpty();
+	}
+
+	/**
+	 * Adds a branch for each combination of sub-parts. A part containing the wildcard needs only the wildcard branch
+	 */
+	private void add(Node node, List<Set<String>> parts, int index) {
+		if (index == parts.size()) {
+			node.terminal = true;
+			return;
+		}
+		Set<String> part = parts.get(index);
+		if (part.contains(WILDCARD)) {
+			add(node.child(WILDCARD), parts, index + 1);
+			return;
+		}
+		for (String subpart : part) {
+			add(node.child(subpart), parts, index + 1);
+		}
+	}
+
+	/**
+	 * Returns true if any of the held permissions implies {@code permission}
+	 * 
+	 * @param permission
+	 * @return
+	 */
+	public boolean implies(Permission permission) {
+		if (empty) {
+			return false;
+		}
+		for (Permission held : linear) {
+			if (held.implies(permission)) {
+				return true;
+			}
+		}
+		List<Set<String>> parts = partsOf(permission);
+		if (parts == null) {
+			return impliesLinear(permission);
+		}
+		for (Set<String> part : parts) {
+			if (part.size() != 1) {
+				return impliesLinear(permission);
+			}
+		}
+		return implies(root, parts, 0);
+	}
+
+	private boolean implies(Node node, List<Set<String>> parts, int index) {
+		if (index == parts.size()) {
+			return node.wildcardTerminal;
+		}
+		if (node.terminal) {
+			return true;
+		}
+		String part = parts.get(index).iterator().next();
+		Node exact = WILDCARD.equals(part) ? null : node.children.get(part);
+		if ((exact != null) && implies(exact, parts, index + 1)) {
+			return true;
+		}
+		return (node.wildcard != null) && implies(node.wildcard, parts, index + 1);
+	}
+
+	private boolean impliesLinear(Permission permission) {
+		for (Permission held : permissions) {
+			if (held.implies(permission)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Collection<Permission> getPermissions() {
+		return permissions;
+	}
+
+	/**
+	 * Returns the parts of {@code permission}, or null if it is not a {@link CompiledPermission}. Other
+	 * WildcardPermissions do not expose their parts
+	 * 
+	 * @param permission
+	 * @return
+	 */
+	static List<Set<String>> partsOf(Permission permission) {
+		if (permission instanceof CompiledPermission) {
+			return ((CompiledPermission) permission).parts();
+		}
+		return null;
+	}
+
+}
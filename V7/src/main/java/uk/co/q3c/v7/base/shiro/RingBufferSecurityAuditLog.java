@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.util.ResourceUtils;
+import uk.co.q3c.v7.base.services.AbstractServiceI18N;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.i18n.DescriptionKey;
+import uk.co.q3c.v7.i18n.LabelKey;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A {@link SecurityAuditLog} which hands events to a single background writer through a ring of preallocated slots.
+ * Recording an event claims the next sequence number with a compare-and-set, fills in the slot for that sequence, and
+ * then publishes it; there is no lock and no allocation. If the ring is full the event is dropped and counted, rather
+ * than making the request wait.
+ * <p>
+ * The writer thread takes published slots in sequence order and writes them to a {@link RollingAuditFile}, which keeps
+ * up to {@link #DEFAULT_MAXIMUM_FILES} gzip files of up to {@link #DEFAULT_MAXIMUM_FILE_BYTES} (uncompressed) each,
+ * starting a new file at least every {@link #DEFAULT_ROLL_INTERVAL} ms. The files are written to
+ * {@link #auditDirectory()}, which by default is {@link #DIRECTORY_NAME} in {@link ResourceUtils#userTempDirectory()}.
+ * The details of an event are converted to a String by the writer thread, not by the thread recording the event.
+ * <p>
+ * The writer thread is started when the service is started; events recorded before then wait in the ring. {@link #stop()}
+ * calls {@link #close()}.
+ * <p>
+ * Bound by {@link DefaultShiroModule#bindSecurityAuditLog()}
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class RingBufferSecurityAuditLog extends AbstractServiceI18N implements SecurityAuditLog {
+
+	private static Logger log = LoggerFactory.getLogger(RingBufferSecurityAuditLog.class);
+	public static final String DIRECTORY_NAME = "security-audit";
+	public static final int DEFAULT_CAPACITY = 8192;
+	public static final long DEFAULT_MAXIMUM_FILE_BYTES = 16 * 1024 * 1024;
+	public static final long DEFAULT_ROLL_INTERVAL = 24 * 60 * 60 * 1000;
+	public static final int DEFAULT_MAXIMUM_FILES = 30;
+	/**
+	 * The longest time, in ms, between an event being written and it being flushed to the file
+	 */
+	public static final long FLUSH_INTERVAL = 1000;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * One preallocated entry of the ring. The fields are written by a single producer before the slot is published,
+	 * and read by the writer thread after it sees the publication
+	 */
+	private static class Slot {
+		long time;
+		SecurityEvent event;
+		Object principal;
+		String host;
+		Object detail;
+	}
+
+	private final Slot[] slots;
+	private final int mask;
+	/**
+	 * The sequence number held by each slot once it has been published, or -1
+	 */
+	private final AtomicLongArray published;
+	/**
+	 * The next sequence number to be claimed by a producer
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+	/**
+	 * The next sequence number to be taken by the writer. Slots before this one may be reused
+	 */
+	private final AtomicLong consumed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final RollingAuditFile file;
+	private volatile Thread writer;
+	private volatile boolean running;
+	private volatile boolean closed;
+	private volatile boolean flushRequested;
+	private volatile long flushedTo;
+
+	@Inject
+	protected RingBufferSecurityAuditLog(Translate translate) {
+		this(translate, null, DEFAULT_CAPACITY, DEFAULT_MAXIMUM_FILE_BYTES, DEFAULT_ROLL_INTERVAL,
+				DEFAULT_MAXIMUM_FILES);
+	}
+
+	/**
+	 * Writes to {@code directory}, or to {@link #auditDirectory()} if {@code directory} is null
+	 * 
+	 * @param translate
+	 * @param directory
+	 * @param capacity
+	 *            the number of slots in the ring, rounded up to a power of 2
+	 * @param maximumFileBytes
+	 * @param rollInterval
+	 * @param maximumFiles
+	 */
+	public RingBufferSecurityAuditLog(Translate translate, File directory, int capacity, long maximumFileBytes,
+			long rollInterval, int maximumFiles) {
+		super(translate);
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		slots = new Slot[size];
+		published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			slots[i] = new Slot();
+			published.set(i, -1);
+		}
+		mask = size - 1;
+		file = new RollingAuditFile((directory == null) ? auditDirectory() : directory, maximumFileBytes,
+				rollInterval, maximumFiles);
+		setNameKey(LabelKey.Security_Audit_Log);
+		setDescriptionKey(DescriptionKey.Security_Audit_Log);
+	}
+
+	@Override
+	public synchronized Status start() throws Exception {
+		closed = false;
+		running = true;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "v7-security-audit");
+		thread.setDaemon(true);
+		thread.start();
+		writer = thread;
+		return Status.STARTED;
+	}
+
+	/**
+	 * Calls {@link #close()}
+	 * 
+	 * @see uk.co.q3c.v7.base.services.Service#stop()
+	 */
+	@Override
+	public Status stop() {
+		close();
+		return Status.STOPPED;
+	}
+
+	@Override
+	public void serviceStatusChange(Service service, Status fromStatus, Status toStatus) {
+		// no dependencies
+	}
+
+	protected File auditDirectory() {
+		return new File(ResourceUtils.userTempDirectory(), DIRECTORY_NAME);
+	}
+
+	@Override
+	public void record(SecurityEvent event, Object principal, String host, Object detail) {
+		if (closed) {
+			dropped.incrementAndGet();
+			return;
+		}
+		long sequence;
+		do {
+			sequence = claimed.get();
+			if (sequence - consumed.get() >= slots.length) {
+				if (dropped.incrementAndGet() % 1000 == 1) {
+					log.warn("Security audit ring is full, {} events dropped", dropped.get());
+				}
+				return;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+		int index = (int) sequence & mask;
+		Slot slot = slots[index];
+		slot.time = System.currentTimeMillis();
+		slot.event = event;
+		slot.principal = principal;
+		slot.host = host;
+		slot.detail = detail;
+		published.lazySet(index, sequence);
+	}
+
+	/**
+	 * The writer loop. Takes each slot as soon as it is published, and parks briefly when there is nothing to take
+	 */
+	private void write() {
+		long lastFlush = System.currentTimeMillis();
+		boolean unflushed = false;
+		while (running || (consumed.get() < claimed.get())) {
+			int count = drain();
+			unflushed = unflushed || (count > 0);
+			long now = System.currentTimeMillis();
+			boolean requested = flushRequested;
+			if (requested || (unflushed && ((count == 0) || (now - lastFlush >= FLUSH_INTERVAL)))) {
+				flushRequested = false;
+				long target = consumed.get();
+				try {
+					file.flush();
+				} catch (IOException e) {
+					log.error("Unable to flush the security audit file", e);
+				}
+				flushedTo = target;
+				lastFlush = now;
+				unflushed = false;
+			}
+			if ((count == 0) && running && !requested) {
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+			}
+		}
+		try {
+			file.close();
+		} catch (IOException e) {
+			log.error("Unable to close the security audit file", e);
+		}
+	}
+
+	/**
+	 * Writes every slot which has been published in sequence, and returns the number written. A slot which has been
+	 * claimed but not yet published stops the drain, so that events are always written in sequence order
+	 */
+	private int drain() {
+		long next = consumed.get();
+		int count = 0;
+		while (true) {
+			int index = (int) next & mask;
+			if (published.get(index) != next) {
+				return count;
+			}
+			Slot slot = slots[index];
+			try {
+				file.write(slot.time, slot.event, slot.principal, slot.host, slot.detail);
+			} catch (IOException | RuntimeException e) {
+				log.error("Unable to write to the security audit file", e);
+			}
+			slot.principal = null;
+			slot.detail = null;
+			next++;
+			count++;
+			consumed.lazySet(next);
+		}
+	}
+
+	/**
+	 * Waits, for up to {@code timeout} ms, until every event recorded before this call has been written and flushed to
+	 * the file. Returns false if that did not happen in time
+	 * 
+	 * @param timeout
+	 * @return
+	 */
+	public boolean flush(long timeout) {
+		long target = claimed.get();
+		long deadline = System.currentTimeMillis() + timeout;
+		while (flushedTo < target) {
+			Thread thread = writer;
+			if ((System.currentTimeMillis() > deadline) || (thread == null) || !thread.isAlive()) {
+				return false;
+			}
+			flushRequested = true;
+			LockSupport.unpark(thread);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the writer thread, once it has written every event already recorded, and closes the file. Events recorded
+	 * after this are dropped, until the service is started again
+	 */
+	public synchronized void close() {
+		closed = true;
+		running = false;
+		Thread thread = writer;
+		writer = null;
+		if (thread == null) {
+			return;
+		}
+		LockSupport.unpark(thread);
+		try {
+			thread.join(FLUSH_INTERVAL * 5);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	public int getCapacity() {
+		return slots.length;
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes audit lines to a series of gzip files in one directory. A new file is started when the current one holds
+ * {@link #getMaximumFileBytes()} of uncompressed text, or has been open for {@link #getRollInterval()} ms, and the
+ * oldest files are deleted so that there are never more than {@link #getMaximumFiles()}. Each file is named
+ * {@link #PREFIX} plus the time (UTC) it was started, so that the names sort in time order.
+ * <p>
+ * The stream is sync flushed by {@link #flush()}, so that a file which was not closed (after a crash, say) can still be
+ * read up to the last flush.
+ * <p>
+ * Not thread safe; it is only used by the writer thread of a {@link RingBufferSecurityAuditLog}.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class RollingAuditFile {
+
+	private static Logger log = LoggerFactory.getLogger(RollingAuditFile.class);
+	static final String PREFIX = "v7-security-audit-";
+	static final String SUFFIX = ".log.gz";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final DateTimeFormatter NAME_FORMAT = DateTimeFormat.forPattern("yyyyMMdd-HHmmss-SSS").withZoneUTC();
+	private static final DateTimeFormatter TIME_FORMAT = ISODateTimeFormat.dateTime().withZoneUTC();
+
+	private final File directory;
+	private final long maximumFileBytes;
+	private final long rollInterval;
+	private final int maximumFiles;
+	private final StringBuilder line = new StringBuilder(256);
+	private OutputStream out;
+	private long written;
+	private long opened;
+
+	RollingAuditFile(File directory, long maximumFileBytes, long rollInterval, int maximumFiles) {
+		super();
+		this.directory = directory;
+		this.maximumFileBytes = maximumFileBytes;
+		this.rollInterval = rollInterval;
+		this.maximumFiles = maximumFiles;
+	}
+
+	/**
+	 * Writes one event as a single tab separated line, starting a new file first if the current one is full or too old
+	 * 
+	 * @throws IOException
+	 */
+	void write(long time, SecurityEvent event, Object principal, String host, Object detail) throws IOException {
+		if ((out == null) || (written >= maximumFileBytes) || (time - opened >= rollInterval)) {
+			roll(time);
+		}
+		line.setLength(0);
+		TIME_FORMAT.printTo(line, time);
+		line.append('\t').append(event.name());
+		append(principal);
+		append(host);
+		append(detail);
+		line.append('\n');
+		byte[] bytes = line.toString().getBytes(UTF8);
+		out.write(bytes);
+		written += bytes.length;
+	}
+
+	/**
+	 * Tabs and line breaks are replaced, so that a value cannot forge a line of its own
+	 */
+	private void append(Object value) {
+		line.append('\t');
+		if (value == null) {
+			line.append('-');
+			return;
+		}
+		String s = value.toString();
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			line.append(((c == '\t') || (c == '\n') || (c == '\r')) ? ' ' : c);
+		}
+	}
+
+	void flush() throws IOException {
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+
+	private void roll(long time) throws IOException {
+		close();
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create audit directory " + directory);
+		}
+		// two rolls within the same millisecond must not overwrite each other
+		String stem = PREFIX + NAME_FORMAT.print(new DateTime(time)) + "-";
+		File file = null;
+		for (int n = 0; (file == null) || file.exists(); n++) {
+			file = new File(directory, stem + String.format("%03d", n) + SUFFIX);
+		}
+		out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)), 8192, true);
+		written = 0;
+		opened = time;
+		log.debug("Security audit now writing to {}", file);
+		deleteOldest();
+	}
+
+	private void deleteOldest() {
+		File[] files = files(directory);
+		for (int i = 0; i < files.length - maximumFiles; i++) {
+			if (!files[i].delete()) {
+				log.warn("Unable to delete old audit file {}", files[i]);
+			}
+		}
+	}
+
+	/**
+	 * The audit files in {@code directory}, oldest first
+	 * 
+	 * @param directory
+	 * @return
+	 */
+	static File[] files(File directory) {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	long getMaximumFileBytes() {
+		return maximumFileBytes;
+	}
+
+	long getRollInterval() {
+		return rollInterval;
+	}
+
+	int getMaximumFiles() {
+		return maximumFiles;
+	}
+
+}
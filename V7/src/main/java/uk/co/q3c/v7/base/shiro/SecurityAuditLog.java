@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+/**
+ * Records security related events - logins, lockouts, authorisation failures and access to protected pages - for later
+ * audit. {@link #record(SecurityEvent, Object, String, Object)} is called from request threads, so implementations
+ * must not block; an event which cannot be recorded at once should be dropped and counted.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public interface SecurityAuditLog {
+
+	/**
+	 * Records an event. Any of the arguments after {@code event} may be null. The principal and the detail are
+	 * converted to Strings only when they are written, possibly by another thread, so they should be immutable, or at
+	 * least safe to read from any thread
+	 * 
+	 * @param event
+	 * @param principal
+	 *            the principal of the Subject concerned, or the username given at login
+	 * @param host
+	 *            the host the request came from, if known
+	 * @param detail
+	 *            for example the page or the reason for a failure
+	 */
+	void record(SecurityEvent event, Object principal, String host, Object detail);
+
+	/**
+	 * The number of events which could not be recorded, because the log could not keep up
+	 * 
+	 * @return
+	 */
+	long getDroppedCount();
+
+}
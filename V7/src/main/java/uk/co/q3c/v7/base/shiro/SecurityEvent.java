@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+/**
+ * The kinds of event recorded by a {@link SecurityAuditLog}
+ * 
+ * @author David Sowerby
+ * 
+ */
+public enum SecurityEvent {
+	/** credentials were accepted by a realm */
+	LOGIN_SUCCESS,
+	/** credentials were rejected by a realm */
+	LOGIN_FAILURE,
+	/** a login was refused because the maximum number of attempts had been exceeded */
+	LOCKOUT,
+	/** the Subject of a session became authenticated */
+	LOGIN,
+	/** the Subject of a session stopped being authenticated */
+	LOGOUT,
+	/** a page which is not public was opened */
+	PAGE_ACCESS,
+	/** an action or page was refused because the Subject lacks the permission or role */
+	UNAUTHORISED,
+	/** an action or page was refused because the Subject is not authenticated */
+	UNAUTHENTICATED
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+/**
+ * An immutable snapshot of the security sessions managed by a {@link VaadinSessionManager}
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class SessionMetrics {
+
+	private final int active;
+	private final long expired;
+	private final long invalidated;
+	private final long sweeps;
+	private final long skipped;
+
+	public SessionMetrics(int active, long expired, long invalidated, long sweeps, long skipped) {
+		super();
+		this.active = active;
+		this.expired = expired;
+		this.invalidated = invalidated;
+		this.sweeps = sweeps;
+		this.skipped = skipped;
+	}
+
+	/**
+	 * The number of security sessions currently held
+	 * 
+	 * @return
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * The number of security sessions removed because they had expired, by passing their timeout without being used
+	 * 
+	 * @return
+	 */
+	public long getExpired() {
+		return expired;
+	}
+
+	/**
+	 * The number of security sessions removed because they had been stopped, for example by logout, or because the
+	 * VaadinSession held too many
+	 * 
+	 * @return
+	 */
+	public long getInvalidated() {
+		return invalidated;
+	}
+
+	public long getSweeps() {
+		return sweeps;
+	}
+
+	/**
+	 * The number of times a VaadinSession was skipped during a sweep, because its lock was not available
+	 * 
+	 * @return
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	@Override
+	public String toString() {
+		return "active=" + active + ", expired=" + expired + ", invalidated=" + invalidated + ", sweeps=" + sweeps
+				+ ", skipped=" + skipped;
+	}
+
+}
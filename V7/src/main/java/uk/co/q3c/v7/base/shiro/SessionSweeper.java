@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.shiro.session.mgt.SessionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.config.ApplicationConfigurationService;
+import uk.co.q3c.v7.base.config.ConfigKeys;
+import uk.co.q3c.v7.base.services.AbstractServiceI18N;
+import uk.co.q3c.v7.base.services.AutoStart;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.i18n.DescriptionKey;
+import uk.co.q3c.v7.i18n.LabelKey;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Periodically calls {@link VaadinSessionManager#sweep()} to remove security sessions which are no longer valid, and
+ * logs the {@link SessionMetrics} whenever anything is removed. Does nothing if the {@link SessionManager} is not a
+ * {@link VaadinSessionManager}. The following value is read from the application configuration when the service
+ * starts:
+ * <ol>
+ * <li>{@link ConfigKeys#SESSION_SWEEP_INTERVAL_KEY} : seconds between sweeps, default 300
+ * </ol>
+ * If the configuration service fails to start, the default is used.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class SessionSweeper extends AbstractServiceI18N {
+
+	private static Logger log = LoggerFactory.getLogger(SessionSweeper.class);
+	public static final long DEFAULT_SWEEP_INTERVAL = 300;
+
+	@AutoStart
+	private final ApplicationConfigurationService configurationService;
+	private final SessionManager sessionManager;
+	private ScheduledExecutorService executor;
+	private long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+	private long removed;
+
+	@Inject
+	protected SessionSweeper(Translate translate, ApplicationConfigurationService configurationService,
+			SessionManager sessionManager) {
+		super(translate);
+		this.configurationService = configurationService;
+		this.sessionManager = sessionManager;
+		setNameKey(LabelKey.Session_Sweeper);
+		setDescriptionKey(DescriptionKey.Session_Sweeper);
+	}
+
+	@Override
+	public Status start() throws Exception {
+		if (!(sessionManager instanceof VaadinSessionManager)) {
+			log.debug("The session manager is not a VaadinSessionManager, {} has nothing to do", getName());
+			return Status.STARTED;
+		}
+		readConfiguration();
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("v7-session-sweeper-%d").setDaemon(true).build());
+		executor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+		return Status.STARTED;
+	}
+
+	private void readConfiguration() {
+		CompositeConfiguration configuration = configurationService.getConfiguration();
+		if ((getStatus() == Status.DEPENDENCY_FAILED) || (configuration == null)) {
+			log.warn("Application configuration is not available, {} will use default settings", getName());
+			return;
+		}
+		sweepInterval = Math.max(1, configuration.getLong(ConfigKeys.SESSION_SWEEP_INTERVAL_KEY,
+				DEFAULT_SWEEP_INTERVAL));
+	}
+
+	/**
+	 * Carries out a single sweep. Exceptions are caught and logged, as an exception escaping from a scheduled task
+	 * would stop any further sweeps
+	 */
+	public void sweep() {
+		if (!(sessionManager instanceof VaadinSessionManager)) {
+			return;
+		}
+		VaadinSessionManager manager = (VaadinSessionManager) sessionManager;
+		try {
+			manager.sweep();
+			SessionMetrics metrics = manager.getMetrics();
+			if (metrics.getExpired() + metrics.getInvalidated() > removed) {
+				removed = metrics.getExpired() + metrics.getInvalidated();
+				log.info("Expired or invalid security sessions removed. {}", metrics);
+			}
+		} catch (Exception e) {
+			log.error("Security session sweep failed", e);
+		}
+	}
+
+	@Override
+	public Status stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		return Status.STOPPED;
+	}
+
+	@Override
+	public void serviceStatusChange(Service service, Status fromStatus, Status toStatus) {
+		// configuration is only read at start up, nothing to do
+	}
+
+	public long getSweepInterval() {
+		return sweepInterval;
+	}
+
+}
@@ -25,9 +25,17 @@ public class ShiroVaadinModule extends AbstractModule {
 		bindLoginExceptionsHandler();
 		bindLoginStatusHandler();
 		bindInvalidURIHandler();
+		bindAsyncAuthenticator();
 
 	}
 
+	/**
+	 * Override this to bind your own implementation of {@link AsyncAuthenticator}
+	 */
+	protected void bindAsyncAuthenticator() {
+		bind(AsyncAuthenticator.class).to(DefaultAsyncAuthenticator.class);
+	}
+
 	/**
 	 * Override this to bind your own implementation of {@link LoginStatusHandler}
 	 */
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over a sliding time window, using a fixed number of buckets, so that its size does not depend on the
+ * number of events. Each bucket covers {@code bucketMillis}, and the window is {@code buckets * bucketMillis}. Events
+ * older than the window drop out of the count as time passes, without any clean up being needed.
+ * <p>
+ * The counter is lock free. Each bucket holds its period and its count in a single long, so that a bucket is reset
+ * and moved to a new period in one step, and no increment is lost or carried over from the old period. A bucket
+ * counts up to {@link #MAX_BUCKET_COUNT} events, after which further events in the same period are ignored.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class SlidingWindowCounter {
+
+	private static final int COUNT_BITS = 16;
+	static final int MAX_BUCKET_COUNT = (1 << COUNT_BITS) - 1;
+
+	private final long bucketMillis;
+	private final int buckets;
+	/**
+	 * period + 1 in the high bits (so that 0 is an empty bucket), count in the low {@link #COUNT_BITS}
+	 */
+	private final AtomicLongArray cells;
+
+	SlidingWindowCounter(int buckets, long bucketMillis) {
+		this.buckets = buckets;
+		this.bucketMillis = bucketMillis;
+		cells = new AtomicLongArray(buckets);
+	}
+
+	/**
+	 * Records an event at {@code now}, and returns the count for the window, including this event
+	 * 
+	 * @param now
+	 * @return
+	 */
+	int increment(long now) {
+		long period = now / bucketMillis;
+		int index = (int) (period % buckets);
+		while (true) {
+			long cell = cells.get(index);
+			long seen = periodOf(cell);
+			if (seen > period) {
+				// an old event replayed after the bucket has moved on, it is outside the window
+				return count(now);
+			}
+			long next;
+			if (seen == period) {
+				if (countOf(cell) == MAX_BUCKET_COUNT) {
+					return count(now);
+				}
+				next = cell + 1;
+			} else {
+				next = ((period + 1) << COUNT_BITS) | 1;
+			}
+			if (cells.compareAndSet(index, cell, next)) {
+				return count(now);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events within the window ending at {@code now}
+	 * 
+	 * @param now
+	 * @return
+	 */
+	int count(long now) {
+		long current = now / bucketMillis;
+		int total = 0;
+		for (int i = 0; i < buckets; i++) {
+			long cell = cells.get(i);
+			long period = periodOf(cell);
+			if ((period >= 0) && (current - period < buckets)) {
+				total += countOf(cell);
+			}
+		}
+		return total;
+	}
+
+	private static long periodOf(long cell) {
+		return (cell >>> COUNT_BITS) - 1;
+	}
+
+	private static int countOf(long cell) {
+		return (int) (cell & MAX_BUCKET_COUNT);
+	}
+
+	long getWindowMillis() {
+		return buckets * bucketMillis;
+	}
+
+}
@@ -17,14 +17,19 @@ import com.google.inject.Singleton;
 
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemo;
+
 import com.google.inject.Provider;
 import com.vaadin.server.VaadinSession;
 
 /**
- * A DI wrapper for {@link SecurityUtils#getSubject()}
+ * A DI wrapper for {@link SecurityUtils#getSubject()}. The Subject is memoised for the duration of a request (see
+ * {@link RequestMemo}), and {@link #invalidate()} must be called if the Subject held by the VaadinSession is replaced.
+ * A guest Subject is created at most once per VaadinSession
  * 
  * @author David Sowerby 15 Jul 2013
  * 
@@ -40,25 +45,49 @@ public class SubjectProvider implements Provider<Subject> {
 		this.sessionProvider = sessionProvider;
 	}
 
+	public static final Object MEMO_KEY = RequestMemo.key(SubjectProvider.class);
+
 	@Override
 	public Subject get() {
-		Subject subject = null;
-		try {
-			VaadinSession session = sessionProvider.get();
-			subject = session.getAttribute(Subject.class);
+		Subject subject = RequestMemo.get(MEMO_KEY);
+		if (subject == null) {
+			subject = lookup();
+			RequestMemo.put(MEMO_KEY, subject);
+		}
+		return subject;
+	}
+
+	/**
+	 * Removes any memoised Subject, so that the next call to {@link #get()} looks it up again
+	 */
+	public static void invalidate() {
+		RequestMemo.remove(MEMO_KEY);
+	}
+
+	/**
+	 * Returns the Subject held by the current VaadinSession. If it has none, a guest Subject is created, and is stored
+	 * in the VaadinSession if the lock is held, so that it is created only once per session. If there is no
+	 * VaadinSession, as in background threads, the Subject bound to the thread is used if there is one, otherwise a
+	 * guest Subject is created
+	 */
+	private Subject lookup() {
+		VaadinSession session = sessionProvider.getIfPresent();
+		if (session == null) {
+			Subject subject = ThreadContext.getSubject();
 			if (subject == null) {
-				log.debug("VaadinSession is valid, but does not have a stored Subject, creating a new Subject");
+				log.debug("There is no VaadinSession, creating a new Subject");
 				subject = new Subject.Builder().buildSubject();
 			}
 			return subject;
-
-		} catch (IllegalStateException ise) {
-			// this may happen in background threads which are not using a session, or during testing
-			log.debug("There is no VaadinSession, creating a new Subject");
+		}
+		Subject subject = session.getAttribute(Subject.class);
+		if (subject == null) {
+			log.debug("VaadinSession is valid, but does not have a stored Subject, creating a new Subject");
 			subject = new Subject.Builder().buildSubject();
-			return subject;
-
+			if (session.hasLock()) {
+				session.setAttribute(Subject.class, subject);
+			}
 		}
-
+		return subject;
 	}
 }
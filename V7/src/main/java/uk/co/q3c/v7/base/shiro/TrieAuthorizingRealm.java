@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.shiro.authc.credential.CredentialsMatcher;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.PermissionResolver;
+import org.apache.shiro.authz.permission.RolePermissionResolver;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.realm.AuthorizingRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * An {@link AuthorizingRealm} which compiles each subject's permissions into a {@link PermissionTrie}, so that a
+ * permission check costs time in proportion to the depth of the permission, rather than the number of permissions the
+ * subject holds. The trie is built from the same permissions AuthorizingRealm would use: the object permissions, the
+ * resolved string permissions and the permissions of each role.
+ * <p>
+ * A trie is kept for as long as the {@link AuthorizationInfo} it was built from, so it is only worth building if that
+ * is cached. When authorisation caching is not enabled, or there is no authorisation cache (because no
+ * {@link CacheManager} has been set), checks are made in the usual way. Permission strings should be
+ * resolved by a {@link CompiledPermissionResolver}, which is what {@link V7SecurityManager} sets up through
+ * {@link CachingPermissionResolver}; other permissions are still correct, but are checked linearly.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public abstract class TrieAuthorizingRealm extends AuthorizingRealm {
+
+	/**
+	 * Weak keys compare by identity, so a trie is never shared between two AuthorizationInfo instances
+	 */
+	private final ConcurrentMap<AuthorizationInfo, PermissionTrie> tries = new MapMaker().weakKeys().makeMap();
+
+	public TrieAuthorizingRealm() {
+		super();
+	}
+
+	public TrieAuthorizingRealm(CacheManager cacheManager) {
+		super(cacheManager);
+	}
+
+	public TrieAuthorizingRealm(CredentialsMatcher matcher) {
+		super(matcher);
+	}
+
+	public TrieAuthorizingRealm(CacheManager cacheManager, CredentialsMatcher matcher) {
+		super(cacheManager, matcher);
+	}
+
+	@Override
+	public boolean isPermitted(PrincipalCollection principals, Permission permission) {
+		if (!useTrie()) {
+			return super.isPermitted(principals, permission);
+		}
+		AuthorizationInfo info = getAuthorizationInfo(principals);
+		return (info != null) && trieFor(info).implies(permission);
+	}
+
+	@Override
+	protected boolean[] isPermitted(List<Permission> permissions, AuthorizationInfo info) {
+		if (!useTrie() || (info == null) || (permissions == null)) {
+			return super.isPermitted(permissions, info);
+		}
+		PermissionTrie trie = trieFor(info);
+		boolean[] result = new boolean[permissions.size()];
+		int i = 0;
+		for (Permission permission : permissions) {
+			result[i++] = trie.implies(permission);
+		}
+		return result;
+	}
+
+	@Override
+	protected boolean isPermittedAll(Collection<Permission> permissions, AuthorizationInfo info) {
+		if (!useTrie() || (info == null) || (permissions == null)) {
+			return super.isPermittedAll(permissions, info);
+		}
+		PermissionTrie trie = trieFor(info);
+		for (Permission permission : permissions) {
+			if (!trie.implies(permission)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if AuthorizationInfo is cached, so that the same instance, and therefore the same trie, is used by
+	 * successive checks. Without a cache, each check gets a new AuthorizationInfo, and building a trie for it would cost
+	 * more than the check
+	 */
+	private boolean useTrie() {
+		return isAuthorizationCachingEnabled() && (getAuthorizationCache() != null);
+	}
+
+	/**
+	 * Returns the trie for {@code info}, building it if necessary. Two threads may build the same trie at once, which
+	 * is harmless
+	 * 
+	 * @param info
+	 * @return
+	 */
+	protected PermissionTrie trieFor(AuthorizationInfo info) {
+		PermissionTrie trie = tries.get(info);
+		if (trie == null) {
+			trie = new PermissionTrie(permissionsOf(info));
+			tries.put(info, trie);
+		}
+		return trie;
+	}
+
+	private Collection<Permission> permissionsOf(AuthorizationInfo info) {
+		List<Permission> permissions = new ArrayList<>();
+		if (info.getObjectPermissions() != null) {
+			permissions.addAll(info.getObjectPermissions());
+		}
+		PermissionResolver resolver = getPermissionResolver();
+		if ((info.getStringPermissions() != null) && (resolver != null)) {
+			for (String permission : info.getStringPermissions()) {
+				permissions.add(resolver.resolvePermission(permission));
+			}
+		}
+		RolePermissionResolver roleResolver = getRolePermissionResolver();
+		if ((info.getRoles() != null) && (roleResolver != null)) {
+			for (String role : info.getRoles()) {
+				Collection<Permission> rolePermissions = roleResolver.resolvePermissionsInRole(role);
+				if (rolePermissions != null) {
+					permissions.addAll(rolePermissions);
+				}
+			}
+		}
+		return permissions;
+	}
+
+}
@@ -29,7 +29,7 @@ import com.vaadin.server.ErrorEvent;
 /**
  * Extends the {@link DefaultErrorHandler} to intercept known V& exceptions, including Shiro related exceptions -
  * {@link UnauthorizedException} and {@link UnauthenticatedException}. Uses pluggable handlers for all caught
- * exceptions.
+ * exceptions. Authentication and authorisation failures are also recorded in the {@link SecurityAuditLog}.
  * 
  * @author David Sowerby 4 Jan 2013
  * 
@@ -41,17 +41,21 @@ public class V7ErrorHandler extends DefaultErrorHandler {
 	private final InvalidURIExceptionHandler invalidUriHandler;
 	private final ErrorView errorView;
 	private final V7Navigator navigator;
+	private final SecurityAuditLog auditLog;
+	private final SubjectProvider subjectProvider;
 
 	@Inject
 	protected V7ErrorHandler(UnauthenticatedExceptionHandler authenticationHandler,
 			UnauthorizedExceptionHandler authorisationHandler, InvalidURIExceptionHandler invalidUriHandler,
-			ErrorView errorView, V7Navigator navigator) {
+			ErrorView errorView, V7Navigator navigator, SecurityAuditLog auditLog, SubjectProvider subjectProvider) {
 		super();
 		this.authenticationHandler = authenticationHandler;
 		this.authorisationHandler = authorisationHandler;
 		this.invalidUriHandler = invalidUriHandler;
 		this.errorView = errorView;
 		this.navigator = navigator;
+		this.auditLog = auditLog;
+		this.subjectProvider = subjectProvider;
 	}
 
 	@Override
@@ -68,6 +72,7 @@ public class V7ErrorHandler extends DefaultErrorHandler {
 		// handle an unauthenticated access attempt
 		int unauthenticated = ExceptionUtils.indexOfThrowable(originalError, UnauthenticatedException.class);
 		if (unauthenticated >= 0) {
+			audit(SecurityEvent.UNAUTHENTICATED, originalError, unauthenticated);
 			authenticationHandler.invoke();
 			return;
 		}
@@ -75,6 +80,7 @@ public class V7ErrorHandler extends DefaultErrorHandler {
 		// handle an unauthorised access attempt
 		int unauthorised = ExceptionUtils.indexOfThrowable(originalError, UnauthorizedException.class);
 		if (unauthorised >= 0) {
+			audit(SecurityEvent.UNAUTHORISED, originalError, unauthorised);
 			authorisationHandler.invoke();
 			return;
 		}
@@ -84,4 +90,9 @@ public class V7ErrorHandler extends DefaultErrorHandler {
 
 	}
 
+	private void audit(SecurityEvent event, Throwable originalError, int index) {
+		Throwable cause = ExceptionUtils.getThrowableList(originalError).get(index);
+		auditLog.record(event, subjectProvider.get().getPrincipal(), null, cause.getMessage());
+	}
+
 }
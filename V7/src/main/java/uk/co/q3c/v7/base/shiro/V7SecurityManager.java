@@ -16,8 +16,11 @@ import java.util.Collection;
 
 import com.google.inject.Inject;
 
+import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.ModularRealmAuthorizer;
+import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.mgt.DefaultSecurityManager;
 import org.apache.shiro.realm.Realm;
 import org.apache.shiro.session.mgt.SessionManager;
@@ -35,22 +38,67 @@ public class V7SecurityManager extends DefaultSecurityManager {
 
 	public V7SecurityManager() {
 		super();
+		setPermissionResolver();
 	}
 
 	public V7SecurityManager(Collection<Realm> realms) {
 		super(realms);
+		setPermissionResolver();
+	}
+
+	/**
+	 * Sets a {@link CachingPermissionResolver} on the authorizer, which applies it to all the realms, so that
+	 * permission strings are parsed only once
+	 */
+	private void setPermissionResolver() {
+		if (getAuthorizer() instanceof ModularRealmAuthorizer) {
+			((ModularRealmAuthorizer) getAuthorizer()).setPermissionResolver(new CachingPermissionResolver());
+		}
 	}
 
 	@Override
 	protected void onSuccessfulLogin(AuthenticationToken token, AuthenticationInfo info, Subject subject) {
 		super.onSuccessfulLogin(token, info, subject);
+		// make sure authorisation is reloaded for the new login
+		if (getCacheManager() instanceof BoundedCacheManager) {
+			((BoundedCacheManager) getCacheManager()).invalidatePrincipal(subject.getPrincipal());
+		}
 		setSubject(subject);
 	}
 
+	/**
+	 * Completes a login for which {@code info} has already been obtained from {@link #authenticate(AuthenticationToken)}
+	 * , usually on another thread. This is the second half of {@link #login(Subject, AuthenticationToken)}, and must be
+	 * called while holding the VaadinSession lock, because the new Subject is stored in the VaadinSession
+	 * 
+	 * @param subject
+	 *            the Subject which was current when the login started
+	 * @param token
+	 * @param info
+	 * @return the logged in Subject
+	 */
+	public Subject login(Subject subject, AuthenticationToken token, AuthenticationInfo info) {
+		Subject loggedIn = createSubject(token, info, subject);
+		onSuccessfulLogin(token, info, loggedIn);
+		return loggedIn;
+	}
+
+	/**
+	 * The failure counterpart of {@link #login(Subject, AuthenticationToken, AuthenticationInfo)}
+	 * 
+	 * @param token
+	 * @param ae
+	 * @param subject
+	 */
+	public void loginFailed(AuthenticationToken token, AuthenticationException ae, Subject subject) {
+		onFailedLogin(token, ae, subject);
+	}
+
 	protected void setSubject(Subject subject) {
 		VaadinSession session = sessionProvider.get();
 		log.debug("storing Subject instance in VaadinSession");
 		session.setAttribute(Subject.class, subject);
+		SubjectProvider.invalidate();
 	}
 
 	/**
@@ -64,6 +112,18 @@ public class V7SecurityManager extends DefaultSecurityManager {
 		super.setSessionManager(sessionManager);
 	}
 
+	/**
+	 * Method injection, as for {@link #setSessionManager(SessionManager)}. Setting the cache manager also sets it on
+	 * each of the realms
+	 * 
+	 * @see org.apache.shiro.mgt.CachingSecurityManager#setCacheManager(org.apache.shiro.cache.CacheManager)
+	 */
+	@Inject(optional = true)
+	@Override
+	public void setCacheManager(CacheManager cacheManager) {
+		super.setCacheManager(cacheManager);
+	}
+
 	public void setSessionProvider(VaadinSessionProvider sessionProvider) {
 		this.sessionProvider = sessionProvider;
 	}
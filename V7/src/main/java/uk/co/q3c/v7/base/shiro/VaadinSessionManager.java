@@ -12,12 +12,25 @@
  */
 package uk.co.q3c.v7.base.shiro;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
+import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
 
+import org.apache.shiro.session.ExpiredSessionException;
+import org.apache.shiro.session.InvalidSessionException;
 import org.apache.shiro.session.Session;
 import org.apache.shiro.session.SessionException;
+import org.apache.shiro.session.mgt.AbstractSessionManager;
 import org.apache.shiro.session.mgt.SessionContext;
 import org.apache.shiro.session.mgt.SessionFactory;
 import org.apache.shiro.session.mgt.SessionKey;
@@ -34,12 +47,27 @@ import com.vaadin.server.VaadinSession;
  * locate the Shiro {@link Session}. This tightly ties the Shiro security Session lifecycle to that of the VaadinSession
  * allowing expiration, persistence, and clustering to be handled only in the Vaadin configuration rather than be
  * duplicated in both the Vaadin and Shiro configuration.
+ * <p>
+ * The security sessions held by each VaadinSession are tracked (weakly, so tracking does not keep a VaadinSession
+ * alive). {@link #sweep()}, called periodically by the {@link SessionSweeper} service, visits each VaadinSession and
+ * removes security sessions which are no longer valid: those which have been stopped, for example by logout, and those
+ * which have expired because they have not been used within their timeout ({@link #setSessionTimeout(long)}). A
+ * session is used each time it is returned by {@link #getSession(SessionKey)}, which also removes it if it has
+ * expired. The sweep waits only briefly for each VaadinSession lock, and skips a session which is busy until the next
+ * sweep. No more than {@link #setMaxSessionsPerVaadinSession(int)} security sessions are kept in one VaadinSession;
+ * when another is started, invalid sessions are removed first, and only if that is not enough is the oldest stopped.
+ * {@link #getMetrics()} gives counts of active, expired and invalidated sessions.
  * 
  * @author mpilone
  * 
  */
 public class VaadinSessionManager implements SessionManager {
 	private static Logger log = LoggerFactory.getLogger(VaadinSessionManager.class);
+	public static final int DEFAULT_MAX_SESSIONS_PER_VAADIN_SESSION = 4;
+	/**
+	 * How long the sweeper waits for a VaadinSession lock, in ms, before moving on
+	 */
+	private static final long LOCK_WAIT = 20;
 	/**
 	 * The session attribute name prefix used for storing the Shiro Session in the VaadinSession.
 	 */
@@ -53,6 +81,16 @@ public class VaadinSessionManager implements SessionManager {
 	 */
 	private final SessionFactory sessionFactory;
 	private final VaadinSessionProvider sessionProvider;
+	/**
+	 * The ids of the security sessions held by each VaadinSession, oldest first
+	 */
+	private final ConcurrentMap<VaadinSession, Deque<String>> tracked = new MapMaker().weakKeys().makeMap();
+	private final AtomicLong expired = new AtomicLong();
+	private final AtomicLong invalidated = new AtomicLong();
+	private final AtomicLong sweeps = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	private volatile int maxSessionsPerVaadinSession = DEFAULT_MAX_SESSIONS_PER_VAADIN_SESSION;
+	private volatile long sessionTimeout = AbstractSessionManager.DEFAULT_GLOBAL_SESSION_TIMEOUT;
 
 	/**
 	 * Constructs the VaadinSessionManager.
@@ -82,11 +120,13 @@ public class VaadinSessionManager implements SessionManager {
 		// doesn't use a SessionDAO for persistence as it delegates to any
 		// VaadinSession configured persistence.
 		shiroSession.setId(UUID.randomUUID().toString());
+		shiroSession.setTimeout(sessionTimeout);
 
 		// Put the security session in the VaadinSession. We use the session's ID as
 		// part of the key just to be safe so we can double check that the security
 		// session matches when it is requested in getSession.
 		vaadinSession.setAttribute(SESSION_ATTRIBUTE_PREFIX + shiroSession.getId(), shiroSession);
+		track(vaadinSession, shiroSession.getId().toString());
 
 		return shiroSession;
 	}
@@ -102,25 +142,184 @@ public class VaadinSessionManager implements SessionManager {
 		// Retrieve the VaadinSession for the current user.
 		VaadinSession vaadinSession = sessionProvider.get();
 
-		String attributeName = SESSION_ATTRIBUTE_PREFIX + key.getSessionId();
-
 		if (vaadinSession != null) {
 			// If we have a valid VaadinSession, try to get the Shiro Session.
-			SimpleSession shiroSession = (SimpleSession) vaadinSession.getAttribute(attributeName);
+			String id = String.valueOf(key.getSessionId());
+			SimpleSession shiroSession = (SimpleSession) vaadinSession.getAttribute(SESSION_ATTRIBUTE_PREFIX + id);
+
+			// Make sure the Shiro Session hasn't been stopped or expired (i.e. the
+			// user logged out). If it has, it is cleaned up.
+			if ((shiroSession != null) && !discardIfInvalid(vaadinSession, id, shiroSession)) {
+				shiroSession.touch();
+				return shiroSession;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Records {@code id} as held by {@code vaadinSession}. If there are now more than
+	 * {@link #maxSessionsPerVaadinSession}, the invalid sessions are removed, and if that is not enough, the oldest are
+	 * stopped. The caller must hold the VaadinSession lock
+	 */
+	private void track(VaadinSession vaadinSession, String id) {
+		Deque<String> ids = tracked.get(vaadinSession);
+		if (ids == null) {
+			Deque<String> newIds = new ArrayDeque<>();
+			ids = tracked.putIfAbsent(vaadinSession, newIds);
+			if (ids == null) {
+				ids = newIds;
+			}
+		}
+		String[] held;
+		synchronized (ids) {
+			ids.addLast(id);
+			if (ids.size() <= maxSessionsPerVaadinSession) {
+				return;
+			}
+			held = ids.toArray(new String[0]);
+		}
+		for (String heldId : held) {
+			if (!heldId.equals(id)) {
+				discardIfInvalid(vaadinSession, heldId);
+			}
+		}
+		List<String> surplus = new ArrayList<>();
+		synchronized (ids) {
+			while (ids.size() > maxSessionsPerVaadinSession) {
+				surplus.add(ids.removeFirst());
+			}
+		}
+		for (String oldId : surplus) {
+			String attributeName = SESSION_ATTRIBUTE_PREFIX + oldId;
+			SimpleSession oldSession = (SimpleSession) vaadinSession.getAttribute(attributeName);
+			if (oldSession != null) {
+				log.debug("Too many security sessions, stopping {}", oldId);
+				oldSession.stop();
+				vaadinSession.setAttribute(attributeName, null);
+				invalidated.incrementAndGet();
+			}
+		}
+	}
+
+	private void untrack(VaadinSession vaadinSession, String id) {
+		Deque<String> ids = tracked.get(vaadinSession);
+		if (ids != null) {
+			synchronized (ids) {
+				ids.remove(id);
+			}
+		}
+	}
+
+	/**
+	 * Stops tracking {@code id} if {@code vaadinSession} no longer holds it, and removes it if it is no longer valid.
+	 * The caller must hold the VaadinSession lock
+	 */
+	private void discardIfInvalid(VaadinSession vaadinSession, String id) {
+		SimpleSession shiroSession = (SimpleSession) vaadinSession.getAttribute(SESSION_ATTRIBUTE_PREFIX + id);
+		if (shiroSession == null) {
+			untrack(vaadinSession, id);
+		} else {
+			discardIfInvalid(vaadinSession, id, shiroSession);
+		}
+	}
 
-			if (shiroSession != null) {
+	/**
+	 * Removes {@code shiroSession} from {@code vaadinSession} and counts it if it has been stopped, or has expired
+	 * (including passing its timeout since it was last used). The caller must hold the VaadinSession lock. Returns true
+	 * if the session was removed
+	 */
+	private boolean discardIfInvalid(VaadinSession vaadinSession, String id, SimpleSession shiroSession) {
+		try {
+			// applies the timeout, which isValid() does not
+			shiroSession.validate();
+			return false;
+		} catch (ExpiredSessionException e) {
+			log.debug("Security session {} has expired", id);
+			expired.incrementAndGet();
+		} catch (InvalidSessionException e) {
+			invalidated.incrementAndGet();
+		}
+		vaadinSession.setAttribute(SESSION_ATTRIBUTE_PREFIX + id, null);
+		untrack(vaadinSession, id);
+		return true;
+	}
 
-				// Make sure the Shiro Session hasn't been stopped or expired (i.e. the
-				// user logged out).
-				if (shiroSession.isValid()) {
-					return shiroSession;
-				} else {
-					// This is an invalid or expired session so we'll clean it up.
-					vaadinSession.setAttribute(attributeName, null);
+	/**
+	 * Removes stopped and expired security sessions from every tracked VaadinSession. Each VaadinSession is locked in turn, for
+	 * only as long as it takes to check its own security sessions. A VaadinSession whose lock is not available within a
+	 * short wait is skipped until the next sweep. Called by the {@link SessionSweeper}, but may also be called directly
+	 */
+	public void sweep() {
+		sweeps.incrementAndGet();
+		for (Map.Entry<VaadinSession, Deque<String>> entry : tracked.entrySet()) {
+			VaadinSession vaadinSession = entry.getKey();
+			String[] ids;
+			synchronized (entry.getValue()) {
+				ids = entry.getValue().toArray(new String[0]);
+			}
+			if (ids.length == 0) {
+				tracked.remove(vaadinSession, entry.getValue());
+				continue;
+			}
+			Lock lock = vaadinSession.getLockInstance();
+			if (lock == null) {
+				continue;
+			}
+			boolean locked = false;
+			try {
+				locked = lock.tryLock(LOCK_WAIT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (!locked) {
+				skipped.incrementAndGet();
+				continue;
+			}
+			try {
+				for (String id : ids) {
+					discardIfInvalid(vaadinSession, id);
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
+	}
 
-		return null;
+	/**
+	 * Returns a snapshot of the session counts. Active sessions are those currently held by live VaadinSessions,
+	 * including any which have become invalid since the last sweep
+	 * 
+	 * @return
+	 */
+	public SessionMetrics getMetrics() {
+		int active = 0;
+		for (Deque<String> ids : tracked.values()) {
+			synchronized (ids) {
+				active += ids.size();
+			}
+		}
+		return new SessionMetrics(active, expired.get(), invalidated.get(), sweeps.get(), skipped.get());
+	}
+
+	/**
+	 * The time, in ms, after which a security session which has not been used expires. Applies to sessions started
+	 * after it is set. Zero or less means that sessions do not expire. The default is 30 minutes
+	 * 
+	 * @param sessionTimeout
+	 */
+	public void setSessionTimeout(long sessionTimeout) {
+		this.sessionTimeout = sessionTimeout;
+	}
+
+	/**
+	 * The maximum number of security sessions kept in one VaadinSession
+	 * 
+	 * @param maxSessionsPerVaadinSession
+	 */
+	public void setMaxSessionsPerVaadinSession(int maxSessionsPerVaadinSession) {
+		this.maxSessionsPerVaadinSession = Math.max(1, maxSessionsPerVaadinSession);
 	}
-}
\ No newline at end of file
+}
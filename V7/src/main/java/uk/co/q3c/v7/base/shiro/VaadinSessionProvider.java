@@ -28,4 +28,12 @@ public interface VaadinSessionProvider {
 
 	public abstract VaadinSession get();
 
+	/**
+	 * Returns the current VaadinSession, or null if there is none. Unlike {@link #get()} this does not throw an
+	 * exception, and is intended for code which may run in background threads
+	 * 
+	 * @return
+	 */
+	public abstract VaadinSession getIfPresent();
+
 }
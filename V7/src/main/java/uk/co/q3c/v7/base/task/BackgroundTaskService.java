@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import uk.co.q3c.v7.base.services.ServiceI18N;
+
+/**
+ * Runs long running work (reports, searches, exports and so on) away from the request thread, so that the
+ * VaadinSession lock is not held while it runs. Tasks run in named, bounded pools, and the number of tasks a single
+ * VaadinSession may have queued or running at once is limited. Each task runs with the UIScope, Subject and other
+ * thread bound context of the thread which submitted it, and its result is delivered to the originating UI through
+ * {@link TaskCallback}.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public interface BackgroundTaskService extends ServiceI18N {
+
+	public static final String DEFAULT_POOL = "default";
+	/**
+	 * A pool reserved for realm calls during login, so that a login storm cannot use up the threads needed for other
+	 * tasks, and other tasks cannot delay logins
+	 */
+	public static final String AUTHENTICATION_POOL = "authentication";
+
+	/**
+	 * Submits {@code task} to the {@link #DEFAULT_POOL}
+	 * 
+	 * @see #submit(String, Callable, TaskCallback)
+	 */
+	<T> Future<T> submit(Callable<T> task, TaskCallback<T> callback);
+
+	/**
+	 * Submits {@code task} to the pool called {@code poolName}. {@code callback} may be null if the result is only
+	 * required through the returned Future. If the Future is cancelled before the task has completed, or the service is
+	 * stopped while the task is queued, the callback's onFailure is invoked with a CancellationException.
+	 * 
+	 * @param poolName
+	 * @param task
+	 * @param callback
+	 * @return
+	 * @throws RejectedExecutionException
+	 *             if the pool's queue is full, or the current session already has the maximum number of tasks
+	 * @throws IllegalArgumentException
+	 *             if there is no pool called {@code poolName}
+	 * @throws BackgroundTaskException
+	 *             if the service has not been started
+	 */
+	<T> Future<T> submit(String poolName, Callable<T> task, TaskCallback<T> callback);
+
+	/**
+	 * Returns a snapshot of the metrics for each pool, keyed by pool name
+	 * 
+	 * @return
+	 */
+	Map<String, TaskPoolMetrics> getMetrics();
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.q3c.v7.base.config.ApplicationConfigurationService;
+import uk.co.q3c.v7.base.config.ConfigKeys;
+import uk.co.q3c.v7.base.guice.threadscope.ScopeContext;
+import uk.co.q3c.v7.base.services.AbstractServiceI18N;
+import uk.co.q3c.v7.base.services.AutoStart;
+import uk.co.q3c.v7.base.services.Service;
+import uk.co.q3c.v7.i18n.DescriptionKey;
+import uk.co.q3c.v7.i18n.LabelKey;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+/**
+ * Default implementation of {@link BackgroundTaskService}. The following values are read from the application
+ * configuration when the service starts:
+ * <ol>
+ * <li>{@link ConfigKeys#TASK_POOLS_KEY} : a list of pools in the form name:threads, for example
+ * "default:4, reports:2". A {@link BackgroundTaskService#DEFAULT_POOL} and an
+ * {@link BackgroundTaskService#AUTHENTICATION_POOL} are always created, with one thread per processor unless specified
+ * <li>{@link ConfigKeys#TASK_QUEUE_CAPACITY_KEY} : the number of tasks each pool may hold waiting for a thread, default
+ * 100
+ * <li>{@link ConfigKeys#TASK_SESSION_LIMIT_KEY} : the number of tasks a single VaadinSession may have queued or
+ * running, across all pools, default 4
+ * </ol>
+ * If the configuration service fails to start, the defaults are used.
+ * <p>
+ * Each task is run within the {@link ScopeContext} of the submitting thread. That includes the UIKey of the submitting
+ * UI, so CurrentLocale gives the task the Locale of that UI.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class DefaultBackgroundTaskService extends AbstractServiceI18N implements BackgroundTaskService {
+
+	private static Logger log = LoggerFactory.getLogger(DefaultBackgroundTaskService.class);
+	public static final int DEFAULT_QUEUE_CAPACITY = 100;
+	public static final int DEFAULT_SESSION_LIMIT = 4;
+
+	/**
+	 * A pool and its counters
+	 */
+	private static class TaskPool {
+		private final String name;
+		private final ThreadPoolExecutor executor;
+		private final AtomicLong completed = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong queueNanos = new AtomicLong();
+		private final AtomicLong executionNanos = new AtomicLong();
+
+		TaskPool(String name, int threads, int queueCapacity) {
+			this.name = name;
+			executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactoryBuilder()
+							.setNameFormat("v7-task-" + name + "-%d").setDaemon(true).build());
+		}
+
+		TaskPoolMetrics metrics() {
+			long done = completed.get();
+			double queueLatency = (done == 0) ? 0 : queueNanos.get() / 1000000d / done;
+			double executionLatency = (done == 0) ? 0 : executionNanos.get() / 1000000d / done;
+			return new TaskPoolMetrics(name, executor.getPoolSize(), executor.getActiveCount(), executor.getQueue()
+					.size(), done, failed.get(), rejected.get(), queueLatency, executionLatency);
+		}
+	}
+
+	/**
+	 * Records latencies while the task runs, and when it is done, whether it completed or was cancelled, releases the
+	 * session's allowance and delivers the result
+	 */
+	private class TrackedTask<T> extends FutureTask<T> {
+		private final TaskPool pool;
+		private final AtomicInteger sessionCount;
+		private final TaskCallback<T> callback;
+		private final UI ui;
+		private final ScopeContext context;
+		private final long submitted = System.nanoTime();
+		private volatile long started;
+
+		TrackedTask(TaskPool pool, final Callable<T> task, AtomicInteger sessionCount, TaskCallback<T> callback,
+				UI ui, ScopeContext context) {
+			super(context.wrap(task));
+			this.pool = pool;
+			this.sessionCount = sessionCount;
+			this.callback = callback;
+			this.ui = ui;
+			this.context = context;
+		}
+
+		@Override
+		public void run() {
+			started = System.nanoTime();
+			pool.queueNanos.addAndGet(started - submitted);
+			super.run();
+		}
+
+		@Override
+		protected void done() {
+			if (sessionCount != null) {
+				sessionCount.decrementAndGet();
+			}
+			if (started != 0) {
+				pool.executionNanos.addAndGet(System.nanoTime() - started);
+				pool.completed.incrementAndGet();
+			}
+			Runnable delivery = delivery();
+			if (delivery == null) {
+				return;
+			}
+			if (ui != null) {
+				batcher.deliver(ui, delivery);
+				return;
+			}
+			try {
+				context.wrap(delivery).run();
+			} catch (RuntimeException e) {
+				log.error("Background task callback failed in pool {}", pool.name, e);
+			}
+		}
+
+		private Runnable delivery() {
+			try {
+				final T result = get();
+				if (callback == null) {
+					return null;
+				}
+				return new Runnable() {
+					@Override
+					public void run() {
+						callback.onSuccess(result);
+					}
+				};
+			} catch (ExecutionException | CancellationException | InterruptedException e) {
+				final Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+				if (!(e instanceof CancellationException)) {
+					pool.failed.incrementAndGet();
+				}
+				if (callback == null) {
+					log.warn("Background task failed in pool {}", pool.name, cause);
+					return null;
+				}
+				return new Runnable() {
+					@Override
+					public void run() {
+						callback.onFailure(cause);
+					}
+				};
+			}
+		}
+	}
+
+	@AutoStart
+	private final ApplicationConfigurationService configurationService;
+	private final Map<String, TaskPool> pools = new ConcurrentHashMap<>();
+	private final ConcurrentMap<VaadinSession, AtomicInteger> sessionCounts = new MapMaker().weakKeys().makeMap();
+	private final UIUpdateBatcher batcher = new UIUpdateBatcher();
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int sessionLimit = DEFAULT_SESSION_LIMIT;
+
+	@Inject
+	protected DefaultBackgroundTaskService(Translate translate, ApplicationConfigurationService configurationService) {
+		super(translate);
+		this.configurationService = configurationService;
+		setNameKey(LabelKey.Background_Task_Service);
+		setDescriptionKey(DescriptionKey.Background_Task_Service);
+	}
+
+	@Override
+	public Status start() throws Exception {
+		Map<String, Integer> poolSizes = readConfiguration();
+		for (Map.Entry<String, Integer> entry : poolSizes.entrySet()) {
+			pools.put(entry.getKey(), new TaskPool(entry.getKey(), entry.getValue(), queueCapacity));
+		}
+		log.debug("Background task pools {} started", poolSizes);
+		return Status.STARTED;
+	}
+
+	private Map<String, Integer> readConfiguration() {
+		Map<String, Integer> poolSizes = new LinkedHashMap<>();
+		poolSizes.put(DEFAULT_POOL, Runtime.getRuntime().availableProcessors());
+		poolSizes.put(AUTHENTICATION_POOL, Runtime.getRuntime().availableProcessors());
+		CompositeConfiguration configuration = configurationService.getConfiguration();
+		if ((getStatus() == Status.DEPENDENCY_FAILED) || (configuration == null)) {
+			log.warn("Application configuration is not available, {} will use default settings", getName());
+			return poolSizes;
+		}
+		queueCapacity = Math.max(1, configuration.getInt(ConfigKeys.TASK_QUEUE_CAPACITY_KEY, DEFAULT_QUEUE_CAPACITY));
+		sessionLimit = Math.max(1, configuration.getInt(ConfigKeys.TASK_SESSION_LIMIT_KEY, DEFAULT_SESSION_LIMIT));
+		for (String pool : configuration.getStringArray(ConfigKeys.TASK_POOLS_KEY)) {
+			String[] parts = pool.split(":");
+			try {
+				poolSizes.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				log.warn("A value of {} in {} is invalid, it should be in the form name:threads", pool,
+						ConfigKeys.TASK_POOLS_KEY);
+			}
+		}
+		return poolSizes;
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task, TaskCallback<T> callback) {
+		return submit(DEFAULT_POOL, task, callback);
+	}
+
+	@Override
+	public <T> Future<T> submit(String poolName, Callable<T> task, TaskCallback<T> callback) {
+		if (!isStarted()) {
+			throw new BackgroundTaskException("Tasks cannot be submitted until " + getName() + " has been started");
+		}
+		TaskPool pool = pools.get(poolName);
+		if (pool == null) {
+			throw new IllegalArgumentException("There is no background task pool called " + poolName);
+		}
+
+		AtomicInteger sessionCount = acquire(pool, VaadinSession.getCurrent());
+		TrackedTask<T> tracked = new TrackedTask<>(pool, task, sessionCount, callback, UI.getCurrent(),
+				ScopeContext.capture());
+		try {
+			pool.executor.execute(tracked);
+		} catch (RejectedExecutionException e) {
+			if (sessionCount != null) {
+				sessionCount.decrementAndGet();
+			}
+			pool.rejected.incrementAndGet();
+			throw e;
+		}
+		return tracked;
+	}
+
+	/**
+	 * Counts the task against the session's allowance, or rejects it if the session is already at the limit. Tasks
+	 * submitted outside of a session are not limited
+	 */
+	private AtomicInteger acquire(TaskPool pool, VaadinSession session) {
+		if (session == null) {
+			return null;
+		}
+		AtomicInteger count = sessionCounts.get(session);
+		if (count == null) {
+			AtomicInteger newCount = new AtomicInteger();
+			count = sessionCounts.putIfAbsent(session, newCount);
+			if (count == null) {
+				count = newCount;
+			}
+		}
+		if (count.incrementAndGet() > sessionLimit) {
+			count.decrementAndGet();
+			pool.rejected.incrementAndGet();
+			throw new RejectedExecutionException("The session already has the maximum of " + sessionLimit
+					+ " background tasks");
+		}
+		return count;
+	}
+
+	@Override
+	public Map<String, TaskPoolMetrics> getMetrics() {
+		ImmutableMap.Builder<String, TaskPoolMetrics> builder = ImmutableMap.builder();
+		for (TaskPool pool : pools.values()) {
+			builder.put(pool.name, pool.metrics());
+		}
+		return builder.build();
+	}
+
+	@Override
+	public Status stop() {
+		for (TaskPool pool : pools.values()) {
+			// queued tasks are cancelled rather than just dropped, so that they release their sessions' allowance
+			for (Runnable queued : pool.executor.shutdownNow()) {
+				((Future<?>) queued).cancel(false);
+			}
+		}
+		pools.clear();
+		return Status.STOPPED;
+	}
+
+	@Override
+	public void serviceStatusChange(Service service, Status fromStatus, Status toStatus) {
+		// configuration is only read at start up, nothing to do
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getSessionLimit() {
+		return sessionLimit;
+	}
+
+}
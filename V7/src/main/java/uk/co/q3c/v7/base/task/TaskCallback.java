@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+/**
+ * Receives the outcome of a task submitted to the {@link BackgroundTaskService}. If the task was submitted while a UI
+ * was current, the callback is invoked within {@link com.vaadin.ui.UI#access(Runnable)} for that UI, so it may update
+ * components directly. Otherwise it is invoked on the thread which ran the task.
+ * 
+ * @author David Sowerby
+ * 
+ * @param <T>
+ *            the type of the task result
+ */
+public interface TaskCallback<T> {
+
+	void onSuccess(T result);
+
+	/**
+	 * Called if the task threw an exception, or was cancelled, in which case {@code cause} is a
+	 * {@link java.util.concurrent.CancellationException}
+	 * 
+	 * @param cause
+	 */
+	void onFailure(Throwable cause);
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+/**
+ * An immutable snapshot of the state of a single {@link BackgroundTaskService} pool. Latencies are averages, in
+ * milliseconds, over all tasks which have completed since the service was started.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class TaskPoolMetrics {
+
+	private final String poolName;
+	private final int poolSize;
+	private final int activeCount;
+	private final int queueDepth;
+	private final long completed;
+	private final long failed;
+	private final long rejected;
+	private final double averageQueueLatency;
+	private final double averageExecutionLatency;
+
+	public TaskPoolMetrics(String poolName, int poolSize, int activeCount, int queueDepth, long completed,
+			long failed, long rejected, double averageQueueLatency, double averageExecutionLatency) {
+		super();
+		this.poolName = poolName;
+		this.poolSize = poolSize;
+		this.activeCount = activeCount;
+		this.queueDepth = queueDepth;
+		this.completed = completed;
+		this.failed = failed;
+		this.rejected = rejected;
+		this.averageQueueLatency = averageQueueLatency;
+		this.averageExecutionLatency = averageExecutionLatency;
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	/**
+	 * The number of tasks waiting for a thread
+	 * 
+	 * @return
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * The number of tasks which have completed, including those which failed
+	 * 
+	 * @return
+	 */
+	public long getCompleted() {
+		return completed;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * The number of tasks rejected, either because the queue was full or because of the per session limit
+	 * 
+	 * @return
+	 */
+	public long getRejected() {
+		return rejected;
+	}
+
+	/**
+	 * Average time in milliseconds between a task being submitted and starting to run
+	 * 
+	 * @return
+	 */
+	public double getAverageQueueLatency() {
+		return averageQueueLatency;
+	}
+
+	/**
+	 * Average time in milliseconds taken to run a task
+	 * 
+	 * @return
+	 */
+	public double getAverageExecutionLatency() {
+		return averageExecutionLatency;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(poolName);
+		buf.append(": size=");
+		buf.append(poolSize);
+		buf.append(", active=");
+		buf.append(activeCount);
+		buf.append(", queued=");
+		buf.append(queueDepth);
+		buf.append(", completed=");
+		buf.append(completed);
+		buf.append(", failed=");
+		buf.append(failed);
+		buf.append(", rejected=");
+		buf.append(rejected);
+		buf.append(", queueLatency=");
+		buf.append(String.format("%.1f", averageQueueLatency));
+		buf.append("ms, executionLatency=");
+		buf.append(String.format("%.1f", averageExecutionLatency));
+		buf.append("ms");
+		return buf.toString();
+	}
+}
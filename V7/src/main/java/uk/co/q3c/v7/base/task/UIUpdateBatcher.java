@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Delivers updates to a UI through {@link UI#access(Runnable)}, coalescing updates which arrive while an earlier
+ * access is still pending into the same access. A burst of completed tasks therefore takes the session lock once,
+ * rather than once per task. UIs are held weakly.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class UIUpdateBatcher {
+
+	private static Logger log = LoggerFactory.getLogger(UIUpdateBatcher.class);
+
+	private static class Batch implements Runnable {
+		private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+		@Override
+		public void run() {
+			// cleared first, so that anything added from here on schedules another access
+			scheduled.set(false);
+			Runnable update;
+			while ((update = pending.poll()) != null) {
+				try {
+					update.run();
+				} catch (RuntimeException e) {
+					log.error("UI update from a background task failed", e);
+				}
+			}
+		}
+	}
+
+	private final ConcurrentMap<UI, Batch> batches = new MapMaker().weakKeys().makeMap();
+
+	/**
+	 * Queues {@code update} to run within {@link UI#access(Runnable)} for {@code ui}. If the UI has been detached, the
+	 * update is discarded
+	 * 
+	 * @param ui
+	 * @param update
+	 */
+	public void deliver(UI ui, Runnable update) {
+		Batch batch = batches.get(ui);
+		if (batch == null) {
+			Batch newBatch = new Batch();
+			batch = batches.putIfAbsent(ui, newBatch);
+			if (batch == null) {
+				batch = newBatch;
+			}
+		}
+		batch.pending.add(update);
+		if (batch.scheduled.compareAndSet(false, true)) {
+			try {
+				ui.access(batch);
+			} catch (UIDetachedException e) {
+				log.debug("UI detached, background task results discarded");
+				batch.pending.clear();
+				batches.remove(ui);
+			}
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import uk.co.q3c.v7.base.config.V7ConfigurationException;
 import uk.co.q3c.v7.base.guice.uiscope.UIKey;
 import uk.co.q3c.v7.base.guice.uiscope.UIScope;
+import uk.co.q3c.v7.base.guice.uiscope.UIScopeStore;
 import uk.co.q3c.v7.base.navigate.V7Navigator;
 import uk.co.q3c.v7.base.shiro.LoginStatusHandler;
 import uk.co.q3c.v7.base.view.V7View;
@@ -27,6 +28,7 @@ public abstract class ScopedUI extends UI implements V7ViewHolder {
 	private static Logger log = LoggerFactory.getLogger(ScopedUI.class);
 	private UIKey instanceKey;
 	private UIScope uiScope;
+	private UIScopeStore scopeStore;
 	private final Panel viewDisplayPanel;
 	private final V7Navigator navigator;
 	private final ErrorHandler errorHandler;
@@ -42,6 +44,7 @@ public abstract class ScopedUI extends UI implements V7ViewHolder {
 		this.navigator = navigator;
 		this.converterFactory = converterFactory;
 		this.loginStatusHandler = loginStatusHandler;
+		this.uiScope = UIScope.getCurrent();
 		viewDisplayPanel = new Panel();
 		viewDisplayPanel.setSizeFull();
 	}
@@ -54,9 +57,23 @@ public abstract class ScopedUI extends UI implements V7ViewHolder {
 		return instanceKey;
 	}
 
+	/**
+	 * The store used by {@link uk.co.q3c.v7.base.guice.uiscope.AttachedUIScope} to hold the UIScoped objects of this
+	 * UI. Set by the {@link ScopedUIProvider}, and null if the global {@link UIScope} is in use
+	 * 
+	 * @return
+	 */
+	public UIScopeStore getScopeStore() {
+		return scopeStore;
+	}
+
+	public void setScopeStore(UIScopeStore scopeStore) {
+		this.scopeStore = scopeStore;
+	}
+
 	@Override
 	public void detach() {
-		if (uiScope != null) {
+		if ((uiScope != null) && (scopeStore == null)) {
 			uiScope.releaseScope(this.getInstanceKey());
 		}
 		super.detach();
@@ -109,6 +126,10 @@ public abstract class ScopedUI extends UI implements V7ViewHolder {
 
 		VaadinSession session = getSession();
 		session.setConverterFactory(converterFactory);
+		// allows the scope to be expired with the session, if this UI is never detached
+		if (scopeStore == null) {
+			uiScope.bindSession(instanceKey, session);
+		}
 
 		// page isn't available during injected construction
 		Page page = getPage();
@@ -4,6 +4,7 @@ import java.util.Map;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.google.inject.name.Named;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,8 @@ import org.slf4j.LoggerFactory;
 import uk.co.q3c.v7.base.guice.uiscope.UIKey;
 import uk.co.q3c.v7.base.guice.uiscope.UIKeyProvider;
 import uk.co.q3c.v7.base.guice.uiscope.UIScope;
+import uk.co.q3c.v7.base.guice.uiscope.UIScopeModule;
+import uk.co.q3c.v7.base.guice.uiscope.UIScopeStore;
 import uk.co.q3c.v7.base.guice.uiscope.UIScoped;
 
 import com.vaadin.server.UICreateEvent;
@@ -33,6 +36,7 @@ public abstract class ScopedUIProvider extends UIProvider {
 	private static Logger log = LoggerFactory.getLogger(ScopedUIProvider.class);
 	private final UIKeyProvider uiKeyProvider;
 	private final Map<String, Provider<UI>> uiProMap;
+	private boolean attachedScope;
 
 	@Inject
 	protected ScopedUIProvider(Map<String, Provider<UI>> uiProMap, UIKeyProvider uiKeyProvider) {
@@ -47,20 +51,51 @@ public abstract class ScopedUIProvider extends UIProvider {
 
 	}
 
+	/**
+	 * Tells the provider whether {@link uk.co.q3c.v7.base.guice.uiscope.AttachedUIScope} is bound to
+	 * {@link UIScoped}, so that it prepares only the scope in use. If it is not called, the global {@link UIScope} is
+	 * assumed
+	 * 
+	 * @param attachedScope
+	 */
+	@Inject(optional = true)
+	protected void setAttachedScope(@Named(UIScopeModule.ATTACHED_UI_SCOPE) boolean attachedScope) {
+		this.attachedScope = attachedScope;
+	}
+
 	public UI createInstance(Class<? extends UI> uiClass) {
+		Provider<UI> uiProvider = uiProMap.get(uiClass.getName());
+		if (uiProvider == null) {
+			throw new UIProviderException("No UI provider has been specified for " + uiClass.getName() + " in uiProMap");
+		}
 		UIKey uiKey = uiKeyProvider.get();
 		// hold the key while UI is created
 		CurrentInstance.set(UIKey.class, uiKey);
-		// and set up the scope
-		UIScope.getCurrent().startScope(uiKey);
+		UIScopeStore scopeStore = null;
+		UI previousUI = UI.getCurrent();
+		if (attachedScope) {
+			// hold the store for AttachedUIScope while the UI is created, after that it is held by the UI. Any UI
+			// which is current belongs to another request, and would otherwise be used in preference
+			scopeStore = new UIScopeStore(uiKey);
+			CurrentInstance.set(UIScopeStore.class, scopeStore);
+			UI.setCurrent(null);
+		} else {
+			// set up the scope
+			UIScope.getCurrent().startScope(uiKey);
+		}
 
 		// create the UI
-		Provider<UI> uiProvider = uiProMap.get(uiClass.getName());
-		if (uiProvider == null) {
-			throw new UIProviderException("No UI provider has been specified for " + uiClass.getName() + " in uiProMap");
+		ScopedUI ui;
+		try {
+			ui = (ScopedUI) uiProvider.get();
+		} finally {
+			if (attachedScope) {
+				CurrentInstance.set(UIScopeStore.class, null);
+				UI.setCurrent(previousUI);
+			}
 		}
-		ScopedUI ui = (ScopedUI) uiProvider.get();
 		ui.setInstanceKey(uiKey);
+		ui.setScopeStore(scopeStore);
 		log.debug("returning instance of " + ui.getClass().getName() + " with key " + uiKey);
 		return ui;
 	}
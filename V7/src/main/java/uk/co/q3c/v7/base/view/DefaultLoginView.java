@@ -14,13 +14,18 @@ import org.apache.shiro.authc.LockedAccountException;
 import org.apache.shiro.authc.UnknownAccountException;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import uk.co.q3c.util.ID;
 import uk.co.q3c.v7.base.guice.uiscope.UIScoped;
 import uk.co.q3c.v7.base.navigate.V7Navigator;
+import uk.co.q3c.v7.base.shiro.AsyncAuthenticator;
 import uk.co.q3c.v7.base.shiro.LoginExceptionHandler;
+import uk.co.q3c.v7.base.shiro.LoginRejectedException;
 import uk.co.q3c.v7.base.shiro.LoginStatusHandler;
 import uk.co.q3c.v7.base.shiro.SubjectProvider;
+import uk.co.q3c.v7.base.task.TaskCallback;
 
 import com.google.inject.Provider;
 import com.vaadin.ui.Button;
@@ -30,12 +35,18 @@ import com.vaadin.ui.Label;
 import com.vaadin.ui.Panel;
 import com.vaadin.ui.PasswordField;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ChameleonTheme;
 
 // TODO i18N
 @UIScoped
 public class DefaultLoginView extends GridViewBase implements LoginView, ClickListener {
+	private static Logger log = LoggerFactory.getLogger(DefaultLoginView.class);
+	/**
+	 * The poll interval, in ms, while waiting for the login result
+	 */
+	public static final int LOGIN_POLL_INTERVAL = 250;
 	private final Label label;
 	private final TextField usernameBox;
 	private final PasswordField passwordBox;
@@ -47,15 +58,18 @@ public class DefaultLoginView extends GridViewBase implements LoginView, ClickLi
 	private final LoginExceptionHandler loginExceptionHandler;
 	private final Provider<Subject> subjectProvider;
 	private final LoginStatusHandler loginStatusHandler;
+	private final AsyncAuthenticator asyncAuthenticator;
 
 	@Inject
 	protected DefaultLoginView(V7Navigator navigator, LoginExceptionHandler loginExceptionHandler,
-			SubjectProvider subjectProvider, LoginStatusHandler loginStatusHandler) {
+			SubjectProvider subjectProvider, LoginStatusHandler loginStatusHandler,
+			AsyncAuthenticator asyncAuthenticator) {
 		super();
 		this.navigator = navigator;
 		this.loginExceptionHandler = loginExceptionHandler;
 		this.subjectProvider = subjectProvider;
 		this.loginStatusHandler = loginStatusHandler;
+		this.asyncAuthenticator = asyncAuthenticator;
 		this.setColumns(3);
 		this.setRows(3);
 		this.setSizeFull();
@@ -110,31 +124,67 @@ public class DefaultLoginView extends GridViewBase implements LoginView, ClickLi
 		// None to process for login
 	}
 
+	/**
+	 * Starts the login through the {@link AsyncAuthenticator}, so that the realms are not called while the
+	 * VaadinSession lock is held. The submit button is disabled, and the UI polls, until the result arrives
+	 */
 	@Override
 	public void buttonClick(ClickEvent event) {
-		UsernamePasswordToken token = new UsernamePasswordToken(usernameBox.getValue(), passwordBox.getValue());
-		try {
-			subjectProvider.get().login(token);
-			loginStatusHandler.initiateStatusChange();
-		} catch (UnknownAccountException uae) {
+		final UsernamePasswordToken token = new UsernamePasswordToken(usernameBox.getValue(), passwordBox.getValue());
+		final UI ui = getUI();
+		final int pollInterval = (ui == null) ? -1 : ui.getPollInterval();
+		submitButton.setEnabled(false);
+		if (ui != null) {
+			ui.setPollInterval(LOGIN_POLL_INTERVAL);
+		}
+		asyncAuthenticator.login(token, new TaskCallback<Subject>() {
+
+			@Override
+			public void onSuccess(Subject result) {
+				loginFinished(ui, pollInterval);
+				loginStatusHandler.initiateStatusChange();
+			}
+
+			@Override
+			public void onFailure(Throwable cause) {
+				loginFinished(ui, pollInterval);
+				if (cause instanceof AuthenticationException) {
+					loginFailed((AuthenticationException) cause, token);
+				} else {
+					log.error("Login failed unexpectedly", cause);
+					loginExceptionHandler.loginFailed(DefaultLoginView.this, token);
+				}
+			}
+		});
+	}
+
+	private void loginFinished(UI ui, int pollInterval) {
+		submitButton.setEnabled(true);
+		if (ui != null) {
+			ui.setPollInterval(pollInterval);
+		}
+	}
+
+	private void loginFailed(AuthenticationException cause, UsernamePasswordToken token) {
+		if (cause instanceof UnknownAccountException) {
 			loginExceptionHandler.unknownAccount(this, token);
-		} catch (IncorrectCredentialsException ice) {
+		} else if (cause instanceof IncorrectCredentialsException) {
 			loginExceptionHandler.incorrectCredentials(this, token);
-		} catch (ExpiredCredentialsException ece) {
+		} else if (cause instanceof ExpiredCredentialsException) {
 			loginExceptionHandler.expiredCredentials(this, token);
-		} catch (LockedAccountException lae) {
+		} else if (cause instanceof LockedAccountException) {
 			loginExceptionHandler.accountLocked(this, token);
-		} catch (ExcessiveAttemptsException excess) {
+		} else if (cause instanceof ExcessiveAttemptsException) {
 			loginExceptionHandler.excessiveAttempts(this, token);
-		} catch (DisabledAccountException dae) {
+		} else if (cause instanceof DisabledAccountException) {
 			loginExceptionHandler.disabledAccount(this, token);
-		} catch (ConcurrentAccessException cae) {
+		} else if (cause instanceof ConcurrentAccessException) {
 			loginExceptionHandler.concurrentAccess(this, token);
-		} catch (AuthenticationException ae) {
+		} else if (cause instanceof LoginRejectedException) {
+			loginExceptionHandler.loginRejected(this, token);
+		} else {
 			loginExceptionHandler.disabledAccount(this, token);
 		}
-		// unexpected condition - error?
-		// an exception would be raised if login failed
 	}
 
 	@Override
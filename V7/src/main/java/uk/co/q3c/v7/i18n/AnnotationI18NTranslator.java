@@ -14,11 +14,9 @@ package uk.co.q3c.v7.i18n;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.inject.Inject;
 
@@ -64,6 +62,8 @@ public class AnnotationI18NTranslator implements I18NTranslator {
 	private final Provider<I18NTranslator> translatorPro;
 	private final Map<Class<? extends Annotation>, Provider<? extends I18NAnnotationReader>> readers;
 	private final Translate translate;
+	private final Map<Provider<? extends I18NAnnotationReader>, I18NAnnotationReader> readerInstances =
+			new ConcurrentHashMap<>();
 
 	@Inject
 	protected AnnotationI18NTranslator(CurrentLocale currentLocale, Provider<I18NTranslator> translatorPro,
@@ -77,53 +77,70 @@ public class AnnotationI18NTranslator implements I18NTranslator {
 	}
 
 	/**
+	 * Visits the fields in the {@link TranslationPlan} for the class of {@code listener}, which is worked out only once
+	 * for each class
+	 * 
 	 * @see uk.co.q3c.v7.i18n.I18NTranslator#translate(uk.co.q3c.v7.i18n.I18NListener)
 	 */
 	@Override
 	public void translate(I18NListener listener) {
-		Class<?> clazz = listener.getClass();
-		Field[] fields = clazz.getDeclaredFields();
-		for (Field field : fields) {
+		for (TranslationPlan.Step step : TranslationPlan.forClass(listener.getClass()).getSteps()) {
 
 			// process any subitems which implement I18NListener
-			if (I18NListener.class.isAssignableFrom(field.getType())) {
-				processSubI18NListener(listener, field);
+			if (step.isListener()) {
+				processSubI18NListener(listener, step);
 			}
 
-			if (AbstractComponent.class.isAssignableFrom(field.getType())) {
-				processComponent(listener, field);
+			if (step.isComponent()) {
+				processComponent(listener, step);
 			}
 
 		}
 	}
 
-	private void processSubI18NListener(I18NListener listener, Field field) {
-		field.setAccessible(true);
-		try {
-			I18NListener sub = (I18NListener) field.get(listener);
-			sub.localeChange(translatorPro.get());
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			log.error("Unable to process I18N sub-listener " + field.getName(), e);
+	private void processSubI18NListener(I18NListener listener, TranslationPlan.Step step) {
+		I18NListener sub = (I18NListener) step.get(listener);
+		if (sub != null) {
+			translateSubListener(sub);
 		}
 	}
 
-	private void processComponent(I18NListener listener, Field field) {
+	/**
+	 * Cascades the locale change to a contained {@link I18NListener}. Override to change when, or whether, contained
+	 * listeners are translated
+	 * 
+	 * @param sub
+	 */
+	protected void translateSubListener(I18NListener sub) {
+		sub.localeChange(translatorPro.get());
+	}
 
-		for (Entry<Class<? extends Annotation>, Provider<? extends I18NAnnotationReader>> readerEntry : readers
-				.entrySet()) {
-			if (field.isAnnotationPresent(readerEntry.getKey())) {
-				decodeAnnotation(listener, field, field.getAnnotation(readerEntry.getKey()), readerEntry.getValue());
+	private void processComponent(I18NListener listener, TranslationPlan.Step step) {
+
+		for (Annotation annotation : step.getAnnotations()) {
+			Provider<? extends I18NAnnotationReader> provider = readers.get(annotation.annotationType());
+			if (provider != null) {
+				decodeAnnotation(listener, step, annotation, readerFor(provider));
 			}
 		}
 		return;
 
 	}
 
-	private void decodeAnnotation(I18NListener listener, Field field, Annotation annotation,
-			Provider<? extends I18NAnnotationReader> provider) {
+	/**
+	 * Readers hold no state, so one is taken from each provider and kept
+	 */
+	private I18NAnnotationReader readerFor(Provider<? extends I18NAnnotationReader> provider) {
+		I18NAnnotationReader reader = readerInstances.get(provider);
+		if (reader == null) {
+			reader = provider.get();
+			readerInstances.put(provider, reader);
+		}
+		return reader;
+	}
 
-		// get a reader
-		I18NAnnotationReader reader = provider.get();
+	private void decodeAnnotation(I18NListener listener, TranslationPlan.Step step, Annotation annotation,
+			I18NAnnotationReader reader) {
 
 		// get the keys from the reader
 		I18NKey<?> captionKey = reader.caption(annotation);
@@ -136,58 +153,47 @@ public class AnnotationI18NTranslator implements I18NTranslator {
 		String descriptionValue = descriptionKey.isNullKey() ? null : translate.from(descriptionKey);
 
 		// set caption and description
-		field.setAccessible(true);
-		try {
-			AbstractComponent c = (AbstractComponent) field.get(listener);
-			if (captionValue != null) {
-				c.setCaption(captionValue);
-			}
-			if (descriptionValue != null) {
-				c.setDescription(descriptionValue);
-			}
-			c.setLocale(currentLocale.getLocale());
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			log.error("Unable to set I18N caption or description for " + field.getName(), e);
+		AbstractComponent c = (AbstractComponent) step.get(listener);
+		if (captionValue != null) {
+			c.setCaption(captionValue);
+		}
+		if (descriptionValue != null) {
+			c.setDescription(descriptionValue);
 		}
+		c.setLocale(currentLocale.getLocale());
 
 		// These components have a value. Usually I18N would only be used for Label values. If no key is provided
 		// the component value is left unchanged
 		if (valueKey != null) {
-			if (Property.class.isAssignableFrom(field.getType())) {
+			if (step.isProperty()) {
 				try {
 					@SuppressWarnings("unchecked")
-					Property<String> c = (Property<String>) field.get(listener);
+					Property<String> p = (Property<String>) c;
 					String valueValue = valueKey.isNullKey() ? null : translate.from(valueKey);
 					if (valueValue != null) {
-						c.setValue(valueValue);
+						p.setValue(valueValue);
 					}
 				} catch (Exception e) {
-					log.error("Unable to set I18N value for " + field.getName(), e);
+					log.error("Unable to set I18N value for " + step.getName(), e);
 
 				}
 			}
 		}
 
 		// Table columns need special treatment
-		if (Table.class.isAssignableFrom(field.getType())) {
+		if (step.isTable()) {
 			try {
-				Table table = (Table) field.get(listener);
+				Table table = (Table) c;
 				Object[] columns = table.getVisibleColumns();
-				List<String> headers = new ArrayList<>();
-				for (Object column : columns) {
-					if (column instanceof LabelKey) {
-						LabelKey columnid = (LabelKey) column;
-						String header = translate.from(columnid);
-						headers.add(header);
-					} else {
-						headers.add(column.toString());
-					}
+				String[] headers = new String[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					Object column = columns[i];
+					headers[i] = (column instanceof LabelKey) ? translate.from((LabelKey) column) : column.toString();
 				}
-				String headerArray[] = headers.toArray(new String[] {});
-				table.setColumnHeaders(headerArray);
+				table.setColumnHeaders(headers);
 
 			} catch (Exception e) {
-				log.error("Unable to set I18N table columns headers for " + field.getName(), e);
+				log.error("Unable to set I18N table columns headers for " + step.getName(), e);
 			}
 
 		}
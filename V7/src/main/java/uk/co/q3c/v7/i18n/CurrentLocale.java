@@ -13,26 +13,45 @@
 package uk.co.q3c.v7.i18n;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
+import uk.co.q3c.v7.base.guice.uiscope.UIKey;
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
-
-import com.google.common.collect.Maps;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
 
 /**
- * Provides a singleton reference to the currently selected Locale. {@link I18NListener}s can be added to listen for
- * locale changes. This class also support the use of annotations to specify the {@link I18NKey} to be used for
- * translation. Annotations cannot be sub-classed, and in order to support the use of multiple annotations, they must be
- * registered with {@link CurrentLocale} so that the {@link I18NTranslator} implementation can check for their
- * existence. The {@link I18N} annotation is registered by default.
+ * Provides a reference to the currently selected Locale. Each UI has its own Locale, so that one user changing their
+ * Locale does not affect any other UI. The object itself is a singleton, so that it can be injected anywhere, but
+ * {@link #getLocale()}, {@link #setLocale(Locale)} and the listener methods act on the Locale of the current UI. As
+ * for {@link uk.co.q3c.v7.base.guice.uiscope.UIScope}, the current UI is identified by the {@link UIKey} held in
+ * {@link CurrentInstance}, which is set while a UI is being constructed (so that listeners added by its components are
+ * attached to it) and carried to background tasks, or failing that by the key of {@link UI#getCurrent()}. Where there
+ * is no current UI they act on the default Locale, which is also the starting Locale of each new UI.
+ * <p>
+ * {@link I18NListener}s can be added to listen for locale changes. They are held by weak reference, so there is no
+ * need to remove a listener which is discarded, and a change of Locale notifies only the listeners of the UI which
+ * changed, all with the same {@link I18NTranslator}.
+ * <p>
+ * This class also support the use of annotations to specify the {@link I18NKey} to be used for translation.
+ * Annotations cannot be sub-classed, and in order to support the use of multiple annotations, they must be registered
+ * with {@link CurrentLocale} so that the {@link I18NTranslator} implementation can check for their existence. The
+ * {@link I18N} annotation is registered by default.
  * 
  * @see https://sites.google.com/site/q3cjava/internationalisation-i18n
  * @author David Sowerby 3 Mar 2013
@@ -41,8 +60,56 @@ import com.google.common.collect.Maps;
 @Singleton
 public class CurrentLocale {
 
-	private Locale locale = Locale.UK;
-	private final List<I18NListener> listeners = new ArrayList<>();
+	/**
+	 * The Locale and listeners of one UI, or of the default scope
+	 */
+	private static class LocaleScope {
+		private volatile Locale locale;
+		private final List<WeakReference<I18NListener>> listeners = new ArrayList<>();
+
+		LocaleScope(Locale locale) {
+			super();
+			this.locale = locale;
+		}
+
+		synchronized void add(I18NListener listener) {
+			listeners.add(new WeakReference<>(listener));
+		}
+
+		synchronized void remove(I18NListener listener) {
+			Iterator<WeakReference<I18NListener>> iter = listeners.iterator();
+			while (iter.hasNext()) {
+				I18NListener l = iter.next().get();
+				if ((l == null) || (l == listener)) {
+					iter.remove();
+				}
+			}
+		}
+
+		/**
+		 * Returns the listeners still in use, in the order they were added, and drops those which have been collected
+		 */
+		synchronized List<I18NListener> live() {
+			List<I18NListener> live = new ArrayList<>(listeners.size());
+			Iterator<WeakReference<I18NListener>> iter = listeners.iterator();
+			while (iter.hasNext()) {
+				I18NListener l = iter.next().get();
+				if (l == null) {
+					iter.remove();
+				} else {
+					live.add(l);
+				}
+			}
+			return live;
+		}
+	}
+
+	private final LocaleScope defaultScope = new LocaleScope(Locale.UK);
+	/**
+	 * keyed by {@link UIKey} (or by the UI, for a UI which is not a {@link ScopedUI}), which the UI holds, so that the
+	 * entry is discarded with the UI. Weak keys are compared by identity
+	 */
+	private final ConcurrentMap<Object, LocaleScope> uiScopes = new MapMaker().weakKeys().makeMap();
 	private final Provider<I18NTranslator> translatorPro;
 	private final Map<Class<? extends Annotation>, Provider<? extends I18NAnnotationReader>> readers = new HashMap<>();
 
@@ -53,28 +120,74 @@ public class CurrentLocale {
 		registerAnnotation(I18N.class, readerPro);
 	}
 
+	private LocaleScope scope() {
+		Object uiKey = currentUIKey();
+		if (uiKey == null) {
+			return defaultScope;
+		}
+		LocaleScope scope = uiScopes.get(uiKey);
+		if (scope == null) {
+			scope = new LocaleScope(defaultScope.locale);
+			LocaleScope existing = uiScopes.putIfAbsent(uiKey, scope);
+			if (existing != null) {
+				scope = existing;
+			}
+		}
+		return scope;
+	}
+
+	/**
+	 * Returns the key of the current UI, or null if there is none
+	 */
+	private Object currentUIKey() {
+		UIKey uiKey = CurrentInstance.get(UIKey.class);
+		if (uiKey != null) {
+			return uiKey;
+		}
+		UI ui = UI.getCurrent();
+		if ((ui instanceof ScopedUI) && (((ScopedUI) ui).getInstanceKey() != null)) {
+			return ((ScopedUI) ui).getInstanceKey();
+		}
+		return ui;
+	}
+
 	public Locale getLocale() {
-		return locale;
+		return scope().locale;
 	}
 
+	/**
+	 * Sets the Locale of the current UI, or the default Locale if there is no current UI, and notifies the listeners of
+	 * the same UI if it has changed. A null {@code locale} sets the UI back to the default Locale, and is ignored where
+	 * there is no current UI
+	 * 
+	 * @param locale
+	 */
 	public void setLocale(Locale locale) {
-		if (locale != this.locale) {
-			this.locale = locale;
-			fireListeners(locale);
+		LocaleScope scope = scope();
+		if (locale == null) {
+			locale = defaultScope.locale;
+		}
+		if (!locale.equals(scope.locale)) {
+			scope.locale = locale;
+			fireListeners(scope);
 		}
 	}
 
 	public void addListener(I18NListener listener) {
-		listeners.add(listener);
+		scope().add(listener);
 	}
 
 	public void removeListener(I18NListener listener) {
-		listeners.remove(listener);
+		scope().remove(listener);
 	}
 
-	private void fireListeners(Locale locale) {
+	private void fireListeners(LocaleScope scope) {
+		List<I18NListener> listeners = scope.live();
+		if (listeners.isEmpty()) {
+			return;
+		}
+		I18NTranslator translator = translatorPro.get();
 		for (I18NListener listener : listeners) {
-			I18NTranslator translator = translatorPro.get();
 			listener.localeChange(translator);
 		}
 	}
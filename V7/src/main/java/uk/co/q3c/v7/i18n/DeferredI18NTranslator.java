@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.vaadin.ui.Component;
+
+/**
+ * An {@link AnnotationI18NTranslator} which only cascades a locale change to contained {@link I18NListener}s which
+ * are displayed. A contained listener which is a {@link Component}, but is in a tab which is not selected, is not
+ * visible or is not attached, is marked as stale with {@link DeferredTranslations}, and translated when it is
+ * displayed. This keeps the cost of a locale change to the visible part of a large view.
+ * <p>
+ * To use it, override {@link I18NModule#bindTranslator()}
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class DeferredI18NTranslator extends AnnotationI18NTranslator {
+
+	private final DeferredTranslations deferredTranslations;
+
+	@Inject
+	protected DeferredI18NTranslator(CurrentLocale currentLocale, Provider<I18NTranslator> translatorPro,
+			Translate translate, DeferredTranslations deferredTranslations) {
+		super(currentLocale, translatorPro, translate);
+		this.deferredTranslations = deferredTranslations;
+	}
+
+	@Override
+	protected void translateSubListener(I18NListener sub) {
+		if ((sub instanceof Component) && !deferredTranslations.isShowing((Component) sub)) {
+			deferredTranslations.defer(sub);
+			return;
+		}
+		deferredTranslations.translated(sub);
+		super.translateSubListener(sub);
+	}
+
+}
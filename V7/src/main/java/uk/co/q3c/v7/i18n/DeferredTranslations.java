@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.vaadin.server.AbstractClientConnector;
+import com.vaadin.server.ClientConnector.AttachEvent;
+import com.vaadin.server.ClientConnector.AttachListener;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.SelectiveRenderer;
+import com.vaadin.ui.TabSheet;
+import com.vaadin.ui.TabSheet.SelectedTabChangeEvent;
+import com.vaadin.ui.TabSheet.SelectedTabChangeListener;
+import com.vaadin.ui.UI;
+
+/**
+ * Keeps track of {@link I18NListener} components which missed a locale change because they were not displayed at the
+ * time (see {@link DeferredI18NTranslator}), and translates them when they are displayed. A stale component is
+ * translated automatically when it is attached, or when the tab containing it is selected in a {@link TabSheet}.
+ * Vaadin provides no event when a component is made visible, so code which calls {@code setVisible(true)} on, or
+ * expands, a container of stale components should call {@link #refresh(Component)}.
+ * <p>
+ * Nothing is held here: a stale component is marked by an attach listener of its own, which also watches any
+ * {@link TabSheet} containing it, and which holds the component by weak reference. A stale component is therefore
+ * discarded with its UI (or, if it was never displayed, as soon as nothing else uses it), and
+ * {@link #refresh(Component)} looks only at the components within the one it is given, so one UI is not affected by
+ * the stale components of another.
+ * 
+ * @author David Sowerby
+ * 
+ */
+@Singleton
+public class DeferredTranslations {
+	private static Logger log = LoggerFactory.getLogger(DeferredTranslations.class);
+
+	/**
+	 * Marks a component as stale, and waits for it to be displayed
+	 */
+	private class Deferral implements AttachListener, SelectedTabChangeListener {
+		private final WeakReference<AbstractClientConnector> component;
+		private final Set<TabSheet> tabSheets = new HashSet<>();
+
+		Deferral(AbstractClientConnector component) {
+			super();
+			this.component = new WeakReference<>(component);
+		}
+
+		void watch() {
+			AbstractClientConnector c = component.get();
+			if (c == null) {
+				return;
+			}
+			HasComponents parent = ((Component) c).getParent();
+			while (parent != null) {
+				if ((parent instanceof TabSheet) && tabSheets.add((TabSheet) parent)) {
+					((TabSheet) parent).addSelectedTabChangeListener(this);
+				}
+				parent = parent.getParent();
+			}
+		}
+
+		void unwatch() {
+			AbstractClientConnector c = component.get();
+			if (c != null) {
+				c.removeAttachListener(this);
+			}
+			for (TabSheet tabSheet : tabSheets) {
+				tabSheet.removeSelectedTabChangeListener(this);
+			}
+			tabSheets.clear();
+		}
+
+		@Override
+		public void attach(AttachEvent event) {
+			displayed();
+		}
+
+		@Override
+		public void selectedTabChange(SelectedTabChangeEvent event) {
+			displayed();
+		}
+
+		private void displayed() {
+			AbstractClientConnector c = component.get();
+			if (c == null) {
+				// discarded while in a TabSheet which is still in use
+				unwatch();
+				return;
+			}
+			if (isShowing((Component) c)) {
+				translate((I18NListener) c);
+			} else {
+				// it may have moved, into a different TabSheet for example
+				watch();
+			}
+		}
+	}
+
+	private final Provider<I18NTranslator> translatorPro;
+
+	@Inject
+	protected DeferredTranslations(Provider<I18NTranslator> translatorPro) {
+		super();
+		this.translatorPro = translatorPro;
+	}
+
+	/**
+	 * Returns true if {@code component} would be sent to the browser: that is, it and all its parents are visible,
+	 * none of its parents has chosen not to render it (a {@link TabSheet} does not render the components in tabs which
+	 * are not selected), and it is attached to a {@link UI}
+	 * 
+	 * @param component
+	 * @return
+	 */
+	public boolean isShowing(Component component) {
+		Component c = component;
+		while (true) {
+			if (!c.isVisible()) {
+				return false;
+			}
+			HasComponents parent = c.getParent();
+			if (parent == null) {
+				return c instanceof UI;
+			}
+			if ((parent instanceof SelectiveRenderer) && !((SelectiveRenderer) parent).isRendered(c)) {
+				return false;
+			}
+			c = parent;
+		}
+	}
+
+	/**
+	 * Marks {@code listener} as stale, so that it will be translated when it is next displayed. Marking a component
+	 * which is already stale has no further effect, as it will be translated with whatever the locale is at that
+	 * time. A component which cannot carry the mark (one which does not extend {@link AbstractClientConnector}) is
+	 * translated straight away.
+	 * 
+	 * @param listener
+	 *            must be a {@link Component}
+	 */
+	public void defer(I18NListener listener) {
+		if (!(listener instanceof AbstractClientConnector)) {
+			listener.localeChange(translatorPro.get());
+			return;
+		}
+		AbstractClientConnector component = (AbstractClientConnector) listener;
+		if (deferralOf(component) != null) {
+			return;
+		}
+		Deferral deferral = new Deferral(component);
+		component.addAttachListener(deferral);
+		deferral.watch();
+		log.debug("translation of {} deferred until it is displayed", listener.getClass().getSimpleName());
+	}
+
+	private Deferral deferralOf(Object listener) {
+		if (!(listener instanceof AbstractClientConnector)) {
+			return null;
+		}
+		for (Object attachListener : ((AbstractClientConnector) listener).getListeners(AttachEvent.class)) {
+			if (attachListener instanceof Deferral) {
+				return (Deferral) attachListener;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if {@code listener} has missed a locale change and has not yet been translated
+	 * 
+	 * @param listener
+	 * @return
+	 */
+	public boolean isStale(I18NListener listener) {
+		return deferralOf(listener) != null;
+	}
+
+	/**
+	 * Stops tracking {@code listener}, because it is being translated anyway
+	 * 
+	 * @param listener
+	 */
+	public void translated(I18NListener listener) {
+		Deferral deferral = deferralOf(listener);
+		if (deferral != null) {
+			deferral.unwatch();
+		}
+	}
+
+	/**
+	 * Translates any stale components which are, or are contained by, {@code component} and are now displayed. Call
+	 * this after making a container visible, or expanding it.
+	 * 
+	 * @param component
+	 */
+	public void refresh(Component component) {
+		List<I18NListener> due = new ArrayList<>();
+		collectDue(component, due);
+		for (I18NListener listener : due) {
+			translate(listener);
+		}
+	}
+
+	private void collectDue(Component component, List<I18NListener> due) {
+		if (!component.isVisible()) {
+			return;
+		}
+		if ((component instanceof I18NListener) && (deferralOf(component) != null) && isShowing(component)) {
+			due.add((I18NListener) component);
+		}
+		if (component instanceof HasComponents) {
+			Iterator<Component> iter = ((HasComponents) component).iterator();
+			while (iter.hasNext()) {
+				collectDue(iter.next(), due);
+			}
+		}
+	}
+
+	private void translate(I18NListener listener) {
+		translated(listener);
+		listener.localeChange(translatorPro.get());
+	}
+
+}
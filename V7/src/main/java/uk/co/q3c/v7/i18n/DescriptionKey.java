@@ -16,7 +16,7 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 
 public enum DescriptionKey implements I18NKey<Descriptions> {
-	_nullkey_, Application_Configuration_Service, Confirm_Ok, Last_Name, No_Permission, Service_not_Started, Sitemap_Service, You_have_not_logged_in,
+	_nullkey_, Application_Configuration_Service, Background_Task_Service, Confirm_Ok, Last_Name, Login_Attempt_Journal, No_Permission, Security_Audit_Log, Service_not_Started, Session_Sweeper, Sitemap_Service, UIScope_Sweeper, You_have_not_logged_in,
 	// Small_Font;
 	;
 	@Override
@@ -27,7 +27,7 @@ public enum DescriptionKey implements I18NKey<Descriptions> {
 
 	@Override
 	public String getValue(Locale locale) {
-		return getBundle(locale).getValue(this);
+		return I18NKeyValues.valueOf(this, locale);
 	}
 
 	@Override
@@ -40,6 +40,16 @@ public class Descriptions extends EnumResourceBundle<DescriptionKey> {
 				"This service loads the application configuration from V7.ini");
 		map.put(DescriptionKey.Sitemap_Service,
 				"This service creates the Sitemap using options from the application configuration");
+		map.put(DescriptionKey.UIScope_Sweeper,
+				"This service periodically releases UI scopes which have been left behind by UIs which were never detached");
+		map.put(DescriptionKey.Background_Task_Service,
+				"This service runs long running tasks in the background and returns their results to the UI");
+		map.put(DescriptionKey.Security_Audit_Log,
+				"This service writes security events, such as logins and access to protected pages, to the audit files");
+		map.put(DescriptionKey.Session_Sweeper,
+				"This service periodically removes security sessions which are no longer valid");
+		map.put(DescriptionKey.Login_Attempt_Journal,
+				"This service keeps a journal of login attempts, so that lockouts survive a restart");
 	}
 
 	@Override
@@ -47,5 +47,15 @@ public abstract class EnumResourceBundle<E extends Enum<E>> extends ResourceBund
 
 	}
 
+	/**
+	 * Returns the bundle which this one falls back to, or null if there is none
+	 * 
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	EnumResourceBundle<E> getParentBundle() {
+		return (EnumResourceBundle<E>) parent;
+	}
+
 	public abstract EnumMap<E, String> getMap();
 }
\ No newline at end of file
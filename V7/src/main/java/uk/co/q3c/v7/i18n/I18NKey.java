@@ -19,7 +19,8 @@ public interface I18NKey<E extends EnumResourceBundle<?>> {
 	E getBundle(Locale locale);
 
 	/**
-	 * Use {@link Translate} rather than call this method directly
+	 * Use {@link Translate} rather than call this method directly. Implementations should normally return
+	 * {@link I18NKeyValues#valueOf(I18NKey, Locale)}, which avoids a bundle look up for each call
 	 * 
 	 * @param locale
 	 * @return
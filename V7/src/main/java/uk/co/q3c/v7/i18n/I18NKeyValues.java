@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the values of {@link I18NKey} enums as flat arrays, one per enum class and Locale, indexed by the ordinal of
+ * the key. Each array is built the first time a key of its class is looked up for its Locale, by taking the value of
+ * every key from the {@link EnumResourceBundle} for that Locale, so that fallbacks to parent bundles are resolved once
+ * and not on every look up. After that, {@link #valueOf(I18NKey, Locale)} is two map reads and an array read, with no
+ * call to {@link java.util.ResourceBundle#getBundle(String, Locale)}.
+ * <p>
+ * A key with no value in the bundle or any of its parents has a null entry, as
+ * {@link EnumResourceBundle#getValue(Enum)} would return. Call {@link #clear()} if bundle contents are changed at
+ * runtime.
+ * <p>
+ * Values can also be supplied from outside the compiled bundles, by {@link #publish(Class, Map)} (see
+ * {@link PropertiesBundleLoader}). External and bundle values are merged level by level: a key takes the first value
+ * found for its Locale, then the Locale without its variant, then without its country, then the root Locale, and at
+ * each level an external value takes precedence over the bundle for that level. So an external value replaces the
+ * bundle value of the same or a less specific Locale, but not of a more specific one: an external root value does not
+ * hide a value compiled into {@code Labels_de}. A bundle which the JDK falls back to for another Locale (that of the
+ * default Locale) is ranked with the root Locale. Publishing replaces all the tables at once, so a look up sees either
+ * the old values or the new ones, never a mixture.
+ * <p>
+ * Tables are kept for at most {@link #MAX_LOCALES} Locales, as Locales can come from client requests. A Locale which
+ * arrives once that many are held is served from its bundle on each look up, as it would be without this class, and
+ * does not add to the memory used.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public final class I18NKeyValues {
+
+	public static final int MAX_LOCALES = 64;
+
+	private static volatile ConcurrentMap<Locale, ConcurrentMap<Class<?>, String[]>> registry = new ConcurrentHashMap<>();
+	private static volatile Map<Class<?>, Map<Locale, String[]>> external = Collections.emptyMap();
+
+	private I18NKeyValues() {
+		super();
+	}
+
+	/**
+	 * Returns the value of {@code key} for {@code locale}, or null if it has none. Keys are expected to be enums; any
+	 * other implementation is looked up in its bundle directly
+	 * 
+	 * @param key
+	 * @param locale
+	 * @return
+	 */
+	public static String valueOf(I18NKey<?> key, Locale locale) {
+		if (!(key instanceof Enum)) {
+			return bundleValue(key.getBundle(locale), key);
+		}
+		Enum<?> e = (Enum<?>) key;
+		// read once, so that a table built while values are published goes into the registry being discarded
+		ConcurrentMap<Locale, ConcurrentMap<Class<?>, String[]>> current = registry;
+		ConcurrentMap<Class<?>, String[]> tables = current.get(locale);
+		if (tables == null) {
+			if (current.size() >= MAX_LOCALES) {
+				return uncachedValue(e, locale);
+			}
+			tables = new ConcurrentHashMap<>();
+			ConcurrentMap<Class<?>, String[]> existing = current.putIfAbsent(locale, tables);
+			if (existing != null) {
+				tables = existing;
+			}
+		}
+		Class<?> keyClass = e.getDeclaringClass();
+		String[] table = tables.get(keyClass);
+		if (table == null) {
+			// built outside any lock; if two threads race, both build the same values and one is kept
+			table = build(key, locale);
+			String[] existing = tables.putIfAbsent(keyClass, table);
+			if (existing != null) {
+				table = existing;
+			}
+		}
+		return table[e.ordinal()];
+	}
+
+	private static String[] build(I18NKey<?> key, Locale locale) {
+		Class<?> keyClass = ((Enum<?>) key).getDeclaringClass();
+		Object[] constants = keyClass.getEnumConstants();
+		List<Object> sources = sources(keyClass, key.getBundle(locale), locale);
+		String[] table = new String[constants.length];
+		for (int i = 0; i < constants.length; i++) {
+			table[i] = valueFrom(sources, (Enum<?>) constants[i]);
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the value of a single key, for a Locale which has no tables
+	 */
+	private static String uncachedValue(Enum<?> key, Locale locale) {
+		return valueFrom(sources(key.getDeclaringClass(), ((I18NKey<?>) key).getBundle(locale), locale), key);
+	}
+
+	/**
+	 * Returns the first value of {@code key} in {@code sources}, or null if none has a value
+	 */
+	@SuppressWarnings("rawtypes")
+	private static String valueFrom(List<Object> sources, Enum<?> key) {
+		for (Object source : sources) {
+			String value = (source instanceof String[]) ? ((String[]) source)[key.ordinal()]
+					: (String) ((EnumResourceBundle) source).getMap().get(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the places to look for a value for {@code locale}, most specific first: at each level, the external
+	 * table (a String[]) and then the {@link EnumResourceBundle} for that level, without its parents
+	 */
+	@SuppressWarnings("rawtypes")
+	private static List<Object> sources(Class<?> keyClass, EnumResourceBundle<?> bundle, Locale locale) {
+		Map<Locale, String[]> tables = external.get(keyClass);
+		List<Locale> candidates = candidates(locale);
+		List<Object> sources = new ArrayList<>(candidates.size() * 2);
+		EnumResourceBundle level = bundle;
+		for (int rank = 0; rank < candidates.size(); rank++) {
+			String[] table = (tables == null) ? null : tables.get(candidates.get(rank));
+			if (table != null) {
+				sources.add(table);
+			}
+			while ((level != null) && (rank(candidates, level.getLocale()) <= rank)) {
+				sources.add(level);
+				level = level.getParentBundle();
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * Returns the position of {@code bundleLocale} in {@code candidates}, taking any Locale which is not a candidate as
+	 * the root Locale
+	 */
+	private static int rank(List<Locale> candidates, Locale bundleLocale) {
+		int rank = candidates.indexOf(bundleLocale);
+		return (rank < 0) ? candidates.size() - 1 : rank;
+	}
+
+	private static List<Locale> candidates(Locale locale) {
+		List<Locale> candidates = new ArrayList<>(4);
+		String language = locale.getLanguage();
+		String country = locale.getCountry();
+		if (!locale.getVariant().isEmpty()) {
+			candidates.add(locale);
+		}
+		if (!country.isEmpty()) {
+			candidates.add(new Locale(language, country));
+		}
+		if (!language.isEmpty()) {
+			candidates.add(new Locale(language));
+		}
+		candidates.add(Locale.ROOT);
+		return candidates;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static String bundleValue(EnumResourceBundle bundle, Object key) {
+		return bundle.getValue((Enum) key);
+	}
+
+	/**
+	 * The number of Locales for which tables are held
+	 */
+	static int cachedLocales() {
+		return registry.size();
+	}
+
+	/**
+	 * Discards all the tables, so that they are rebuilt from the bundles when next used
+	 */
+	public static void clear() {
+		registry = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Sets the external values for the keys of {@code keyClass}, replacing any published before, and discards all the
+	 * tables so that they are rebuilt with the new values. Each array is indexed by key ordinal, with a null where the
+	 * external source has no value. An empty map removes the external values for {@code keyClass}.
+	 * 
+	 * @param keyClass
+	 * @param tables
+	 *            arrays of values by Locale. The arrays must not be changed after they are published
+	 */
+	public static synchronized void publish(Class<? extends Enum<?>> keyClass, Map<Locale, String[]> tables) {
+		Map<Class<?>, Map<Locale, String[]>> replacement = new HashMap<>(external);
+		if (tables.isEmpty()) {
+			replacement.remove(keyClass);
+		} else {
+			replacement.put(keyClass, Collections.unmodifiableMap(new HashMap<>(tables)));
+		}
+		external = replacement;
+		clear();
+	}
+
+}
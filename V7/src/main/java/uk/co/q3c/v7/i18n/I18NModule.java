@@ -18,6 +18,14 @@ public class I18NModule extends AbstractModule {
 
 	@Override
 	protected void configure() {
+		bindTranslator();
+	}
+
+	/**
+	 * Override this to bind a different {@link I18NTranslator}, for example {@link DeferredI18NTranslator} to defer the
+	 * translation of components which are not currently displayed
+	 */
+	protected void bindTranslator() {
 		bind(I18NTranslator.class).to(AnnotationI18NTranslator.class);
 	}
 
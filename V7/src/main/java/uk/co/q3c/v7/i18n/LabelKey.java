@@ -21,7 +21,7 @@ import java.util.ResourceBundle;
  * 
  */
 public enum LabelKey implements I18NKey<Labels> {
-	_nullkey_, Application_Configuration_Service, Authentication, Authorisation, Cancel, Enable_Account, First_Name, Guest, Home, Invalid_Page, Last_Name, Log_In, Log_Out, No, Ok, Private, Public, Refresh_Account, Request_Account, Reset_Account, Small, Sitemap_Service, System_Account, Unlock_Account, Yes;
+	_nullkey_, Application_Configuration_Service, Authentication, Authorisation, Background_Task_Service, Cancel, Enable_Account, First_Name, Guest, Home, Invalid_Page, Last_Name, Log_In, Log_Out, Login_Attempt_Journal, No, Ok, Private, Public, Refresh_Account, Request_Account, Reset_Account, Security_Audit_Log, Session_Sweeper, Small, Sitemap_Service, System_Account, UIScope_Sweeper, Unlock_Account, Yes;
 
 	@Override
 	public Labels getBundle(Locale locale) {
@@ -31,8 +31,7 @@ public enum LabelKey implements I18NKey<Labels> {
 
 	@Override
 	public String getValue(Locale locale) {
-		String value = getBundle(locale).getValue(this);
-		return value;
+		return I18NKeyValues.valueOf(this, locale);
 	}
 
 	@Override
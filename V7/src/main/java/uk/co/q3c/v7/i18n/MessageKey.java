@@ -29,7 +29,7 @@ public enum MessageKey implements I18NKey<Messages> {
 
 	@Override
 	public String getValue(Locale locale) {
-		return getBundle(locale).getValue(this);
+		return I18NKeyValues.valueOf(this, locale);
 	}
 
 	@Override
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Loads the values of an {@link I18NKey} enum from UTF-8 properties files, so that text can be corrected without a
+ * rebuild. The files are in one directory, and are named as a {@link java.util.ResourceBundle} would be:
+ * {@code Labels.properties} for the root Locale, {@code Labels_de.properties}, {@code Labels_de_CH.properties} and so
+ * on, where {@code Labels} is the base name given to the constructor. Each property name must be the name of a
+ * constant of the key enum; any other name is reported by {@link #getProblems()} and ignored.
+ * <p>
+ * {@link #load()} compiles all the files into arrays indexed by key ordinal, and publishes them with
+ * {@link I18NKeyValues#publish(Class, Map)}, where a file takes precedence over the compiled {@link EnumResourceBundle}
+ * of the same or a less specific Locale. Nothing extra is done at look up. If any file cannot be read, nothing is
+ * published and the values already in use are kept.
+ * <p>
+ * {@link #watch()} starts a daemon thread which loads the files again whenever one of them is created, changed or
+ * deleted. Components already displayed keep their text until they are next translated.
+ * 
+ * @author David Sowerby
+ * 
+ */
+public class PropertiesBundleLoader<E extends Enum<E>> {
+
+	private static Logger log = LoggerFactory.getLogger(PropertiesBundleLoader.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String EXTENSION = ".properties";
+	/**
+	 * The time, in ms, to wait after a file change for any further changes, so that a file which is still being
+	 * written, or a group of files being copied, is loaded once
+	 */
+	public static final long SETTLE_TIME = 250;
+
+	private final Class<E> keyClass;
+	private final File directory;
+	private final String baseName;
+	private final Map<String, E> keys = new HashMap<>();
+	private volatile ImmutableList<String> problems = ImmutableList.of();
+	private WatchService watchService;
+	private Thread watcher;
+
+	/**
+	 * 
+	 * @param keyClass
+	 *            the {@link I18NKey} enum the files provide values for
+	 * @param directory
+	 *            the directory holding the files
+	 * @param baseName
+	 *            the file name before any Locale suffix, usually the simple name of the bundle class, for example
+	 *            "Labels"
+	 */
+	public PropertiesBundleLoader(Class<E> keyClass, File directory, String baseName) {
+		super();
+		this.keyClass = keyClass;
+		this.directory = directory;
+		this.baseName = baseName;
+		for (E key : keyClass.getEnumConstants()) {
+			keys.put(key.name(), key);
+		}
+	}
+
+	/**
+	 * Reads all the files for {@link #baseName} and publishes their values
+	 * 
+	 * @return true if the values were published, false if a file could not be read
+	 */
+	public synchronized boolean load() {
+		Map<Locale, String[]> tables = new HashMap<>();
+		List<String> found = new ArrayList<>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				Locale locale = localeOf(file.getName());
+				if ((locale == null) || !file.isFile()) {
+					continue;
+				}
+				try {
+					tables.put(locale, compile(file, found));
+				} catch (IOException e) {
+					log.error("Unable to read " + file + ", values for " + keyClass.getSimpleName() + " not changed", e);
+					return false;
+				}
+			}
+		}
+		problems = ImmutableList.copyOf(found);
+		I18NKeyValues.publish(keyClass, tables);
+		log.debug("{} values loaded from {} files", keyClass.getSimpleName(), tables.size());
+		return true;
+	}
+
+	private String[] compile(File file, List<String> found) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), UTF8)) {
+			properties.load(reader);
+		}
+		String[] table = new String[keys.size()];
+		for (String name : properties.stringPropertyNames()) {
+			E key = keys.get(name);
+			if (key == null) {
+				String problem = file.getName() + ": '" + name + "' is not a key of " + keyClass.getSimpleName();
+				log.warn(problem);
+				found.add(problem);
+			} else {
+				table[key.ordinal()] = properties.getProperty(name);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Returns the Locale a file provides values for, or null if the file is not one of this loader's
+	 * 
+	 * @param fileName
+	 * @return
+	 */
+	protected Locale localeOf(String fileName) {
+		if (!fileName.startsWith(baseName) || !fileName.endsWith(EXTENSION)) {
+			return null;
+		}
+		String suffix = fileName.substring(baseName.length(), fileName.length() - EXTENSION.length());
+		if (suffix.isEmpty()) {
+			return Locale.ROOT;
+		}
+		if (suffix.charAt(0) != '_') {
+			return null;
+		}
+		String[] parts = suffix.substring(1).split("_", 3);
+		switch (parts.length) {
+		case 1:
+			return new Locale(parts[0]);
+		case 2:
+			return new Locale(parts[0], parts[1]);
+		default:
+			return new Locale(parts[0], parts[1], parts[2]);
+		}
+	}
+
+	/**
+	 * Loads the files, then starts watching {@link #directory} and loads them again after each change
+	 * 
+	 * @throws IOException
+	 *             if the directory cannot be watched
+	 */
+	public synchronized void watch() throws IOException {
+		if (watcher != null) {
+			return;
+		}
+		load();
+		final WatchService service = FileSystems.getDefault().newWatchService();
+		directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		watchService = service;
+		watcher = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						WatchKey key = service.take();
+						boolean changed = relevant(key);
+						// let a burst of changes settle, then load once
+						WatchKey next;
+						while ((next = service.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null) {
+							changed |= relevant(next);
+						}
+						if (changed) {
+							load();
+						}
+					}
+				} catch (InterruptedException | ClosedWatchServiceException e) {
+					log.debug("stopped watching {}", directory);
+				}
+			}
+		}, "v7-i18n-" + baseName + "-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private boolean relevant(WatchKey key) {
+		boolean relevant = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			Object context = event.context();
+			if ((event.kind() == StandardWatchEventKinds.OVERFLOW)
+					|| ((context instanceof Path) && (localeOf(context.toString()) != null))) {
+				relevant = true;
+			}
+		}
+		key.reset();
+		return relevant;
+	}
+
+	/**
+	 * Stops watching for changes. The values already published remain in use.
+	 */
+	public synchronized void close() {
+		if (watcher == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			log.warn("Unable to close the watch service for " + directory, e);
+		}
+		watcher.interrupt();
+		watcher = null;
+		watchService = null;
+	}
+
+	/**
+	 * Returns the property names found by the last {@link #load()} which are not keys of {@link #keyClass}
+	 * 
+	 * @return
+	 */
+	public ImmutableList<String> getProblems() {
+		return problems;
+	}
+
+	public Class<E> getKeyClass() {
+		return keyClass;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+}
@@ -14,6 +14,8 @@ package uk.co.q3c.v7.i18n;
 
 import java.text.MessageFormat;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.inject.Inject;
 
@@ -22,12 +24,31 @@ import com.google.inject.Inject;
  * value for the key (but cannot use arguments) by using {@link I18NKey#getValue(Locale)}. This class simply provides a
  * slightly neater syntax, a method for expanding a pattern with parameters. Some methods also have a simpler signature
  * by defaulting to {@link CurrentLocale}
+ * <p>
+ * Patterns with arguments are expanded by {@link MessageFormat}, exactly as
+ * {@link MessageFormat#format(String, Object...)} would. Each pattern is compiled the first time it is used with
+ * arguments, and kept for its key and Locale, so it is not parsed again; as a {@link MessageFormat} is not thread safe,
+ * each call formats with a copy of the compiled one. A kept pattern is only used while the key still has the same
+ * pattern, so a change of bundle content is picked up. Compiled patterns are kept for at most
+ * {@link I18NKeyValues#MAX_LOCALES} Locales.
  * 
  * @author David Sowerby 3 Aug 2013
  * 
  */
 public class Translate {
 
+	private static class Compiled {
+		private final String pattern;
+		private final MessageFormat format;
+
+		Compiled(String pattern) {
+			this.pattern = pattern;
+			this.format = new MessageFormat(pattern);
+		}
+	}
+
+	private static final ConcurrentMap<Locale, ConcurrentMap<I18NKey<?>, Compiled>> compiled =
+			new ConcurrentHashMap<>();
 	private final CurrentLocale currentLocale;
 
 	@Inject
@@ -57,8 +78,28 @@ public class Translate {
 		if ((arguments == null) || (arguments.length == 0)) {
 			return pattern;
 		}
-		String result = MessageFormat.format(pattern, arguments);
-		return result;
+		MessageFormat format = (MessageFormat) compile(key, locale, pattern).format.clone();
+		return format.format(arguments);
+	}
+
+	private Compiled compile(I18NKey<?> key, Locale locale, String pattern) {
+		ConcurrentMap<I18NKey<?>, Compiled> forLocale = compiled.get(locale);
+		if (forLocale == null) {
+			if (compiled.size() >= I18NKeyValues.MAX_LOCALES) {
+				return new Compiled(pattern);
+			}
+			forLocale = new ConcurrentHashMap<>();
+			ConcurrentMap<I18NKey<?>, Compiled> existing = compiled.putIfAbsent(locale, forLocale);
+			if (existing != null) {
+				forLocale = existing;
+			}
+		}
+		Compiled kept = forLocale.get(key);
+		if ((kept == null) || (!kept.pattern.equals(pattern))) {
+			kept = new Compiled(pattern);
+			forLocale.put(key, kept);
+		}
+		return kept;
 	}
 
 	/**
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.vaadin.data.Property;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.Table;
+
+/**
+ * The fields of a class which {@link AnnotationI18NTranslator} needs to visit, worked out once per class and held in a
+ * {@link ClassValue}. Each {@link Step} holds a getter for its field, what kind of field it is, and the annotations on
+ * it, so that translating an instance is a loop over the steps with no reflection. Fields which are neither
+ * {@link I18NListener}s nor annotated {@link AbstractComponent}s are left out.
+ * <p>
+ * The annotations are kept as found, rather than resolved to keys, because which of them are used depends on the
+ * annotations registered with {@link CurrentLocale}, which may change.
+ * 
+ * @author David Sowerby
+ * 
+ */
+class TranslationPlan {
+
+	private static final ClassValue<TranslationPlan> plans = new ClassValue<TranslationPlan>() {
+		@Override
+		protected TranslationPlan computeValue(Class<?> type) {
+			return new TranslationPlan(type);
+		}
+	};
+
+	/**
+	 * One field of the class, in declaration order
+	 */
+	static class Step {
+		private final String name;
+		private final MethodHandle getter;
+		private final boolean listener;
+		private final boolean component;
+		private final boolean property;
+		private final boolean table;
+		private final ImmutableList<Annotation> annotations;
+
+		Step(Field field) {
+			super();
+			Class<?> type = field.getType();
+			name = field.getName();
+			listener = I18NListener.class.isAssignableFrom(type);
+			component = AbstractComponent.class.isAssignableFrom(type);
+			property = Property.class.isAssignableFrom(type);
+			table = Table.class.isAssignableFrom(type);
+			annotations = ImmutableList.copyOf(field.getDeclaredAnnotations());
+			getter = getterFor(field);
+		}
+
+		private static MethodHandle getterFor(Field field) {
+			field.setAccessible(true);
+			try {
+				MethodHandle handle = MethodHandles.lookup().unreflectGetter(field);
+				if (Modifier.isStatic(field.getModifiers())) {
+					return MethodHandles.dropArguments(handle.asType(MethodType.methodType(Object.class)), 0,
+							Object.class);
+				}
+				return handle.asType(MethodType.methodType(Object.class, Object.class));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Unable to access field " + field.getName(), e);
+			}
+		}
+
+		/**
+		 * Returns the value of this field in {@code target}
+		 */
+		Object get(Object target) {
+			try {
+				return getter.invokeExact(target);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Unable to read field " + name, e);
+			}
+		}
+
+		String getName() {
+			return name;
+		}
+
+		boolean isListener() {
+			return listener;
+		}
+
+		boolean isComponent() {
+			return component;
+		}
+
+		boolean isProperty() {
+			return property;
+		}
+
+		boolean isTable() {
+			return table;
+		}
+
+		ImmutableList<Annotation> getAnnotations() {
+			return annotations;
+		}
+	}
+
+	private final ImmutableList<Step> steps;
+
+	private TranslationPlan(Class<?> type) {
+		super();
+		List<Step> list = new ArrayList<>();
+		for (Field field : type.getDeclaredFields()) {
+			Class<?> fieldType = field.getType();
+			boolean listener = I18NListener.class.isAssignableFrom(fieldType);
+			boolean annotatedComponent = AbstractComponent.class.isAssignableFrom(fieldType)
+					&& (field.getDeclaredAnnotations().length > 0);
+			if (listener || annotatedComponent) {
+				list.add(new Step(field));
+			}
+		}
+		steps = ImmutableList.copyOf(list);
+	}
+
+	/**
+	 * Returns the plan for {@code type}, creating it the first time
+	 * 
+	 * @param type
+	 * @return
+	 */
+	static TranslationPlan forClass(Class<?> type) {
+		return plans.get(type);
+	}
+
+	ImmutableList<Step> getSteps() {
+		return steps;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.util;
+
+import static org.fest.assertions.Assertions.*;
+
+import org.junit.Test;
+
+public class MessageTemplateTest {
+
+	@Test
+	public void reused() {
+
+		// given
+		MessageTemplate template = MessageTemplate.compile("Redirecting {0} to {1} would cause a loop");
+		// when
+		String first = template.format("a", "b");
+		String second = template.format("b", 3);
+		// then
+		assertThat(template.isValid()).isTrue();
+		assertThat(template.getParameterCount()).isEqualTo(2);
+		assertThat(first).isEqualTo("Redirecting a to b would cause a loop");
+		assertThat(second).isEqualTo("Redirecting b to 3 would cause a loop");
+
+	}
+
+	@Test
+	public void reordered() {
+
+		// given
+		MessageTemplate template = MessageTemplate.compile("{2}{1}{0}");
+		// when
+		String result = template.format("a", "b", "c");
+		// then
+		assertThat(result).isEqualTo("cba");
+
+	}
+
+	@Test
+	public void escapedAndLiteralOnly() {
+
+		// given
+		MessageTemplate escaped = MessageTemplate.compile("ignoring \\{3} but not {0}");
+		MessageTemplate literal = MessageTemplate.compile("no placeholders");
+		// then
+		assertThat(escaped.format("this")).isEqualTo("ignoring {3} but not this");
+		assertThat(literal.format()).isEqualTo("no placeholders");
+
+	}
+
+	@Test
+	public void invalid() {
+
+		// given
+		MessageTemplate unclosed = MessageTemplate.compile("an {0 unclosed placeholder");
+		MessageTemplate nonNumeric = MessageTemplate.compile("a {zero} placeholder");
+		MessageTemplate outOfRange = MessageTemplate.compile("a {1} placeholder");
+		// then
+		assertThat(unclosed.isValid()).isFalse();
+		assertThat(unclosed.format("x")).isEqualTo("an {0 unclosed placeholder");
+		assertThat(nonNumeric.format("x")).isEqualTo("a {zero} placeholder");
+		assertThat(outOfRange.format("x")).isEqualTo("a {1} placeholder");
+
+	}
+
+	@Test
+	public void argumentValues() {
+
+		// given
+		MessageTemplate template = MessageTemplate.compile("{0} and {1}");
+		// when
+		String result = template.format(null, new int[] { 1, 2 });
+		// then
+		assertThat(result).isEqualTo("null and [1, 2]");
+
+	}
+
+	@Test
+	public void formatTo() {
+
+		// given
+		MessageTemplate template = MessageTemplate.compile("{0} is not a valid page");
+		StringBuilder buf = new StringBuilder("Error: ");
+		// when
+		template.formatTo(buf, "private/wiggly");
+		// then
+		assertThat(buf.toString()).isEqualTo("Error: private/wiggly is not a valid page");
+
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.subject.Subject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+import uk.co.q3c.v7.base.shiro.AsyncAuthenticator;
+import uk.co.q3c.v7.base.task.BackgroundTaskService;
+import uk.co.q3c.v7.base.task.TaskCallback;
+
+import com.google.inject.Injector;
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.vaadin.server.VaadinService;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class BaseServletTest {
+
+	TestGuiceServletInjector servletInjector;
+
+	@Mock
+	ThreadLocal<ServletContext> ctx;
+
+	@Mock
+	ServletContextEvent servletContextEvent;
+
+	@Mock
+	ServletContext servletContext;
+
+	@Mock
+	ServletConfig servletConfig;
+
+	@Before
+	public void setup() {
+		VaadinService vaadinService = mock(VaadinService.class);
+		when(vaadinService.getBaseDirectory()).thenReturn(new File("src/test/java"));
+		VaadinService.setCurrent(vaadinService);
+		when(ctx.get()).thenReturn(servletContext);
+		when(servletContextEvent.getServletContext()).thenReturn(servletContext);
+		when(servletContext.getInitParameterNames()).thenReturn(
+				Collections.enumeration(Collections.<String> emptyList()));
+		when(servletConfig.getServletContext()).thenReturn(servletContext);
+		when(servletConfig.getInitParameterNames()).thenReturn(
+				Collections.enumeration(Collections.<String> emptyList()));
+		servletInjector = new TestGuiceServletInjector(ctx);
+		servletInjector.contextInitialized(servletContextEvent);
+	}
+
+	@After
+	public void teardown() {
+		servletInjector.contextDestroyed(servletContextEvent);
+		VaadinService.setCurrent(null);
+	}
+
+	@Test
+	public void taskServiceStartedAndStopped() throws Exception {
+
+		// given
+		Injector injector = servletInjector.getInjector();
+		BaseServlet servlet = injector.getInstance(BaseServlet.class);
+		BackgroundTaskService taskService = injector.getInstance(BackgroundTaskService.class);
+		// when
+		servlet.init(servletConfig);
+		// then
+		assertThat(taskService.isStarted()).isTrue();
+		// when
+		servlet.destroy();
+		// then
+		assertThat(taskService.isStarted()).isFalse();
+
+	}
+
+	/**
+	 * With the wiring used by the servlet, the realms are called in the authentication pool, not on the calling thread
+	 */
+	@Test
+	public void loginRunsInPool() throws Exception {
+
+		// given
+		Injector injector = servletInjector.getInjector();
+		BaseServlet servlet = injector.getInstance(BaseServlet.class);
+		servlet.init(servletConfig);
+		AsyncAuthenticator authenticator = injector.getInstance(AsyncAuthenticator.class);
+		final CountDownLatch done = new CountDownLatch(1);
+		final Object[] outcome = new Object[2];
+		// when
+		authenticator.login(new UsernamePasswordToken("nobody", "wrong"), new TaskCallback<Subject>() {
+
+			@Override
+			public void onSuccess(Subject result) {
+				outcome[0] = result;
+				outcome[1] = Thread.currentThread().getName();
+				done.countDown();
+			}
+
+			@Override
+			public void onFailure(Throwable cause) {
+				outcome[0] = cause;
+				outcome[1] = Thread.currentThread().getName();
+				done.countDown();
+			}
+		});
+		// then
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(outcome[0]).isInstanceOf(AuthenticationException.class);
+		assertThat((String) outcome[1]).startsWith("v7-task-" + BackgroundTaskService.AUTHENTICATION_POOL);
+		servlet.destroy();
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.requestscope;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.shiro.subject.Subject;
+import org.junit.After;
+import org.junit.Test;
+
+import uk.co.q3c.v7.base.shiro.SubjectProvider;
+import uk.co.q3c.v7.base.shiro.VaadinSessionProvider;
+
+import com.vaadin.server.VaadinSession;
+
+public class RequestMemoTest {
+
+	@After
+	public void teardown() {
+		while (RequestMemo.isActive()) {
+			RequestMemo.end();
+		}
+	}
+
+	@Test
+	public void inactive() {
+
+		// given
+
+		// when
+		RequestMemo.put("a", "value");
+		// then
+		assertThat(RequestMemo.isActive()).isFalse();
+		assertThat(RequestMemo.get("a")).isNull();
+	}
+
+	@Test
+	public void nested() {
+
+		// given
+		RequestMemo.begin();
+		RequestMemo.put(RequestMemo.key("a", 1), "value");
+		// when
+		RequestMemo.begin();
+		RequestMemo.end();
+		// then
+		assertThat(RequestMemo.get(RequestMemo.key("a", 1))).isEqualTo("value");
+		RequestMemo.end();
+		assertThat(RequestMemo.isActive()).isFalse();
+		assertThat(RequestMemo.get(RequestMemo.key("a", 1))).isNull();
+	}
+
+	@Test
+	public void subjectMemoised() {
+
+		// given
+		Subject subject = mock(Subject.class);
+		VaadinSession session = mock(VaadinSession.class);
+		when(session.getAttribute(Subject.class)).thenReturn(subject);
+		VaadinSessionProvider sessionProvider = mock(VaadinSessionProvider.class);
+		when(sessionProvider.getIfPresent()).thenReturn(session);
+		SubjectProvider subjectProvider = new SubjectProvider(sessionProvider) {
+		};
+		RequestMemo.begin();
+		// when
+		subjectProvider.get();
+		subjectProvider.get();
+		SubjectProvider.invalidate();
+		Subject result = subjectProvider.get();
+		// then
+		assertThat(result).isSameAs(subject);
+		verify(session, times(2)).getAttribute(Subject.class);
+	}
+
+}
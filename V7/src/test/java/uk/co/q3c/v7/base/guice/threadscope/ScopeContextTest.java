@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.threadscope;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.q3c.v7.base.guice.uiscope.UIKey;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+public class ScopeContextTest {
+
+	Injector injector;
+	ExecutorService executor;
+
+	@Before
+	public void setup() {
+		ScopeContext.reset();
+		injector = Guice.createInjector(new ThreadScopeModule());
+		// a single thread, so that the test also shows the thread is cleaned up between tasks
+		executor = new ScopeContextExecutorService(Executors.newSingleThreadExecutor());
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+		ScopeContext.reset();
+	}
+
+	@Test
+	public void propagation() throws Exception {
+
+		// given
+		final SomeClass someClass = injector.getInstance(SomeClass.class);
+		UIKey uiKey = new UIKey(23);
+		CurrentInstance.set(UIKey.class, uiKey);
+		Subject subject = mock(Subject.class);
+		ThreadContext.bind(subject);
+		// when
+		Object[] result = executor.submit(new Callable<Object[]>() {
+
+			@Override
+			public Object[] call() throws Exception {
+				return new Object[] { injector.getInstance(SomeClass.class), CurrentInstance.get(UIKey.class),
+						ThreadContext.getSubject() };
+			}
+		}).get();
+		// then
+		assertThat(result[0]).isSameAs(someClass);
+		assertThat(result[1]).isEqualTo(uiKey);
+		assertThat(result[2]).isSameAs(subject);
+	}
+
+	@Test
+	public void requestNotPropagated() throws Exception {
+
+		// given
+		VaadinSession session = mock(VaadinSession.class);
+		UI ui = mock(UI.class);
+		VaadinRequest request = mock(VaadinRequest.class);
+		CurrentInstance.set(VaadinSession.class, session);
+		CurrentInstance.set(UI.class, ui);
+		CurrentInstance.set(VaadinRequest.class, request);
+		CurrentInstance.set(VaadinResponse.class, mock(VaadinResponse.class));
+		// when
+		Object[] result = executor.submit(new Callable<Object[]>() {
+
+			@Override
+			public Object[] call() throws Exception {
+				return new Object[] { VaadinSession.getCurrent(), UI.getCurrent(),
+						CurrentInstance.get(VaadinRequest.class), CurrentInstance.get(VaadinResponse.class) };
+			}
+		}).get();
+		// then
+		assertThat(result[0]).isSameAs(session);
+		assertThat(result[1]).isSameAs(ui);
+		assertThat(result[2]).isNull();
+		assertThat(result[3]).isNull();
+		// and the capturing thread is unchanged
+		assertThat(CurrentInstance.get(VaadinRequest.class)).isSameAs(request);
+	}
+
+	@Test
+	public void pooledThreadCleared() throws Exception {
+
+		// given
+		final SomeClass someClass = injector.getInstance(SomeClass.class);
+		CurrentInstance.set(UIKey.class, new UIKey(23));
+		ThreadContext.bind(mock(Subject.class));
+		executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				injector.getInstance(SomeClass.class);
+			}
+		}).get();
+		ScopeContext.reset();
+		// when
+		Object[] result = executor.submit(new Callable<Object[]>() {
+
+			@Override
+			public Object[] call() throws Exception {
+				return new Object[] { injector.getInstance(SomeClass.class), CurrentInstance.get(UIKey.class),
+						ThreadContext.getSubject() };
+			}
+		}).get();
+		// then
+		assertThat(result[0]).isNotSameAs(someClass);
+		assertThat(result[1]).isNull();
+		assertThat(result[2]).isNull();
+	}
+
+	@Test
+	public void detachRestoresPrevious() {
+
+		// given
+		SomeClass original = injector.getInstance(SomeClass.class);
+		UIKey originalKey = new UIKey(1);
+		CurrentInstance.set(UIKey.class, originalKey);
+		ScopeContext other = ScopeContext.capture();
+		ScopeContext.reset();
+		CurrentInstance.set(UIKey.class, new UIKey(2));
+		SomeClass replaced = injector.getInstance(SomeClass.class);
+		// when
+		ScopeContext previous = other.attach();
+		SomeClass attached = injector.getInstance(SomeClass.class);
+		UIKey attachedKey = CurrentInstance.get(UIKey.class);
+		other.detach(previous);
+		// then
+		assertThat(attached).isSameAs(original);
+		assertThat(attachedKey).isEqualTo(originalKey);
+		assertThat(injector.getInstance(SomeClass.class)).isSameAs(replaced);
+		assertThat(CurrentInstance.get(UIKey.class)).isEqualTo(new UIKey(2));
+	}
+}
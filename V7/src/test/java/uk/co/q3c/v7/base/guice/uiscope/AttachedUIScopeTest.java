@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.q3c.v7.base.ui.ScopedUI;
+import uk.co.q3c.v7.base.ui.ScopedUIProvider;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.ProvisionException;
+import com.google.inject.name.Names;
+import com.vaadin.server.UIClassSelectionEvent;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+public class AttachedUIScopeTest {
+
+	@UIScoped
+	public static class ScopedObject {
+
+	}
+
+	Injector injector;
+
+	@Before
+	public void setup() {
+		CurrentInstance.clearAll();
+		injector = Guice.createInjector(new AttachedUIScopeModule());
+	}
+
+	@After
+	public void teardown() {
+		CurrentInstance.clearAll();
+	}
+
+	@Test
+	public void constructionUsesCurrentInstance() {
+
+		// given
+		UIScopeStore store = new UIScopeStore(new UIKey(1));
+		CurrentInstance.set(UIScopeStore.class, store);
+		// when
+		ScopedObject o1 = injector.getInstance(ScopedObject.class);
+		ScopedObject o2 = injector.getInstance(ScopedObject.class);
+		// then
+		assertThat(o1).isSameAs(o2);
+		assertThat(store.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void storeHeldByUI() {
+
+		// given
+		UIScopeStore store1 = new UIScopeStore(new UIKey(1));
+		UIScopeStore store2 = new UIScopeStore(new UIKey(2));
+		ScopedUI ui1 = mock(ScopedUI.class);
+		ScopedUI ui2 = mock(ScopedUI.class);
+		when(ui1.getScopeStore()).thenReturn(store1);
+		when(ui2.getScopeStore()).thenReturn(store2);
+		// when
+		UI.setCurrent(ui1);
+		ScopedObject o1a = injector.getInstance(ScopedObject.class);
+		ScopedObject o1b = injector.getInstance(ScopedObject.class);
+		UI.setCurrent(ui2);
+		ScopedObject o2 = injector.getInstance(ScopedObject.class);
+		// then
+		assertThat(o1a).isSameAs(o1b);
+		assertThat(o2).isNotSameAs(o1a);
+		assertThat(store1.size()).isEqualTo(1);
+		assertThat(store2.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void noStore() {
+
+		// given
+
+		// when
+		try {
+			injector.getInstance(ScopedObject.class);
+			fail("exception expected");
+		} catch (ProvisionException pe) {
+			// then
+			assertThat(pe.getCause()).isInstanceOf(UIScopeException.class);
+		}
+	}
+
+	@Test
+	public void serialize() throws Exception {
+
+		// given
+		UIScopeStore store = new UIScopeStore(new UIKey(7L, 3L));
+		store.put("a", "value");
+		// when
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(store);
+		oos.close();
+		UIScopeStore result = (UIScopeStore) new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))
+				.readObject();
+		// then
+		assertThat(result.getUiKey()).isEqualTo(store.getUiKey());
+		assertThat(result.get("a")).isEqualTo("value");
+	}
+
+	@Test
+	public void providerUsesStoreOnly() {
+
+		// given
+		final ScopedUI previous = mock(ScopedUI.class);
+		final ScopedUI created = mock(ScopedUI.class);
+		final UIScopeStore[] storeDuringConstruction = new UIScopeStore[1];
+		final UI[] uiDuringConstruction = new UI[1];
+		Map<String, Provider<UI>> uiProMap = new HashMap<>();
+		uiProMap.put(ScopedUI.class.getName(), new Provider<UI>() {
+
+			@Override
+			public UI get() {
+				storeDuringConstruction[0] = CurrentInstance.get(UIScopeStore.class);
+				uiDuringConstruction[0] = UI.getCurrent();
+				return created;
+			}
+		});
+		ScopedUIProvider provider = new ScopedUIProvider(uiProMap, new UIKeyProvider()) {
+
+			@Override
+			public Class<? extends UI> getUIClass(UIClassSelectionEvent event) {
+				return ScopedUI.class;
+			}
+		};
+		injector.injectMembers(provider);
+		UI.setCurrent(previous);
+		// when
+		provider.createInstance(ScopedUI.class);
+		// then
+		assertThat(injector.getInstance(Key.get(Boolean.class, Names.named(UIScopeModule.ATTACHED_UI_SCOPE))))
+				.isTrue();
+		assertThat(storeDuringConstruction[0]).isNotNull();
+		assertThat(uiDuringConstruction[0]).isNull();
+		assertThat(UI.getCurrent()).isSameAs(previous);
+		assertThat(UIScope.getCurrent().cacheHasEntryFor(storeDuringConstruction[0].getUiKey())).isFalse();
+		verify(created).setScopeStore(storeDuringConstruction[0]);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.guice.uiscope;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class UIKeyTest {
+
+	@Test
+	public void concurrentGeneration_unique() throws Exception {
+
+		// given
+		final UIKeyProvider provider = new UIKeyProvider();
+		final Set<UIKey> keys = Collections.newSetFromMap(new ConcurrentHashMap<UIKey, Boolean>());
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Void>> futures = new ArrayList<>();
+		// when
+		for (int i = 0; i < 8; i++) {
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					for (int j = 0; j < 5000; j++) {
+						keys.add(provider.get());
+					}
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		// then
+		assertThat(keys).hasSize(40000);
+		assertThat(keys.iterator().next().getNode()).isEqualTo(UIKeyProvider.getNode());
+	}
+
+	@Test
+	public void separateProvidersShareSequence() {
+
+		// given
+		UIKeyProvider provider1 = new UIKeyProvider();
+		UIKeyProvider provider2 = new UIKeyProvider();
+		// when
+		UIKey key1 = provider1.get();
+		UIKey key2 = provider2.get();
+		// then
+		assertThat(key1).isNotEqualTo(key2);
+		assertThat(key1.compareTo(key2)).isLessThan(0);
+	}
+
+	@Test
+	public void equalsAndCompare() {
+
+		// given
+		UIKey key1 = new UIKey(7L, 100L);
+		UIKey key2 = new UIKey(7L, 100L);
+		UIKey otherNode = new UIKey(8L, 100L);
+		// when
+
+		// then
+		assertThat(key1).isEqualTo(key2);
+		assertThat(key1.hashCode()).isEqualTo(key2.hashCode());
+		assertThat(key1.compareTo(key2)).isEqualTo(0);
+		assertThat(key1).isNotEqualTo(otherNode);
+		assertThat(key1.compareTo(otherNode)).isLessThan(0);
+		assertThat(new UIKey(3)).isEqualTo(new UIKey(0L, 3L));
+	}
+
+	@Test
+	public void compactString() {
+
+		// given
+		UIKey key = new UIKey(UIKeyProvider.getNode(), 123456789L);
+		// when
+		UIKey result = UIKey.fromCompactString(key.toCompactString());
+		// then
+		assertThat(result).isEqualTo(key);
+		assertThat(key.toCompactString().length()).isLessThan(22);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void compactString_invalid() {
+
+		// given
+
+		// when
+		UIKey.fromCompactString("wiggly");
+		// then
+	}
+
+	@Test
+	public void serialization() throws Exception {
+
+		// given
+		UIKey key = new UIKeyProvider().get();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		// when
+		out.writeObject(key);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		UIKey result = (UIKey) in.readObject();
+		// then
+		assertThat(result).isEqualTo(key);
+		assertThat(result.hashCode()).isEqualTo(key.hashCode());
+	}
+}
@@ -4,9 +4,20 @@ import static org.fest.assertions.Assertions.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.google.inject.Inject;
 
@@ -33,6 +44,7 @@ import uk.co.q3c.v7.base.navigate.sitemap.DefaultFileSitemapLoader;
 import uk.co.q3c.v7.base.navigate.sitemap.FileSitemapLoader;
 import uk.co.q3c.v7.base.navigate.sitemap.Sitemap;
 import uk.co.q3c.v7.base.navigate.sitemap.SitemapService;
+import uk.co.q3c.v7.base.navigate.sitemap.UriValidationResult;
 import uk.co.q3c.v7.base.services.AbstractServiceI18N;
 import uk.co.q3c.v7.base.services.Service;
 import uk.co.q3c.v7.base.services.ServicesMonitorModule;
@@ -42,6 +54,7 @@ import uk.co.q3c.v7.base.shiro.DefaultUnauthenticatedExceptionHandler;
 import uk.co.q3c.v7.base.shiro.DefaultUnauthorizedExceptionHandler;
 import uk.co.q3c.v7.base.shiro.DefaultVaadinSessionProvider;
 import uk.co.q3c.v7.base.shiro.LoginStatusHandler;
+import uk.co.q3c.v7.base.shiro.SecurityAuditLog;
 import uk.co.q3c.v7.base.shiro.SubjectIdentifier;
 import uk.co.q3c.v7.base.shiro.UnauthenticatedExceptionHandler;
 import uk.co.q3c.v7.base.shiro.UnauthorizedExceptionHandler;
@@ -69,6 +82,7 @@ import uk.co.q3c.v7.i18n.Translate;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Provider;
 import com.google.inject.multibindings.MapBinder;
 import com.vaadin.data.util.converter.ConverterFactory;
@@ -78,6 +92,7 @@ import com.vaadin.server.UIProvider;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinService;
 import com.vaadin.server.VaadinSession;
+import com.vaadin.server.WrappedSession;
 import com.vaadin.ui.UI;
 import com.vaadin.util.CurrentInstance;
 
@@ -127,6 +142,11 @@ public class UIScopeTest {
 			return mock(Sitemap.class);
 		}
 
+		@Override
+		public List<UriValidationResult> validate(Collection<String> uris) {
+			return new ArrayList<>();
+		}
+
 	}
 
 	UIProvider provider;
@@ -177,6 +197,7 @@ public class UIScopeTest {
 			bind(SitemapService.class).to(MockSitemapService.class);
 			bind(FileSitemapLoader.class).to(DefaultFileSitemapLoader.class);
 			bind(ApplicationConfigurationService.class).to(DefaultApplicationConfigurationService.class);
+			bind(SecurityAuditLog.class).toInstance(mock(SecurityAuditLog.class));
 
 		}
 	}
@@ -225,6 +246,164 @@ public class UIScopeTest {
 		assertThat(to1).isNotEqualTo(to2);
 	}
 
+	@Test
+	public void concurrentCreation_oneInstancePerUI() throws Exception {
+
+		// given
+		UIScope scope = new UIScope();
+		final Provider<TestObject> scoped = scope.scope(Key.get(TestObject.class), new Provider<TestObject>() {
+
+			@Override
+			public TestObject get() {
+				try {
+					// widen the window for a race
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new TestObject();
+			}
+		});
+		CurrentInstance.set(UI.class, null);
+		CurrentInstance.set(UIKey.class, null);
+		final CountDownLatch startGate = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<TestObject>> futures = new ArrayList<>();
+		for (int i = 0; i < 32; i++) {
+			final UIKey uiKey = new UIKey(1000 + (i % 2));
+			futures.add(executor.submit(new Callable<TestObject>() {
+
+				@Override
+				public TestObject call() throws Exception {
+					CurrentInstance.set(UI.class, null);
+					CurrentInstance.set(UIKey.class, uiKey);
+					startGate.await();
+					try {
+						return scoped.get();
+					} finally {
+						CurrentInstance.set(UIKey.class, null);
+					}
+				}
+			}));
+		}
+		// when
+		startGate.countDown();
+		Set<TestObject> even = new HashSet<>();
+		Set<TestObject> odd = new HashSet<>();
+		for (int i = 0; i < futures.size(); i++) {
+			TestObject result = futures.get(i).get(10, TimeUnit.SECONDS);
+			if (i % 2 == 0) {
+				even.add(result);
+			} else {
+				odd.add(result);
+			}
+		}
+		executor.shutdown();
+		// then
+		assertThat(even).hasSize(1);
+		assertThat(odd).hasSize(1);
+		assertThat(even.iterator().next()).isNotSameAs(odd.iterator().next());
+		assertThat(scope.cacheHasEntryFor(new UIKey(1000))).isTrue();
+		assertThat(scope.cacheHasEntryFor(new UIKey(1001))).isTrue();
+	}
+
+	@Test
+	public void releaseScopes_forSession() {
+
+		// given
+		UIScope scope = new UIScope();
+		VaadinSession session1 = mock(VaadinSession.class);
+		VaadinSession session2 = mock(VaadinSession.class);
+		scope.startScope(new UIKey(2001));
+		scope.startScope(new UIKey(2002));
+		scope.startScope(new UIKey(2003));
+		scope.bindSession(new UIKey(2001), session1);
+		scope.bindSession(new UIKey(2002), session1);
+		scope.bindSession(new UIKey(2003), session2);
+		// when
+		int released = scope.releaseScopes(session1);
+		// then
+		assertThat(released).isEqualTo(2);
+		assertThat(scope.cacheHasEntryFor(new UIKey(2001))).isFalse();
+		assertThat(scope.cacheHasEntryFor(new UIKey(2002))).isFalse();
+		assertThat(scope.cacheHasEntryFor(new UIKey(2003))).isTrue();
+		assertThat(scope.getMetrics().getReleasedBySession()).isEqualTo(2);
+	}
+
+	@Test
+	public void sweep() throws Exception {
+
+		// given
+		UIScope scope = new UIScope();
+		WrappedSession activeWrapped = mock(WrappedSession.class);
+		when(activeWrapped.getMaxInactiveInterval()).thenReturn(1800);
+		VaadinSession active = mock(VaadinSession.class);
+		when(active.getSession()).thenReturn(activeWrapped);
+		when(active.getLastRequestTimestamp()).thenReturn(System.currentTimeMillis());
+
+		WrappedSession idleWrapped = mock(WrappedSession.class);
+		when(idleWrapped.getMaxInactiveInterval()).thenReturn(1);
+		VaadinSession idle = mock(VaadinSession.class);
+		when(idle.getSession()).thenReturn(idleWrapped);
+		when(idle.getLastRequestTimestamp()).thenReturn(System.currentTimeMillis() - 5000);
+
+		VaadinSession invalidated = mock(VaadinSession.class);
+		when(invalidated.getSession()).thenThrow(new IllegalStateException());
+
+		scope.startScope(new UIKey(3001));
+		scope.startScope(new UIKey(3002));
+		scope.startScope(new UIKey(3003));
+		scope.startScope(new UIKey(3004));
+		scope.bindSession(new UIKey(3001), active);
+		scope.bindSession(new UIKey(3002), idle);
+		scope.bindSession(new UIKey(3003), invalidated);
+		// 3004 has no session
+		// when
+		int releasedBeforeIdle = scope.sweep(60000);
+		Thread.sleep(1100);
+		int releasedAfterIdle = scope.sweep(10);
+		// then
+		assertThat(releasedBeforeIdle).isEqualTo(1);
+		assertThat(releasedAfterIdle).isEqualTo(2);
+		assertThat(scope.cacheHasEntryFor(new UIKey(3001))).isTrue();
+		assertThat(scope.getMetrics().getLiveScopes()).isEqualTo(1);
+		assertThat(scope.getMetrics().getReleasedBySweep()).isEqualTo(3);
+	}
+
+	@Test
+	public void retentionAndMetrics() {
+
+		// given
+		UIScope scope = new UIScope();
+		Provider<TestObject> scoped = scope.scope(Key.get(TestObject.class), new Provider<TestObject>() {
+
+			@Override
+			public TestObject get() {
+				return new TestObject();
+			}
+		});
+		CurrentInstance.set(UI.class, null);
+		CurrentInstance.set(UIKey.class, new UIKey(4001));
+		// when
+		scope.setRetention(UIScopeRetention.WEAK);
+		TestObject weaklyHeld = scoped.get();
+		// then
+		assertThat(scoped.get()).isSameAs(weaklyHeld);
+		assertThat(scope.getRetention()).isEqualTo(UIScopeRetention.WEAK);
+		UIScopeMetrics metrics = scope.getMetrics();
+		assertThat(metrics.getLiveScopes()).isEqualTo(1);
+		assertThat(metrics.getTotalObjects()).isEqualTo(1);
+		assertThat(metrics.getObjectsPerScope().get(new UIKey(4001))).isEqualTo(1);
+		assertThat(metrics.getEstimatedRetainedBytes()).isGreaterThan(0);
+
+		// when
+		scope.releaseScope(new UIKey(4001));
+		// then
+		assertThat(scope.getMetrics().getLiveScopes()).isEqualTo(0);
+		assertThat(scope.getMetrics().getReleasedByDetach()).isEqualTo(1);
+		CurrentInstance.set(UIKey.class, null);
+	}
+
 	@SuppressWarnings("deprecation")
 	protected ScopedUI createUI(Class<? extends ScopedUI> clazz) {
 
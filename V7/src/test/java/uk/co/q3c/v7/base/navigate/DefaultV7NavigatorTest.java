@@ -23,6 +23,7 @@ import uk.co.q3c.v7.base.navigate.sitemap.SitemapService;
 import uk.co.q3c.v7.base.shiro.PageAccessControl;
 import uk.co.q3c.v7.base.shiro.PageAccessController;
 import uk.co.q3c.v7.base.shiro.PagePermission;
+import uk.co.q3c.v7.base.shiro.SecurityAuditLog;
 import uk.co.q3c.v7.base.shiro.SubjectProvider;
 import uk.co.q3c.v7.base.ui.ScopedUI;
 import uk.co.q3c.v7.base.view.ErrorView;
@@ -823,6 +824,7 @@ public class DefaultV7NavigatorTest {
 			@Override
 			protected void configure() {
 				bind(URIFragmentHandler.class).to(StrictURIFragmentHandler.class);
+				bind(SecurityAuditLog.class).toInstance(mock(SecurityAuditLog.class));
 			}
 
 		};
@@ -241,6 +241,42 @@ public class DefaultSitemapServiceTest {
 		assertThat(service.absolutePathFor("/wiggly.ini")).isEqualTo(new File("/wiggly.ini"));
 	}
 
+	@Test
+	public void validate() throws Exception {
+
+		// given
+		copySitemapPropertiesToTemp();
+		service.start();
+		List<String> uris = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			uris.add((i % 2 == 0) ? "direct/a/id=" + i : "direct/b");
+		}
+		uris.add("direct");
+		// when
+		List<UriValidationResult> results = service.validate(uris);
+		// then
+		assertThat(results).hasSize(2001);
+		assertThat(results.get(0).getUri()).isEqualTo("direct/a/id=0");
+		assertThat(results.get(0).isValid()).isTrue();
+		assertThat(results.get(0).getPageAccessControl()).isEqualTo(PageAccessControl.PUBLIC);
+		assertThat(results.get(1).isValid()).isFalse();
+		assertThat(results.get(1).getNearestNode()).isEqualTo(sitemap.nodeFor("direct"));
+		assertThat(results.get(1998).getUri()).isEqualTo("direct/a/id=1998");
+		assertThat(results.get(2000).getRedirectPage()).isEqualTo("direct/a");
+		assertThat(results.get(2000).getTargetNode()).isEqualTo(sitemap.nodeFor("direct/a"));
+	}
+
+	@Test(expected = SitemapException.class)
+	public void validate_notStarted() {
+
+		// given
+		List<String> uris = new ArrayList<>();
+		uris.add("direct");
+		// when
+		service.validate(uris);
+		// then
+	}
+
 	@Test(expected = SitemapException.class)
 	public void invalidSource_noGoodOnes() throws Exception {
 
@@ -22,9 +22,12 @@ import java.util.Locale;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import uk.co.q3c.v7.base.guice.requestscope.RequestMemo;
 import uk.co.q3c.v7.base.navigate.NavigationState;
 import uk.co.q3c.v7.base.navigate.StrictURIFragmentHandler;
 import uk.co.q3c.v7.base.navigate.URIFragmentHandler;
+import uk.co.q3c.v7.base.shiro.PageAccessControl;
+import uk.co.q3c.v7.base.shiro.PagePermission;
 import uk.co.q3c.v7.base.view.LoginView;
 import uk.co.q3c.v7.base.view.PublicHomeView;
 import uk.co.q3c.v7.i18n.AnnotationI18NTranslator;
@@ -71,6 +74,27 @@ public class SitemapTest {
 		assertThat(sitemap.uri(child)).isEqualTo("public/home/login");
 	}
 
+	@Test
+	public void urlMemoisedUntilSegmentChanges() {
+
+		// given
+		Sitemap sitemap = new Sitemap(uriHandler, translate);
+		SitemapNode child = sitemap.append("public/home/login");
+		SitemapNode parent = sitemap.getParent(child);
+		RequestMemo.begin();
+		try {
+			String before = sitemap.uri(child);
+			// when
+			parent.setUriSegment("house");
+			// then
+			assertThat(before).isEqualTo("public/home/login");
+			assertThat(sitemap.uri(child)).isEqualTo("public/house/login");
+			assertThat(sitemap.uri(child)).isSameAs(sitemap.uri(child));
+		} finally {
+			RequestMemo.end();
+		}
+	}
+
 	@Test
 	public void translateSet() {
 
@@ -359,6 +383,73 @@ public class SitemapTest {
 		assertThat(sitemap.getRedirectPageFor("public/home/view1")).isEqualTo("public/home/view3");
 	}
 
+	@Test
+	public void validate() {
+
+		// given
+		Sitemap sitemap = new Sitemap(uriHandler, translate);
+		sitemap.append("public/home/view1");
+		sitemap.append("public/home/view2");
+		sitemap.append("public/home/view3");
+		sitemap.addRedirect("public/home/view1", "public/home/view2");
+		sitemap.addRedirect("public/home/view2", "public/home/view3");
+		sitemap.addRedirect("public/old", "public/gone");
+		sitemap.nodeFor("public/home/view3").setPageAccessControl(PageAccessControl.USER);
+		// when
+		UriValidationResult exact = sitemap.validate("public/home/view3/id=2");
+		UriValidationResult redirected = sitemap.validate("public/home/view1");
+		UriValidationResult nearest = sitemap.validate("public/home/view4/more");
+		UriValidationResult deadRedirect = sitemap.validate("public/old");
+		UriValidationResult none = sitemap.validate("private/home");
+		// then
+		assertThat(exact.isValid()).isTrue();
+		assertThat(exact.isRedirected()).isFalse();
+		assertThat(exact.getVirtualPage()).isEqualTo("public/home/view3");
+		assertThat(exact.getNode()).isEqualTo(sitemap.nodeFor("public/home/view3"));
+		assertThat(exact.getNearestNode()).isEqualTo(exact.getNode());
+		assertThat(exact.getPageAccessControl()).isEqualTo(PageAccessControl.USER);
+
+		assertThat(redirected.isValid()).isTrue();
+		assertThat(redirected.getRedirectPage()).isEqualTo("public/home/view3");
+		assertThat(redirected.getTargetNode()).isEqualTo(sitemap.nodeFor("public/home/view3"));
+		assertThat(redirected.getPageAccessControl()).isEqualTo(PageAccessControl.USER);
+
+		assertThat(nearest.isValid()).isFalse();
+		assertThat(nearest.getNode()).isNull();
+		assertThat(nearest.getNearestNode()).isEqualTo(sitemap.nodeNearestFor("public/home/view4/more"));
+		assertThat(nearest.getNearestNode()).isEqualTo(sitemap.nodeFor("public/home"));
+
+		assertThat(deadRedirect.isRedirected()).isTrue();
+		assertThat(deadRedirect.isValid()).isFalse();
+		assertThat(deadRedirect.getNearestNode()).isEqualTo(sitemap.nodeFor("public"));
+
+		assertThat(none.isValid()).isFalse();
+		assertThat(none.getNearestNode()).isNull();
+		assertThat(none.getPageAccessControl()).isNull();
+	}
+
+	@Test
+	public void pagePermissionCompiled() {
+
+		// given
+		Sitemap sitemap = new Sitemap(uriHandler, translate);
+		SitemapNode node = sitemap.append("private/home");
+		// when
+		sitemap.publish();
+		PagePermission p1 = sitemap.pagePermission(node);
+		PagePermission p2 = sitemap.pagePermission(node);
+		// then
+		assertThat(p1).isSameAs(p2);
+		assertThat(p1).isEqualTo(new PagePermission("private/home"));
+		assertThat(sitemap.editPagePermission(node)).isEqualTo(new PagePermission("private/home", false, true));
+
+		// when the structure changes
+		SitemapNode parent = sitemap.append("other");
+		sitemap.addChild(parent, node);
+		// then
+		assertThat(sitemap.pagePermission(node)).isEqualTo(new PagePermission("other/home"));
+	}
+
 	@ModuleProvider
 	protected AbstractModule moduleProvider() {
 		return new AbstractModule() {
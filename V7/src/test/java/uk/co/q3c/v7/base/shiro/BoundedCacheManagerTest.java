@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Test;
+
+public class BoundedCacheManagerTest {
+
+	@Test
+	public void sameCacheForName() {
+
+		// given
+		BoundedCacheManager manager = new BoundedCacheManager();
+		// when
+		Cache<String, String> cache1 = manager.getCache("a");
+		Cache<String, String> cache2 = manager.getCache("a");
+		// then
+		assertThat(cache1).isSameAs(cache2);
+		assertThat(manager.getMetrics().keySet()).containsOnly("a");
+	}
+
+	@Test
+	public void leastRecentlyUsedEvicted() {
+
+		// given
+		BoundedCacheManager manager = new BoundedCacheManager(2, 60000);
+		Cache<String, String> cache = manager.getCache("a");
+		cache.put("1", "one");
+		cache.put("2", "two");
+		cache.get("1");
+		// when
+		cache.put("3", "three");
+		// then
+		assertThat(cache.keys()).containsOnly("1", "3");
+		CacheMetrics metrics = manager.getMetrics().get("a");
+		assertThat(metrics.getEvictions()).isEqualTo(1);
+		assertThat(metrics.getHits()).isEqualTo(1);
+	}
+
+	@Test
+	public void expiry() throws InterruptedException {
+
+		// given
+		BoundedCacheManager manager = new BoundedCacheManager(10, 20);
+		Cache<String, String> cache = manager.getCache("a");
+		cache.put("1", "one");
+		// when
+		Thread.sleep(50);
+		// then
+		assertThat(cache.get("1")).isNull();
+		CacheMetrics metrics = manager.getMetrics().get("a");
+		assertThat(metrics.getExpirations()).isEqualTo(1);
+		assertThat(metrics.getMisses()).isEqualTo(1);
+		assertThat(metrics.getHitRate()).isEqualTo(0);
+	}
+
+	@Test
+	public void invalidatePrincipal() {
+
+		// given
+		BoundedCacheManager manager = new BoundedCacheManager();
+		Cache<PrincipalCollection, AuthorizationInfo> cache = manager.getCache("authorisation");
+		cache.put(new SimplePrincipalCollection("fred", "realm"), new SimpleAuthorizationInfo());
+		cache.put(new SimplePrincipalCollection("jim", "realm"), new SimpleAuthorizationInfo());
+		// when
+		manager.invalidatePrincipal("fred");
+		// then
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.get(new SimplePrincipalCollection("jim", "realm"))).isNotNull();
+	}
+
+	@Test
+	public void changesReported() {
+
+		// given
+		BoundedCacheManager manager = new BoundedCacheManager();
+		AuthorisationChanges changes = manager.getChanges();
+		Cache<PrincipalCollection, AuthorizationInfo> cache = manager.getCache("authorisation");
+		long fred = changes.versionFor("fred");
+		long jim = changes.versionFor("jim");
+		// when
+		cache.remove(new SimplePrincipalCollection("fred", "realm"));
+		// then
+		assertThat(changes.versionFor("fred")).isGreaterThan(fred);
+		assertThat(changes.versionFor("jim")).isEqualTo(jim);
+		// when
+		cache.clear();
+		// then
+		assertThat(changes.versionFor("jim")).isGreaterThan(jim);
+	}
+
+}
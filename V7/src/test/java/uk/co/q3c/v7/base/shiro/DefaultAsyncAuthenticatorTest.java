@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.IncorrectCredentialsException;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.subject.Subject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import uk.co.q3c.v7.base.task.BackgroundTaskService;
+import uk.co.q3c.v7.base.task.TaskCallback;
+
+import com.google.inject.Provider;
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class DefaultAsyncAuthenticatorTest {
+
+	@Mock
+	BackgroundTaskService taskService;
+
+	@Mock
+	SubjectProvider subjectProvider;
+
+	@Mock
+	V7SecurityManager securityManager;
+
+	@Mock
+	Subject subject;
+
+	@Mock
+	Subject loggedIn;
+
+	@Mock
+	AuthenticationInfo info;
+
+	@Mock
+	TaskCallback<Subject> callback;
+
+	DefaultAsyncAuthenticator authenticator;
+
+	UsernamePasswordToken token = new UsernamePasswordToken("fred", "password");
+
+	@Before
+	public void setup() {
+		when(subjectProvider.get()).thenReturn(subject);
+		authenticator = new DefaultAsyncAuthenticator(taskService, subjectProvider, new Provider<V7SecurityManager>() {
+			@Override
+			public V7SecurityManager get() {
+				return securityManager;
+			}
+		});
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void realmCalledInPoolAndLoginCompletedInCallback() throws Exception {
+
+		// given
+		when(taskService.isStarted()).thenReturn(true);
+		when(securityManager.authenticate(token)).thenReturn(info);
+		when(securityManager.login(subject, token, info)).thenReturn(loggedIn);
+		ArgumentCaptor<Callable> task = ArgumentCaptor.forClass(Callable.class);
+		ArgumentCaptor<TaskCallback> completion = ArgumentCaptor.forClass(TaskCallback.class);
+		// when
+		authenticator.login(token, callback);
+		// then
+		verify(taskService).submit(eq(BackgroundTaskService.AUTHENTICATION_POOL), task.capture(),
+				completion.capture());
+		verify(securityManager, never()).authenticate(token);
+		// when the pool runs the task and delivers the result
+		Object result = task.getValue().call();
+		completion.getValue().onSuccess(result);
+		// then
+		verify(callback).onSuccess(loggedIn);
+		verify(subject, never()).login(token);
+
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void failureReported() {
+
+		// given
+		when(taskService.isStarted()).thenReturn(true);
+		ArgumentCaptor<TaskCallback> completion = ArgumentCaptor.forClass(TaskCallback.class);
+		IncorrectCredentialsException ice = new IncorrectCredentialsException();
+		// when
+		authenticator.login(token, callback);
+		verify(taskService).submit(eq(BackgroundTaskService.AUTHENTICATION_POOL), any(Callable.class),
+				completion.capture());
+		completion.getValue().onFailure(ice);
+		// then
+		verify(securityManager).loginFailed(token, ice, subject);
+		verify(callback).onFailure(ice);
+
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void rejectedWhenSaturated() {
+
+		// given
+		when(taskService.isStarted()).thenReturn(true);
+		when(taskService.submit(anyString(), any(Callable.class), any(TaskCallback.class))).thenThrow(
+				new RejectedExecutionException("full"));
+		ArgumentCaptor<Throwable> cause = ArgumentCaptor.forClass(Throwable.class);
+		// when
+		authenticator.login(token, callback);
+		// then
+		verify(callback).onFailure(cause.capture());
+		assertThat(cause.getValue()).isInstanceOf(LoginRejectedException.class);
+		assertThat(authenticator.getRejected()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void synchronousWhenServiceNotStarted() {
+
+		// given
+		when(taskService.isStarted()).thenReturn(false);
+		// when
+		authenticator.login(token, callback);
+		// then
+		verify(subject).login(token);
+		verify(callback).onSuccess(subject);
+
+	}
+
+}
@@ -16,6 +16,9 @@ import static org.fest.assertions.Assertions.*;
 
 import com.google.inject.Inject;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.UsernamePasswordToken;
 import org.joda.time.DateTime;
@@ -101,4 +104,134 @@ public class DefaultLoginAttemptLogTest {
 
 	}
 
+	@Test
+	public void failuresDecayAfterWindow() throws InterruptedException {
+
+		// given
+		attemptLog.setMaximumAttempts(3);
+		attemptLog.setWindowMillis(150);
+		UsernamePasswordToken token = new UsernamePasswordToken(username, "anything");
+		attemptLog.recordFailedAttempt(token);
+		attemptLog.recordFailedAttempt(token);
+		// when
+		Thread.sleep(200);
+		// then
+		assertThat(attemptLog.failedAttempts(username)).isEqualTo(0);
+		attemptLog.recordFailedAttempt(token);
+		assertThat(attemptLog.failedAttempts(username)).isEqualTo(1);
+
+	}
+
+	@Test
+	public void addressLimitAcrossUsernames() {
+
+		// given
+		attemptLog.setMaximumAttempts(3);
+		attemptLog.setMaximumAttemptsPerAddress(5);
+		// when
+		int rejected = 0;
+		for (int i = 0; i < 10; i++) {
+			try {
+				attemptLog.recordFailedAttempt(new UsernamePasswordToken("user" + i, "anything", "10.0.0.1"));
+			} catch (ExcessiveAttemptsException e) {
+				rejected++;
+			}
+		}
+		// then
+		assertThat(attemptLog.failedAttemptsFromAddress("10.0.0.1")).isEqualTo(10);
+		assertThat(rejected).isEqualTo(6);
+		assertThat(attemptLog.failedAttemptsFromAddress("10.0.0.2")).isEqualTo(0);
+
+	}
+
+	@Test
+	public void boundedSize() {
+
+		// given
+		attemptLog.setMaximumEntries(100);
+		// when
+		for (int i = 0; i < 1000; i++) {
+			attemptLog.recordSuccessfulAttempt(new UsernamePasswordToken("user" + i, "anything"));
+		}
+		// then the idlest are removed, but not those with the same access time which are still needed
+		assertThat(attemptLog.trackedUsers()).isLessThanOrEqualTo(100);
+		assertThat(attemptLog.trackedUsers()).isGreaterThan(90);
+		assertThat(attemptLog.successfulAttempts("user999")).isEqualTo(1);
+
+	}
+
+	@Test
+	public void failuresNotEvicted() {
+
+		// given
+		attemptLog.setMaximumAttempts(3);
+		attemptLog.setMaximumEntries(10);
+		for (int i = 0; i < 10; i++) {
+			attemptLog.recordFailedAttempt(new UsernamePasswordToken("user" + i, "anything"));
+		}
+		boolean rejected = false;
+		// when
+		try {
+			attemptLog.recordFailedAttempt(new UsernamePasswordToken("another", "anything"));
+		} catch (ExcessiveAttemptsException e) {
+			rejected = true;
+		}
+		attemptLog.recordSuccessfulAttempt(new UsernamePasswordToken("more", "anything"));
+		// then
+		assertThat(rejected).isTrue();
+		assertThat(attemptLog.trackedUsers()).isEqualTo(10);
+		assertThat(attemptLog.failedAttempts("user0")).isEqualTo(1);
+		assertThat(attemptLog.successfulAttempts("more")).isEqualTo(0);
+
+	}
+
+	@Test
+	public void singleEntry() {
+
+		// given
+		attemptLog.setMaximumEntries(1);
+		attemptLog.recordSuccessfulAttempt(new UsernamePasswordToken("first", "anything"));
+		// when
+		attemptLog.recordSuccessfulAttempt(new UsernamePasswordToken("second", "anything"));
+		// then
+		assertThat(attemptLog.trackedUsers()).isEqualTo(1);
+		assertThat(attemptLog.successfulAttempts("second")).isEqualTo(1);
+
+	}
+
+	@Test
+	public void concurrentFailures() throws InterruptedException {
+
+		// given
+		attemptLog.setMaximumAttempts(Integer.MAX_VALUE);
+		attemptLog.setMaximumAttemptsPerAddress(Integer.MAX_VALUE);
+		final UsernamePasswordToken token = new UsernamePasswordToken(username, "anything", "10.0.0.1");
+		final int threads = 8;
+		final int perThread = 1000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicInteger errors = new AtomicInteger();
+		// when
+		for (int t = 0; t < threads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < perThread; i++) {
+							attemptLog.recordFailedAttempt(token);
+						}
+					} catch (RuntimeException e) {
+						errors.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		done.await();
+		// then no errors, and no attempts lost
+		assertThat(errors.get()).isEqualTo(0);
+		assertThat(attemptLog.failedAttempts(username)).isEqualTo(threads * perThread);
+
+	}
+
 }
@@ -107,4 +107,24 @@ public class DefaultLoginExceptionHandlerTest {
 		// then
 		verify(loginView).setStatusMessage(DefaultLoginExceptionHandler.invalidLogin);
 	}
+
+	@Test
+	public void loginRejected() {
+		// given
+		token = new UsernamePasswordToken("fred", "password");
+		// when
+		handler.loginRejected(loginView, token);
+		// then
+		verify(loginView).setStatusMessage(DefaultLoginExceptionHandler.busy);
+	}
+
+	@Test
+	public void loginFailed() {
+		// given
+		token = new UsernamePasswordToken("fred", "password");
+		// when
+		handler.loginFailed(loginView, token);
+		// then
+		verify(loginView).setStatusMessage(DefaultLoginExceptionHandler.failed);
+	}
 }
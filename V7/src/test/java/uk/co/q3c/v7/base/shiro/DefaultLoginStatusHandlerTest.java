@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.shiro.subject.Subject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import uk.co.q3c.v7.base.navigate.V7Navigator;
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class DefaultLoginStatusHandlerTest {
+
+	@Mock
+	VaadinSessionProvider sessionProvider;
+
+	@Mock
+	VaadinSession session;
+
+	@Mock
+	SubjectIdentifier subjectIdentifier;
+
+	@Mock
+	SubjectProvider subjectProvider;
+
+	@Mock
+	V7Navigator navigator;
+
+	@Mock
+	PageAccessController pageAccessController;
+
+	@Mock
+	SecurityAuditLog auditLog;
+
+	@Mock
+	Subject subject;
+
+	@Mock
+	ScopedUI ownUI;
+
+	@Mock
+	ScopedUI otherUI;
+
+	@Mock
+	ScopedUI hiddenUI;
+
+	@Mock
+	LoginStatusHandler otherHandler;
+
+	@Mock
+	LoginStatusHandler hiddenHandler;
+
+	DefaultLoginStatusHandler handler;
+	LoginStatusDispatcher dispatcher;
+
+	@Before
+	public void setup() {
+		handler = new DefaultLoginStatusHandler(sessionProvider, subjectIdentifier, subjectProvider, navigator,
+				pageAccessController, auditLog);
+		dispatcher = new LoginStatusDispatcher();
+		when(sessionProvider.get()).thenReturn(session);
+		when(subjectProvider.get()).thenReturn(subject);
+		when(session.getAttribute(LoginStatusDispatcher.class)).thenReturn(dispatcher);
+		List<UI> uis = new ArrayList<>();
+		uis.add(ownUI);
+		uis.add(otherUI);
+		uis.add(hiddenUI);
+		when(session.getUIs()).thenReturn(uis);
+		when(ownUI.getLoginStatusHandler()).thenReturn(handler);
+		when(otherUI.getLoginStatusHandler()).thenReturn(otherHandler);
+		when(otherUI.getUIId()).thenReturn(2);
+		when(hiddenUI.getLoginStatusHandler()).thenReturn(hiddenHandler);
+		when(hiddenUI.getUIId()).thenReturn(3);
+		when(hiddenUI.isClosing()).thenReturn(true);
+	}
+
+	@Test
+	public void ownUIImmediateOthersQueued() {
+
+		// given
+		ArgumentCaptor<Runnable> access = ArgumentCaptor.forClass(Runnable.class);
+		// when
+		handler.initiateStatusChange();
+		// then
+		verify(navigator).loginStatusChange(false, subject);
+		verify(otherUI).access(access.capture());
+		verify(otherHandler, never()).respondToStatusChange();
+		// when
+		access.getValue().run();
+		// then
+		verify(otherHandler).respondToStatusChange();
+
+	}
+
+	@Test
+	public void loginAndLogoutAudited() {
+
+		// given
+		when(subject.isAuthenticated()).thenReturn(true);
+		when(subject.getPrincipal()).thenReturn("fred");
+		// when
+		handler.initiateStatusChange();
+		// then
+		verify(auditLog).record(SecurityEvent.LOGIN, "fred", null, null);
+		verify(session).setAttribute(anyString(), eq("fred"));
+		// given the principal has gone after logout
+		when(subject.isAuthenticated()).thenReturn(false);
+		when(subject.getPrincipal()).thenReturn(null);
+		when(session.getAttribute(anyString())).thenReturn("fred");
+		// when
+		handler.initiateStatusChange();
+		// then the principal kept at login is recorded
+		verify(auditLog).record(SecurityEvent.LOGOUT, "fred", null, null);
+
+	}
+
+	@Test
+	public void repeatedChangesCoalesced() {
+
+		// given
+		ArgumentCaptor<Runnable> access = ArgumentCaptor.forClass(Runnable.class);
+		// when
+		handler.initiateStatusChange();
+		handler.initiateStatusChange();
+		handler.initiateStatusChange();
+		// then
+		verify(otherUI, times(1)).access(access.capture());
+		// when delivered, the next change is queued again
+		access.getValue().run();
+		handler.initiateStatusChange();
+		// then
+		verify(otherUI, times(2)).access(any(Runnable.class));
+		verify(otherHandler, times(1)).respondToStatusChange();
+
+	}
+
+	@Test
+	public void closingUIIgnored() {
+
+		// given
+		// when
+		handler.initiateStatusChange();
+		// then
+		verify(hiddenUI, never()).access(any(Runnable.class));
+		verify(hiddenHandler, never()).respondToStatusChange();
+
+	}
+
+}
@@ -49,10 +49,13 @@ public class DefaultRealmTest {
 	@Mock
 	Sitemap sitemap;
 
+	@Mock
+	SecurityAuditLog auditLog;
+
 	@Before
 	public void setup() {
 		sitemap = mock(Sitemap.class);
-		realm = new DefaultRealm(attemptLog, matcher, sitemap);
+		realm = new DefaultRealm(attemptLog, matcher, sitemap, auditLog);
 	}
 
 	@Test
@@ -106,6 +109,41 @@ public class DefaultRealmTest {
 
 	}
 
+	@Test
+	public void audited() {
+
+		// given
+		UsernamePasswordToken tk = token("fred", "rubbish");
+		tk.setHost("10.0.0.1");
+		// when
+		realm.getAuthenticationInfo(tk);
+		realm.getAuthenticationInfo(token("fred", onlyValidPassword));
+		// then
+		verify(auditLog).record(SecurityEvent.LOGIN_FAILURE, "fred", "10.0.0.1", realm.getName());
+		verify(auditLog).record(SecurityEvent.LOGIN_SUCCESS, "fred", null, realm.getName());
+
+	}
+
+	@Test
+	public void lockoutAudited() {
+
+		// given
+		ExcessiveAttemptsException thrown = null;
+		// when
+		try {
+			for (int i = 0; i < 3; i++) {
+				realm.getAuthenticationInfo(token("fred", "rubbish"));
+			}
+		} catch (ExcessiveAttemptsException eae) {
+			thrown = eae;
+		}
+		// then
+		assertThat(thrown).isNotNull();
+		verify(auditLog, times(3)).record(SecurityEvent.LOGIN_FAILURE, "fred", null, realm.getName());
+		verify(auditLog).record(SecurityEvent.LOCKOUT, "fred", null, thrown.getMessage());
+
+	}
+
 	@Test(expected = AccountException.class)
 	public void nullUserName() {
 
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.q3c.v7.base.services.Service.Status;
+import uk.co.q3c.v7.i18n.Translate;
+
+public class JournalledLoginAttemptLogTest {
+
+	File journalFile;
+	JournalledLoginAttemptLog attemptLog;
+
+	@Before
+	public void setup() throws IOException {
+		journalFile = File.createTempFile("login-attempts", ".journal");
+		journalFile.delete();
+	}
+
+	@After
+	public void teardown() throws IOException {
+		if (attemptLog != null) {
+			attemptLog.close();
+		}
+		journalFile.delete();
+	}
+
+	private JournalledLoginAttemptLog newLog(int capacity, long windowMillis) throws Exception {
+		DefaultLoginAttemptLog window = new DefaultLoginAttemptLog();
+		window.setWindowMillis(windowMillis);
+		JournalledLoginAttemptLog journalled = new JournalledLoginAttemptLog(mock(Translate.class), window,
+				journalFile, capacity);
+		journalled.start();
+		return journalled;
+	}
+
+	@Test
+	public void survivesRestart() throws Exception {
+
+		// given
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong", "10.0.0.1"));
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong", "10.0.0.1"));
+		attemptLog.recordSuccessfulAttempt(new UsernamePasswordToken("mary", "right"));
+		// when
+		attemptLog.close();
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		// then
+		assertThat(attemptLog.failedAttempts("fred")).isEqualTo(2);
+		assertThat(attemptLog.successfulAttempts("mary")).isEqualTo(1);
+		assertThat(attemptLog.dateOfLastSuccess("mary")).isNotNull();
+
+	}
+
+	@Test
+	public void clearIsJournalled() throws Exception {
+
+		// given
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong"));
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong"));
+		// when
+		attemptLog.clearUnsuccessful("fred");
+		attemptLog.close();
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		// then
+		assertThat(attemptLog.failedAttempts("fred")).isEqualTo(0);
+
+	}
+
+	@Test
+	public void sharedBetweenInstances() throws Exception {
+
+		// given
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		JournalledLoginAttemptLog other = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY,
+				DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		try {
+			// when
+			attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong"));
+			attemptLog.flush();
+			other.flush();
+			attemptLog.flush();
+			// then
+			assertThat(other.failedAttempts("fred")).isEqualTo(1);
+			assertThat(attemptLog.failedAttempts("fred")).isEqualTo(1);
+		} finally {
+			other.close();
+		}
+
+	}
+
+	@Test
+	public void compactedWhenFull() throws Exception {
+
+		// given
+		attemptLog = newLog(2048, 1000);
+		for (int i = 0; i < 50; i++) {
+			attemptLog.recordFailedAttempt(new UsernamePasswordToken("a" + i, "wrong"));
+		}
+		attemptLog.flush();
+		Thread.sleep(1100);
+		// when
+		for (int i = 0; i < 50; i++) {
+			attemptLog.recordFailedAttempt(new UsernamePasswordToken("b" + i, "wrong"));
+		}
+		attemptLog.close();
+		attemptLog = newLog(2048, 1000);
+		// then
+		assertThat(attemptLog.failedAttempts("b49")).isEqualTo(1);
+		assertThat(attemptLog.failedAttempts("a0")).isEqualTo(0);
+		assertThat(journalFile.length()).isEqualTo(2048);
+
+	}
+
+	@Test
+	public void stopClosesJournal() throws Exception {
+
+		// given
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong"));
+		// when
+		Status status = attemptLog.stop();
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		// then
+		assertThat(status).isEqualTo(Status.STOPPED);
+		assertThat(attemptLog.failedAttempts("fred")).isEqualTo(1);
+
+	}
+
+	@Test
+	public void damagedRecordTruncated() throws Exception {
+
+		// given
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("fred", "wrong"));
+		attemptLog.close();
+		try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+			raf.seek(LoginAttemptJournal.HEADER_SIZE);
+			raf.writeInt(Integer.MAX_VALUE);
+		}
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		// when
+		attemptLog.recordFailedAttempt(new UsernamePasswordToken("mary", "wrong"));
+		attemptLog.close();
+		attemptLog = newLog(JournalledLoginAttemptLog.DEFAULT_CAPACITY, DefaultLoginAttemptLog.DEFAULT_WINDOW_MILLIS);
+		// then the damaged record is lost, but later ones are not
+		assertThat(attemptLog.failedAttempts("fred")).isEqualTo(0);
+		assertThat(attemptLog.failedAttempts("mary")).isEqualTo(1);
+
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.subject.Subject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import uk.co.q3c.v7.base.navigate.StrictURIFragmentHandler;
+import uk.co.q3c.v7.base.navigate.URIFragmentHandler;
+import uk.co.q3c.v7.base.navigate.sitemap.Sitemap;
+import uk.co.q3c.v7.base.navigate.sitemap.SitemapNode;
+import uk.co.q3c.v7.i18n.AnnotationI18NTranslator;
+import uk.co.q3c.v7.i18n.I18NTranslator;
+import uk.co.q3c.v7.i18n.Translate;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.mycila.testing.plugin.guice.ModuleProvider;
+import com.vaadin.server.VaadinSession;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class PageAccessControllerTest {
+
+	@Inject
+	Translate translate;
+
+	@Inject
+	URIFragmentHandler uriHandler;
+
+	@Mock
+	Subject subject;
+
+	@Mock
+	VaadinSession session;
+
+	@Mock
+	SecurityAuditLog auditLog;
+
+	Sitemap sitemap;
+	SitemapNode publicNode;
+	SitemapNode privateNode;
+	PageAccessController controller;
+	PageAuthorisations stored;
+	AuthorisationChanges authorisationChanges;
+
+	@Before
+	public void setup() {
+		sitemap = new Sitemap(uriHandler, translate);
+		publicNode = sitemap.append("public/home");
+		publicNode.setPageAccessControl(PageAccessControl.PUBLIC);
+		privateNode = sitemap.append("private/home");
+		privateNode.setPageAccessControl(PageAccessControl.AUTHENTICATION);
+		for (SitemapNode node : sitemap.getAllNodes()) {
+			if (node.getPageAccessControl() == null) {
+				node.setPageAccessControl(PageAccessControl.PUBLIC);
+			}
+		}
+		authorisationChanges = new AuthorisationChanges();
+		controller = new PageAccessController(sitemap, auditLog, authorisationChanges);
+
+		when(session.hasLock()).thenReturn(true);
+		when(session.getAttribute(PageAuthorisations.class)).thenAnswer(new Answer<PageAuthorisations>() {
+
+			@Override
+			public PageAuthorisations answer(InvocationOnMock invocation) throws Throwable {
+				return stored;
+			}
+		});
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				stored = (PageAuthorisations) invocation.getArguments()[1];
+				return null;
+			}
+		}).when(session).setAttribute(eq(PageAuthorisations.class), any(PageAuthorisations.class));
+		VaadinSession.setCurrent(session);
+	}
+
+	@After
+	public void teardown() {
+		VaadinSession.setCurrent(null);
+	}
+
+	@Test
+	public void navigationAudited() {
+
+		// given
+		when(subject.getPrincipal()).thenReturn("fred");
+		// when
+		controller.recordNavigation(subject, publicNode);
+		controller.recordNavigation(subject, privateNode);
+		// then only the protected page is recorded
+		ArgumentCaptor<Object> detail = ArgumentCaptor.forClass(Object.class);
+		verify(auditLog).record(eq(SecurityEvent.PAGE_ACCESS), eq("fred"), isNull(String.class), detail.capture());
+		verifyNoMoreInteractions(auditLog);
+		assertThat(detail.getValue().toString()).isEqualTo("private/home");
+	}
+
+	@Test
+	public void authorisationsCalculatedOnce() {
+
+		// given
+		when(subject.isAuthenticated()).thenReturn(false);
+		// when
+		boolean publicAuthorised = controller.isAuthorised(subject, publicNode);
+		boolean privateAuthorised = controller.isAuthorised(subject, privateNode);
+		// then
+		assertThat(publicAuthorised).isTrue();
+		assertThat(privateAuthorised).isFalse();
+		verify(session, times(1)).setAttribute(eq(PageAuthorisations.class), any(PageAuthorisations.class));
+		assertThat(stored.isAuthorised(privateNode)).isFalse();
+	}
+
+	@Test
+	public void recalculatedOnLogin() {
+
+		// given
+		when(subject.isAuthenticated()).thenReturn(false);
+		assertThat(controller.isAuthorised(subject, privateNode)).isFalse();
+		// when
+		when(subject.isAuthenticated()).thenReturn(true);
+		// then
+		assertThat(controller.isAuthorised(subject, privateNode)).isTrue();
+		verify(session, times(2)).setAttribute(eq(PageAuthorisations.class), any(PageAuthorisations.class));
+	}
+
+	@Test
+	public void recalculatedWhenRealmCacheCleared() {
+
+		// given
+		when(subject.getPrincipal()).thenReturn("fred");
+		when(subject.isAuthenticated()).thenReturn(true);
+		when(subject.hasAllRoles(anyCollectionOf(String.class))).thenReturn(false);
+		SitemapNode rolesNode = sitemap.append("private/admin");
+		rolesNode.setPageAccessControl(PageAccessControl.ROLES);
+		assertThat(controller.isAuthorised(subject, rolesNode)).isFalse();
+		BoundedCacheManager cacheManager = new BoundedCacheManager(10, 60000, authorisationChanges);
+		Cache<Object, Object> authorizationCache = cacheManager.getCache("authorizationCache");
+		// when the realm clears the cached roles
+		when(subject.hasAllRoles(anyCollectionOf(String.class))).thenReturn(true);
+		authorizationCache.remove("fred");
+		// then
+		assertThat(controller.isAuthorised(subject, rolesNode)).isTrue();
+	}
+
+	@Test
+	public void otherPrincipalChangeIgnored() {
+
+		// given
+		when(subject.getPrincipal()).thenReturn("fred");
+		controller.isAuthorised(subject, publicNode);
+		// when
+		authorisationChanges.principalChanged("jim");
+		controller.isAuthorised(subject, publicNode);
+		// then
+		verify(session, times(1)).setAttribute(eq(PageAuthorisations.class), any(PageAuthorisations.class));
+	}
+
+	@Test
+	public void recalculatedOnSitemapChange() {
+
+		// given
+		controller.isAuthorised(subject, publicNode);
+		// when
+		SitemapNode newNode = sitemap.append("public/other");
+		newNode.setPageAccessControl(PageAccessControl.AUTHENTICATION);
+		// then
+		assertThat(stored.isValidFor(subject, sitemap.getStructureVersion(), authorisationChanges.versionFor(null)))
+				.isFalse();
+		assertThat(controller.isAuthorised(subject, newNode)).isFalse();
+		assertThat(stored.isAuthorised(newNode)).isFalse();
+	}
+
+	@Test
+	public void noSession() {
+
+		// given
+		VaadinSession.setCurrent(null);
+		when(subject.isAuthenticated()).thenReturn(true);
+		// when
+		boolean authorised = controller.isAuthorised(subject, privateNode);
+		// then
+		assertThat(authorised).isTrue();
+		assertThat(stored).isNull();
+	}
+
+	@ModuleProvider
+	protected AbstractModule moduleProvider() {
+		return new AbstractModule() {
+
+			@Override
+			protected void configure() {
+				bind(I18NTranslator.class).to(AnnotationI18NTranslator.class);
+				bind(URIFragmentHandler.class).to(StrictURIFragmentHandler.class);
+			}
+
+		};
+	}
+}
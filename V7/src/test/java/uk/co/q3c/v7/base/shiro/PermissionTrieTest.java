@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.shiro.authz.Permission;
+import org.apache.shiro.authz.permission.WildcardPermission;
+import org.junit.Test;
+
+public class PermissionTrieTest {
+
+	private static final String[] PARTS = { "page", "view", "edit", "private", "public", "a", "b", "*", "a,b" };
+
+	@Test
+	public void pagePermissions() {
+
+		// given
+		List<Permission> held = new ArrayList<>();
+		held.add(new CompiledPermission("page:view:private:*"));
+		held.add(new CompiledPermission("page:edit:private:deptx"));
+		PermissionTrie trie = new PermissionTrie(held);
+		// then
+		assertThat(trie.implies(new PagePermission("private/deptx/teamy"))).isTrue();
+		assertThat(trie.implies(new PagePermission("private"))).isTrue();
+		assertThat(trie.implies(new PagePermission("public"))).isFalse();
+		assertThat(trie.implies(new PagePermission("private/deptx", false, true))).isTrue();
+		assertThat(trie.implies(new PagePermission("private/deptx/teamy", false, true))).isTrue();
+		assertThat(trie.implies(new PagePermission("private/depty", false, true))).isFalse();
+		assertThat(trie.implies(new PagePermission("private", false, true))).isFalse();
+
+	}
+
+	@Test
+	public void empty() {
+
+		// given
+		PermissionTrie trie = new PermissionTrie(new ArrayList<Permission>());
+		// then
+		assertThat(trie.implies(new PagePermission("private"))).isFalse();
+
+	}
+
+	/**
+	 * The trie must always give the same answer as checking each held permission in turn
+	 */
+	@Test
+	public void sameAsWildcardPermission() {
+
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			// given
+			List<Permission> held = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				held.add(new CompiledPermission(randomPermission(random)));
+			}
+			// an uncompiled one is checked linearly
+			held.add(new WildcardPermission(randomPermission(random)));
+			PermissionTrie trie = new PermissionTrie(held);
+			for (int j = 0; j < 50; j++) {
+				String requested = randomPermission(random);
+				// when
+				boolean expected = false;
+				for (Permission permission : held) {
+					expected = expected || permission.implies(new WildcardPermission(requested));
+				}
+				// then
+				assertThat(trie.implies(new CompiledPermission(requested))).as(requested + " in " + held).isEqualTo(
+						expected);
+				assertThat(trie.implies(new WildcardPermission(requested))).as(requested + " in " + held).isEqualTo(
+						expected);
+			}
+		}
+
+	}
+
+	private String randomPermission(Random random) {
+		int length = 1 + random.nextInt(4);
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				buf.append(':');
+			}
+			buf.append(PARTS[random.nextInt(PARTS.length)]);
+		}
+		return buf.toString();
+	}
+
+}
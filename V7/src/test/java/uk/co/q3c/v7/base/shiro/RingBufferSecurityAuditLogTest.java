@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.q3c.util.ResourceUtils;
+import uk.co.q3c.v7.base.services.Service.Status;
+import uk.co.q3c.v7.i18n.Translate;
+
+public class RingBufferSecurityAuditLogTest {
+
+	File directory;
+	RingBufferSecurityAuditLog auditLog;
+
+	@Before
+	public void setup() {
+		directory = new File(ResourceUtils.userTempDirectory(), "audit-test-" + System.nanoTime());
+	}
+
+	@After
+	public void teardown() {
+		if (auditLog != null) {
+			auditLog.close();
+		}
+		for (File file : RollingAuditFile.files(directory)) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	private RingBufferSecurityAuditLog newLog(int capacity, long maximumFileBytes, long rollInterval,
+			int maximumFiles) throws Exception {
+		RingBufferSecurityAuditLog started = new RingBufferSecurityAuditLog(mock(Translate.class), directory,
+				capacity, maximumFileBytes, rollInterval, maximumFiles);
+		started.start();
+		return started;
+	}
+
+	@Test
+	public void written() throws Exception {
+
+		// given
+		auditLog = newLog(16, 1024 * 1024, 60000, 5);
+		// when
+		auditLog.record(SecurityEvent.LOGIN_FAILURE, "fred", "10.0.0.1", "V7 Default Realm");
+		auditLog.record(SecurityEvent.PAGE_ACCESS, "fred", null, "private/home");
+		auditLog.record(SecurityEvent.UNAUTHORISED, null, null, "line\nbreak\tand tab");
+		// then
+		assertThat(auditLog.flush(5000)).isTrue();
+		List<String[]> lines = lines();
+		assertThat(lines).hasSize(3);
+		assertThat(lines.get(0)).containsOnly(lines.get(0)[0], "LOGIN_FAILURE", "fred", "10.0.0.1",
+				"V7 Default Realm");
+		assertThat(lines.get(1)[1]).isEqualTo("PAGE_ACCESS");
+		assertThat(lines.get(1)[3]).isEqualTo("-");
+		assertThat(lines.get(2)[2]).isEqualTo("-");
+		assertThat(lines.get(2)[4]).isEqualTo("line break and tab");
+
+	}
+
+	/**
+	 * Every event is either written or counted as dropped, and the events from each thread are written in the order
+	 * they were recorded
+	 */
+	@Test
+	public void concurrentProducers() throws Exception {
+
+		// given
+		auditLog = newLog(64, 1024 * 1024, 60000, 5);
+		final int perThread = 5000;
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final String principal = "user" + t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						auditLog.record(SecurityEvent.PAGE_ACCESS, principal, null, Integer.toString(i));
+					}
+				}
+			}));
+		}
+		// when
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(auditLog.flush(5000)).isTrue();
+		// then
+		List<String[]> lines = lines();
+		assertThat(lines.size() + auditLog.getDroppedCount()).isEqualTo(4 * perThread);
+		int[] last = { -1, -1, -1, -1 };
+		for (String[] line : lines) {
+			int t = Integer.parseInt(line[2].substring(4));
+			int i = Integer.parseInt(line[4]);
+			assertThat(i).isGreaterThan(last[t]);
+			last[t] = i;
+		}
+
+	}
+
+	@Test
+	public void rolledAndOldestDeleted() throws Exception {
+
+		// given
+		auditLog = newLog(16, 200, 60000, 3);
+		// when
+		for (int i = 0; i < 40; i++) {
+			auditLog.record(SecurityEvent.LOGIN_SUCCESS, "fred", null, Integer.toString(i));
+			auditLog.flush(5000);
+		}
+		auditLog.close();
+		// then only the most recent files are kept, and the last event is in the last file
+		File[] files = RollingAuditFile.files(directory);
+		assertThat(files).hasSize(3);
+		List<String[]> lines = lines();
+		assertThat(lines.get(lines.size() - 1)[4]).isEqualTo("39");
+
+	}
+
+	@Test
+	public void droppedAfterClose() throws Exception {
+
+		// given
+		auditLog = newLog(16, 1024 * 1024, 60000, 5);
+		// when
+		auditLog.close();
+		auditLog.record(SecurityEvent.LOGOUT, "fred", null, null);
+		// then
+		assertThat(auditLog.getDroppedCount()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void heldUntilStarted() throws Exception {
+
+		// given
+		auditLog = new RingBufferSecurityAuditLog(mock(Translate.class), directory, 16, 1024 * 1024, 60000, 5);
+		auditLog.record(SecurityEvent.LOGIN, "fred", null, null);
+		// when
+		auditLog.start();
+		Status status = auditLog.stop();
+		// then
+		assertThat(status).isEqualTo(Status.STOPPED);
+		assertThat(auditLog.getDroppedCount()).isEqualTo(0);
+		assertThat(lines()).hasSize(1);
+
+	}
+
+	private List<String[]> lines() throws IOException {
+		List<String[]> lines = new ArrayList<>();
+		for (File file : RollingAuditFile.files(directory)) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+				byte[] buf = new byte[4096];
+				int n;
+				while ((n = in.read(buf)) > 0) {
+					bytes.write(buf, 0, n);
+				}
+			} catch (EOFException e) {
+				// a file still open for writing has no gzip trailer, but everything flushed can be read
+			}
+			for (String line : new String(bytes.toByteArray(), "UTF-8").split("\n")) {
+				if (!line.isEmpty()) {
+					lines.add(line.split("\t"));
+				}
+			}
+		}
+		return lines;
+	}
+
+}
@@ -12,7 +12,7 @@
  */
 package uk.co.q3c.v7.base.shiro;
 
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -107,6 +107,7 @@ public abstract class ShiroIntegrationTestBase extends AbstractShiroTest {
 			protected void configure() {
 				bind(LoginAttemptLog.class).to(DefaultLoginAttemptLog.class);
 				bind(CredentialsMatcher.class).to(AlwaysPasswordCredentialsMatcher.class);
+				bind(SecurityAuditLog.class).toInstance(mock(SecurityAuditLog.class));
 			}
 
 		};
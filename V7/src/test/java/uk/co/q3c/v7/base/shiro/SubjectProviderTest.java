@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.vaadin.server.VaadinSession;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class SubjectProviderTest {
+
+	@Mock
+	VaadinSessionProvider sessionProvider;
+
+	@Mock
+	VaadinSession session;
+
+	@Mock
+	Subject threadSubject;
+
+	SubjectProvider subjectProvider;
+
+	@Before
+	public void setup() {
+		SecurityUtils.setSecurityManager(new DefaultSecurityManager());
+		subjectProvider = new SubjectProvider(sessionProvider);
+	}
+
+	@After
+	public void teardown() {
+		ThreadContext.remove();
+		SecurityUtils.setSecurityManager(null);
+	}
+
+	@Test
+	public void guestStoredInSession() {
+
+		// given
+		when(sessionProvider.getIfPresent()).thenReturn(session);
+		when(session.hasLock()).thenReturn(true);
+		// when
+		Subject subject = subjectProvider.get();
+		// then
+		assertThat(subject).isNotNull();
+		verify(session).setAttribute(Subject.class, subject);
+
+	}
+
+	@Test
+	public void guestNotStoredWithoutLock() {
+
+		// given
+		when(sessionProvider.getIfPresent()).thenReturn(session);
+		when(session.hasLock()).thenReturn(false);
+		// when
+		Subject subject = subjectProvider.get();
+		// then
+		assertThat(subject).isNotNull();
+		verify(session, never()).setAttribute(Subject.class, subject);
+
+	}
+
+	@Test
+	public void noSessionUsesThreadSubject() {
+
+		// given
+		when(sessionProvider.getIfPresent()).thenReturn(null);
+		ThreadContext.bind(threadSubject);
+		// when
+		Subject subject = subjectProvider.get();
+		// then
+		assertThat(subject).isSameAs(threadSubject);
+		verify(sessionProvider, never()).get();
+
+	}
+
+}
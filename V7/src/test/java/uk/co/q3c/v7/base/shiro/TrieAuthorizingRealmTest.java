@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrieAuthorizingRealmTest {
+
+	static class TestRealm extends TrieAuthorizingRealm {
+		int triesUsed;
+
+		TestRealm() {
+			super();
+			setAuthorizationCachingEnabled(true);
+			setPermissionResolver(new CachingPermissionResolver());
+		}
+
+		@Override
+		protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+			SimpleAuthorizationInfo info = new SimpleAuthorizationInfo();
+			info.addStringPermission("page:view:private:*");
+			return info;
+		}
+
+		@Override
+		protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+			return null;
+		}
+
+		@Override
+		protected PermissionTrie trieFor(AuthorizationInfo info) {
+			triesUsed++;
+			return super.trieFor(info);
+		}
+	}
+
+	TestRealm realm;
+	PrincipalCollection principals;
+
+	@Before
+	public void setup() {
+		realm = new TestRealm();
+		principals = new SimplePrincipalCollection("fred", "test");
+	}
+
+	@Test
+	public void noCacheChecksLinearly() {
+
+		// given
+		realm.init();
+		// then
+		assertThat(realm.isPermitted(principals, new PagePermission("private/deptx"))).isTrue();
+		assertThat(realm.isPermitted(principals, new PagePermission("public"))).isFalse();
+		assertThat(realm.triesUsed).isEqualTo(0);
+
+	}
+
+	@Test
+	public void cachedUsesTrie() {
+
+		// given
+		realm.setCacheManager(new MemoryConstrainedCacheManager());
+		realm.init();
+		// then
+		assertThat(realm.isPermitted(principals, new PagePermission("private/deptx"))).isTrue();
+		assertThat(realm.isPermitted(principals, new PagePermission("public"))).isFalse();
+		assertThat(realm.triesUsed).isEqualTo(2);
+
+	}
+
+}
@@ -16,6 +16,7 @@ import static org.mockito.Mockito.*;
 
 import org.apache.shiro.authz.UnauthenticatedException;
 import org.apache.shiro.authz.UnauthorizedException;
+import org.apache.shiro.subject.Subject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -45,14 +46,22 @@ public class V7ErrorHandlerTest {
 	ErrorView errorView;
 	@Mock
 	V7Navigator navigator;
+	@Mock
+	SecurityAuditLog auditLog;
+	@Mock
+	SubjectProvider subjectProvider;
+	@Mock
+	Subject subject;
 
 	@Mock
 	ErrorEvent event;
 
 	@Before
 	public void setup() {
+		when(subjectProvider.get()).thenReturn(subject);
+		when(subject.getPrincipal()).thenReturn("fred");
 		handler = new V7ErrorHandler(authenticationHandler, authorisationHandler, invalidUriHandler, errorView,
-				navigator);
+				navigator, auditLog, subjectProvider);
 	}
 
 	@Test
@@ -65,6 +74,7 @@ public class V7ErrorHandlerTest {
 		handler.error(event);
 		// then
 		verify(invalidUriHandler).invoke();
+		verifyZeroInteractions(auditLog);
 
 	}
 
@@ -78,6 +88,7 @@ public class V7ErrorHandlerTest {
 		handler.error(event);
 		// then
 		verify(authenticationHandler).invoke();
+		verify(auditLog).record(SecurityEvent.UNAUTHENTICATED, "fred", null, null);
 
 	}
 
@@ -95,6 +106,20 @@ public class V7ErrorHandlerTest {
 
 	}
 
+	@Test
+	public void authorisationAudited() {
+
+		// given
+		Throwable exception = new RuntimeException(new UnauthorizedException("private/deptx"));
+		when(event.getThrowable()).thenReturn(exception);
+		// when
+		handler.error(event);
+		// then the message of the cause, not the wrapper, is recorded
+		verify(authorisationHandler).invoke();
+		verify(auditLog).record(SecurityEvent.UNAUTHORISED, "fred", null, "private/deptx");
+
+	}
+
 	@Test
 	public void other() {
 
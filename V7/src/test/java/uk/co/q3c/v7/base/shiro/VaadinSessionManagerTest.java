@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.shiro;
+
+import static org.fest.assertions.Assertions.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.shiro.session.mgt.DefaultSessionContext;
+import org.apache.shiro.session.mgt.DefaultSessionKey;
+import org.apache.shiro.session.mgt.SimpleSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.vaadin.server.VaadinSession;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class VaadinSessionManagerTest {
+
+	@Mock
+	VaadinSessionProvider sessionProvider;
+
+	@Mock
+	VaadinSession vaadinSession;
+
+	final Map<String, Object> attributes = new HashMap<>();
+	final ReentrantLock lock = new ReentrantLock();
+	VaadinSessionManager manager;
+
+	@Before
+	public void setup() {
+		when(sessionProvider.get()).thenReturn(vaadinSession);
+		when(vaadinSession.getLockInstance()).thenReturn(lock);
+		when(vaadinSession.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return attributes.get(invocation.getArguments()[0]);
+			}
+		});
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Object[] args = invocation.getArguments();
+				if (args[1] == null) {
+					attributes.remove(args[0]);
+				} else {
+					attributes.put((String) args[0], args[1]);
+				}
+				return null;
+			}
+		}).when(vaadinSession).setAttribute(anyString(), any());
+		manager = new VaadinSessionManager(sessionProvider);
+	}
+
+	@Test
+	public void sweepRemovesStoppedAndExpired() {
+
+		// given
+		SimpleSession stopped = (SimpleSession) manager.start(new DefaultSessionContext());
+		SimpleSession expired = (SimpleSession) manager.start(new DefaultSessionContext());
+		manager.start(new DefaultSessionContext());
+		stopped.stop();
+		expired.setExpired(true);
+		assertThat(manager.getMetrics().getActive()).isEqualTo(3);
+		// when
+		manager.sweep();
+		// then
+		SessionMetrics metrics = manager.getMetrics();
+		assertThat(metrics.getActive()).isEqualTo(1);
+		assertThat(metrics.getExpired()).isEqualTo(1);
+		assertThat(metrics.getInvalidated()).isEqualTo(1);
+		assertThat(attributes).hasSize(1);
+
+	}
+
+	@Test
+	public void sweepSkipsBusySession() throws InterruptedException {
+
+		// given
+		SimpleSession session = (SimpleSession) manager.start(new DefaultSessionContext());
+		session.stop();
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				lock.lock();
+				try {
+					locked.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					// finish
+				} finally {
+					lock.unlock();
+				}
+			}
+		});
+		holder.start();
+		locked.await();
+		// when
+		manager.sweep();
+		// then
+		assertThat(manager.getMetrics().getSkipped()).isEqualTo(1);
+		assertThat(manager.getMetrics().getActive()).isEqualTo(1);
+		// when
+		release.countDown();
+		holder.join();
+		manager.sweep();
+		// then
+		assertThat(manager.getMetrics().getActive()).isEqualTo(0);
+
+	}
+
+	@Test
+	public void boundedPerVaadinSession() {
+
+		// given
+		manager.setMaxSessionsPerVaadinSession(2);
+		// when
+		SimpleSession first = (SimpleSession) manager.start(new DefaultSessionContext());
+		manager.start(new DefaultSessionContext());
+		manager.start(new DefaultSessionContext());
+		// then
+		assertThat(first.isValid()).isFalse();
+		assertThat(attributes).hasSize(2);
+		assertThat(manager.getMetrics().getActive()).isEqualTo(2);
+		assertThat(manager.getMetrics().getInvalidated()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void boundRemovesInvalidFirst() {
+
+		// given
+		manager.setMaxSessionsPerVaadinSession(2);
+		SimpleSession first = (SimpleSession) manager.start(new DefaultSessionContext());
+		SimpleSession second = (SimpleSession) manager.start(new DefaultSessionContext());
+		second.stop();
+		// when
+		manager.start(new DefaultSessionContext());
+		// then
+		assertThat(first.isValid()).isTrue();
+		assertThat(attributes).hasSize(2);
+		assertThat(manager.getMetrics().getActive()).isEqualTo(2);
+		assertThat(manager.getMetrics().getInvalidated()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void getSessionDiscardsInvalid() {
+
+		// given
+		SimpleSession session = (SimpleSession) manager.start(new DefaultSessionContext());
+		DefaultSessionKey key = new DefaultSessionKey(session.getId());
+		// then
+		assertThat(manager.getSession(key)).isSameAs(session);
+		// when
+		session.stop();
+		// then
+		assertThat(manager.getSession(key)).isNull();
+		assertThat(attributes).isEmpty();
+		assertThat(manager.getMetrics().getInvalidated()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void sweepRemovesTimedOut() {
+
+		// given
+		manager.setSessionTimeout(60000);
+		SimpleSession idle = (SimpleSession) manager.start(new DefaultSessionContext());
+		SimpleSession used = (SimpleSession) manager.start(new DefaultSessionContext());
+		idle.setLastAccessTime(new Date(System.currentTimeMillis() - 120000));
+		// when
+		manager.sweep();
+		// then
+		assertThat(idle.isExpired()).isTrue();
+		assertThat(used.isValid()).isTrue();
+		assertThat(attributes).hasSize(1);
+		assertThat(manager.getMetrics().getActive()).isEqualTo(1);
+		assertThat(manager.getMetrics().getExpired()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void getSessionAppliesTimeout() {
+
+		// given
+		manager.setSessionTimeout(60000);
+		SimpleSession session = (SimpleSession) manager.start(new DefaultSessionContext());
+		DefaultSessionKey key = new DefaultSessionKey(session.getId());
+		session.setLastAccessTime(new Date(System.currentTimeMillis() - 120000));
+		// when
+		Object found = manager.getSession(key);
+		// then the timeout has passed
+		assertThat(found).isNull();
+		assertThat(attributes).isEmpty();
+		assertThat(manager.getMetrics().getExpired()).isEqualTo(1);
+
+	}
+
+	@Test
+	public void getSessionTouches() {
+
+		// given
+		manager.setSessionTimeout(60000);
+		SimpleSession session = (SimpleSession) manager.start(new DefaultSessionContext());
+		DefaultSessionKey key = new DefaultSessionKey(session.getId());
+		session.setLastAccessTime(new Date(System.currentTimeMillis() - 30000));
+		// when
+		manager.getSession(key);
+		manager.sweep();
+		// then used recently, so not expired
+		assertThat(session.getLastAccessTime().getTime()).isGreaterThan(System.currentTimeMillis() - 10000);
+		assertThat(manager.getSession(key)).isSameAs(session);
+		assertThat(manager.getMetrics().getExpired()).isEqualTo(0);
+
+	}
+
+}
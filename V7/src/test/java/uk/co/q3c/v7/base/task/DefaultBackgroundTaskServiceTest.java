@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.base.task;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import uk.co.q3c.v7.base.config.ApplicationConfigurationService;
+import uk.co.q3c.v7.base.config.ConfigKeys;
+import uk.co.q3c.v7.base.guice.threadscope.ScopeContext;
+import uk.co.q3c.v7.base.guice.uiscope.UIKey;
+import uk.co.q3c.v7.base.services.Service.Status;
+import uk.co.q3c.v7.base.services.ServicesMonitorModule;
+import uk.co.q3c.v7.i18n.AnnotationI18NTranslator;
+import uk.co.q3c.v7.i18n.I18NTranslator;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.mycila.testing.plugin.guice.ModuleProvider;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.util.CurrentInstance;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({ ServicesMonitorModule.class })
+public class DefaultBackgroundTaskServiceTest {
+
+	static class ResultCallback<T> implements TaskCallback<T> {
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile T result;
+		volatile Throwable cause;
+
+		@Override
+		public void onSuccess(T result) {
+			this.result = result;
+			done.countDown();
+		}
+
+		@Override
+		public void onFailure(Throwable cause) {
+			this.cause = cause;
+			done.countDown();
+		}
+	}
+
+	@Inject
+	DefaultBackgroundTaskService service;
+
+	@Mock
+	ApplicationConfigurationService configurationService;
+
+	CompositeConfiguration configuration;
+
+	@Before
+	public void setup() throws Exception {
+		ScopeContext.reset();
+		configuration = new CompositeConfiguration();
+		configuration.setProperty(ConfigKeys.TASK_POOLS_KEY, "reports:1");
+		configuration.setProperty(ConfigKeys.TASK_SESSION_LIMIT_KEY, 1);
+		when(configurationService.getConfiguration()).thenReturn(configuration);
+		when(configurationService.start()).thenReturn(Status.STARTED);
+		when(configurationService.getStatus()).thenReturn(Status.STARTED);
+		service.start();
+	}
+
+	@After
+	public void teardown() {
+		service.stop();
+		ScopeContext.reset();
+	}
+
+	@Test
+	public void pools() {
+
+		// given
+
+		// when
+
+		// then
+		assertThat(service.getMetrics().keySet()).contains(BackgroundTaskService.DEFAULT_POOL, "reports");
+		assertThat(service.getSessionLimit()).isEqualTo(1);
+	}
+
+	@Test
+	public void resultAndContext() throws Exception {
+
+		// given
+		final UIKey uiKey = new UIKey(5);
+		CurrentInstance.set(UIKey.class, uiKey);
+		ResultCallback<UIKey> callback = new ResultCallback<>();
+		// when
+		service.submit("reports", new Callable<UIKey>() {
+
+			@Override
+			public UIKey call() throws Exception {
+				return CurrentInstance.get(UIKey.class);
+			}
+		}, callback);
+		// then
+		assertThat(callback.done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(callback.result).isEqualTo(uiKey);
+		assertThat(service.getMetrics().get("reports").getCompleted()).isEqualTo(1);
+	}
+
+	@Test
+	public void failure() throws Exception {
+
+		// given
+		ResultCallback<String> callback = new ResultCallback<>();
+		// when
+		service.submit(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("failed");
+			}
+		}, callback);
+		// then
+		assertThat(callback.done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(callback.cause).isInstanceOf(IllegalStateException.class);
+		assertThat(service.getMetrics().get(BackgroundTaskService.DEFAULT_POOL).getFailed()).isEqualTo(1);
+	}
+
+	@Test
+	public void sessionLimit() throws Exception {
+
+		// given
+		VaadinSession.setCurrent(mock(VaadinSession.class));
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<String> blocked = new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		};
+		Future<String> first = service.submit(blocked, null);
+		// when
+		try {
+			service.submit(blocked, null);
+			fail("exception expected");
+		} catch (RejectedExecutionException e) {
+			// then
+		}
+		release.countDown();
+		assertThat(first.get()).isEqualTo("done");
+		assertThat(service.getMetrics().get(BackgroundTaskService.DEFAULT_POOL).getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	public void stopCancelsQueued() throws Exception {
+
+		// given
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<String> blocked = new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		};
+		// occupy the only thread, outside any session
+		service.submit("reports", blocked, null);
+		VaadinSession.setCurrent(mock(VaadinSession.class));
+		Future<String> queued = service.submit("reports", blocked, null);
+		// when
+		service.stop();
+		release.countDown();
+		service.start();
+		// then the session's allowance has been released
+		assertThat(queued.isCancelled()).isTrue();
+		assertThat(service.submit("reports", blocked, null).get(5, TimeUnit.SECONDS)).isEqualTo("done");
+	}
+
+	@Test
+	public void cancelDeliversFailure() throws Exception {
+
+		// given
+		final CountDownLatch release = new CountDownLatch(1);
+		Callable<String> blocked = new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				release.await();
+				return "done";
+			}
+		};
+		service.submit("reports", blocked, null);
+		ResultCallback<String> callback = new ResultCallback<>();
+		Future<String> queued = service.submit("reports", blocked, callback);
+		// when
+		queued.cancel(false);
+		release.countDown();
+		// then
+		assertThat(callback.done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(callback.cause).isInstanceOf(CancellationException.class);
+		assertThat(service.getMetrics().get("reports").getFailed()).isEqualTo(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownPool() {
+
+		// given
+
+		// when
+		service.submit("unknown", new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return null;
+			}
+		}, null);
+		// then
+	}
+
+	@Test
+	public void batchedUIUpdates() {
+
+		// given
+		UIUpdateBatcher batcher = new UIUpdateBatcher();
+		com.vaadin.ui.UI ui = mock(com.vaadin.ui.UI.class);
+		final List<Integer> delivered = new ArrayList<>();
+		// when
+		for (int i = 0; i < 3; i++) {
+			final int index = i;
+			batcher.deliver(ui, new Runnable() {
+
+				@Override
+				public void run() {
+					delivered.add(index);
+				}
+			});
+		}
+		// then
+		ArgumentCaptor<Runnable> batch = ArgumentCaptor.forClass(Runnable.class);
+		verify(ui, times(1)).access(batch.capture());
+		batch.getValue().run();
+		assertThat(delivered).containsExactly(0, 1, 2);
+	}
+
+	@ModuleProvider
+	protected AbstractModule moduleProvider() {
+		return new AbstractModule() {
+
+			@Override
+			protected void configure() {
+				bind(ApplicationConfigurationService.class).toInstance(configurationService);
+				bind(I18NTranslator.class).to(AnnotationI18NTranslator.class);
+			}
+
+		};
+	}
+}
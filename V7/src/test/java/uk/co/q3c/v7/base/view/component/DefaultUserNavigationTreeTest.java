@@ -39,6 +39,7 @@ import uk.co.q3c.v7.base.shiro.LoginStatusHandler;
 import uk.co.q3c.v7.base.shiro.PageAccessControl;
 import uk.co.q3c.v7.base.shiro.PageAccessController;
 import uk.co.q3c.v7.base.shiro.PagePermission;
+import uk.co.q3c.v7.base.shiro.SecurityAuditLog;
 import uk.co.q3c.v7.base.shiro.SubjectProvider;
 import uk.co.q3c.v7.base.ui.BasicUI;
 import uk.co.q3c.v7.base.ui.ScopedUI;
@@ -60,6 +61,8 @@ import com.vaadin.util.CurrentInstance;
 @GuiceContext({ I18NModule.class, UIScopeModule.class })
 public class DefaultUserNavigationTreeTest extends TestWithSitemap {
 
+	private static final SecurityAuditLog auditLog = mock(SecurityAuditLog.class);
+
 	@Inject
 	CurrentLocale currentLocale;
 
@@ -416,6 +419,8 @@ public class DefaultUserNavigationTreeTest extends TestWithSitemap {
 			protected void configure() {
 
 				bind(URIFragmentHandler.class).to(StrictURIFragmentHandler.class);
+				// the same instance each time, as this module is configured twice
+				bind(SecurityAuditLog.class).toInstance(auditLog);
 			}
 
 		};
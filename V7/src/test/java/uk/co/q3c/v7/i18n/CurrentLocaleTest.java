@@ -21,15 +21,21 @@ import java.util.Locale;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 
+import uk.co.q3c.v7.base.guice.uiscope.UIKey;
+import uk.co.q3c.v7.base.ui.ScopedUI;
+
 import com.google.inject.AbstractModule;
 import com.mycila.testing.junit.MycilaJunitRunner;
 import com.mycila.testing.plugin.guice.GuiceContext;
 import com.mycila.testing.plugin.guice.ModuleProvider;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
 
 @RunWith(MycilaJunitRunner.class)
 @GuiceContext({})
@@ -50,6 +56,12 @@ public class CurrentLocaleTest implements I18NListener {
 	@Mock
 	Annotation annotation;
 
+	@Mock
+	UI ui1;
+
+	@Mock
+	UI ui2;
+
 	@Before
 	public void setup() {
 		listenerFired = false;
@@ -57,6 +69,15 @@ public class CurrentLocaleTest implements I18NListener {
 		currentLocale.addListener(this);
 	}
 
+	@Mock
+	ScopedUI scopedUI;
+
+	@After
+	public void teardown() {
+		UI.setCurrent(null);
+		CurrentInstance.set(UIKey.class, null);
+	}
+
 	@Test
 	public void defaultLocale() {
 
@@ -98,6 +119,85 @@ public class CurrentLocaleTest implements I18NListener {
 
 	}
 
+	@Test
+	public void localePerUI() {
+
+		// given
+		final boolean[] ui2Fired = new boolean[1];
+		I18NListener ui2Listener = new I18NListener() {
+
+			@Override
+			public void localeChange(I18NTranslator translator) {
+				ui2Fired[0] = true;
+			}
+		};
+		UI.setCurrent(ui1);
+		currentLocale.addListener(this);
+		UI.setCurrent(ui2);
+		currentLocale.addListener(ui2Listener);
+		// when
+		UI.setCurrent(ui1);
+		currentLocale.setLocale(Locale.GERMANY);
+		// then only ui1 has changed
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.GERMANY);
+		assertThat(listenerFired).isTrue();
+		assertThat(translator.getLocale()).isEqualTo(Locale.GERMANY);
+		assertThat(ui2Fired[0]).isFalse();
+		UI.setCurrent(ui2);
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.UK);
+		UI.setCurrent(null);
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.UK);
+
+	}
+
+	@Test
+	public void listenerAddedDuringConstruction() {
+
+		// given the UI is being constructed, so it is not yet current
+		UIKey uiKey = new UIKey(5);
+		CurrentInstance.set(UIKey.class, uiKey);
+		currentLocale.removeListener(this);
+		currentLocale.addListener(this);
+		CurrentInstance.set(UIKey.class, null);
+		when(scopedUI.getInstanceKey()).thenReturn(uiKey);
+		UI.setCurrent(scopedUI);
+		// when
+		currentLocale.setLocale(Locale.GERMANY);
+		// then
+		assertThat(listenerFired).isTrue();
+		UI.setCurrent(null);
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.UK);
+
+	}
+
+	@Test
+	public void nullLocale() {
+
+		// given
+		UI.setCurrent(ui1);
+		currentLocale.setLocale(Locale.GERMANY);
+		// when
+		currentLocale.setLocale(null);
+		// then
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.UK);
+		UI.setCurrent(null);
+		currentLocale.setLocale(null);
+		assertThat(currentLocale.getLocale()).isEqualTo(Locale.UK);
+
+	}
+
+	@Test
+	public void removeListener() {
+
+		// given
+		currentLocale.removeListener(this);
+		// when
+		currentLocale.setLocale(Locale.ENGLISH);
+		// then
+		assertThat(listenerFired).isFalse();
+
+	}
+
 	@Test
 	public void registerAnnotation() {
 
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.mycila.testing.junit.MycilaJunitRunner;
+import com.mycila.testing.plugin.guice.GuiceContext;
+import com.mycila.testing.plugin.guice.ModuleProvider;
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Panel;
+import com.vaadin.ui.TabSheet;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+@RunWith(MycilaJunitRunner.class)
+@GuiceContext({})
+public class DeferredI18NTranslatorTest {
+
+	static class CountingPanel extends Panel implements I18NListener {
+		int translations;
+
+		@Override
+		public void localeChange(I18NTranslator translator) {
+			translations++;
+		}
+	}
+
+	static class View implements I18NListener {
+		CountingPanel shown = new CountingPanel();
+		CountingPanel hidden = new CountingPanel();
+		CountingPanel inTab = new CountingPanel();
+		CountingPanel detached = new CountingPanel();
+
+		@Override
+		public void localeChange(I18NTranslator translator) {
+			translator.translate(this);
+		}
+	}
+
+	static int connectorId = 0;
+
+	@Inject
+	Provider<I18NTranslator> translatorPro;
+
+	@Inject
+	DeferredTranslations deferredTranslations;
+
+	@Mock
+	VaadinSession session;
+
+	View view;
+	VerticalLayout layout;
+	TabSheet tabSheet;
+
+	@Before
+	public void setup() {
+		when(session.hasLock()).thenReturn(true);
+		when(session.getLocale()).thenReturn(Locale.UK);
+		when(session.createConnectorId(Matchers.any(ClientConnector.class))).thenAnswer(new Answer<String>() {
+
+			@Override
+			public String answer(InvocationOnMock invocation) throws Throwable {
+				return Integer.toString(++connectorId);
+			}
+		});
+		UI ui = newUI();
+		view = new View();
+		view.hidden.setVisible(false);
+		tabSheet = new TabSheet();
+		tabSheet.addTab(new Label("first"));
+		tabSheet.addTab(view.inTab);
+		layout = new VerticalLayout(view.shown, view.hidden, tabSheet);
+		ui.setContent(layout);
+	}
+
+	private UI newUI() {
+		UI ui = new UI() {
+
+			@Override
+			protected void init(VaadinRequest request) {
+			}
+		};
+		ui.setSession(session);
+		return ui;
+	}
+
+	@Test
+	public void onlyDisplayedTranslated() {
+
+		// given
+		I18NTranslator translator = translatorPro.get();
+		// when
+		view.localeChange(translator);
+		// then
+		assertThat(translator).isInstanceOf(DeferredI18NTranslator.class);
+		assertThat(view.shown.translations).isEqualTo(1);
+		assertThat(view.hidden.translations).isEqualTo(0);
+		assertThat(view.inTab.translations).isEqualTo(0);
+		assertThat(view.detached.translations).isEqualTo(0);
+		assertThat(deferredTranslations.isStale(view.shown)).isFalse();
+		assertThat(deferredTranslations.isStale(view.hidden)).isTrue();
+		assertThat(deferredTranslations.isStale(view.inTab)).isTrue();
+		assertThat(deferredTranslations.isStale(view.detached)).isTrue();
+
+	}
+
+	@Test
+	public void translatedWhenDisplayed() {
+
+		// given
+		view.localeChange(translatorPro.get());
+		view.localeChange(translatorPro.get());
+		// when
+		tabSheet.setSelectedTab(view.inTab);
+		layout.addComponent(view.detached);
+		view.hidden.setVisible(true);
+		deferredTranslations.refresh(layout);
+		// then each is translated once only
+		assertThat(view.shown.translations).isEqualTo(2);
+		assertThat(view.inTab.translations).isEqualTo(1);
+		assertThat(view.detached.translations).isEqualTo(1);
+		assertThat(view.hidden.translations).isEqualTo(1);
+		assertThat(deferredTranslations.isStale(view.inTab)).isFalse();
+		assertThat(deferredTranslations.isStale(view.detached)).isFalse();
+		assertThat(deferredTranslations.isStale(view.hidden)).isFalse();
+
+	}
+
+	@Test
+	public void notTranslatedAgainWhenHiddenAgain() {
+
+		// given
+		view.localeChange(translatorPro.get());
+		tabSheet.setSelectedTab(view.inTab);
+		// when
+		tabSheet.setSelectedTab(0);
+		tabSheet.setSelectedTab(view.inTab);
+		// then
+		assertThat(view.inTab.translations).isEqualTo(1);
+
+	}
+
+	@Test
+	public void refreshOnlyWithin() {
+
+		// given a stale component in another UI
+		CountingPanel other = new CountingPanel();
+		other.setVisible(false);
+		newUI().setContent(new VerticalLayout(other));
+		deferredTranslations.defer(other);
+		other.setVisible(true);
+		view.localeChange(translatorPro.get());
+		view.hidden.setVisible(true);
+		// when
+		deferredTranslations.refresh(layout);
+		// then
+		assertThat(view.hidden.translations).isEqualTo(1);
+		assertThat(other.translations).isEqualTo(0);
+		assertThat(deferredTranslations.isStale(other)).isTrue();
+
+	}
+
+	@Test
+	public void discardedComponentNotHeld() throws InterruptedException {
+
+		// given a stale component which is never displayed
+		view.localeChange(translatorPro.get());
+		WeakReference<CountingPanel> detached = new WeakReference<>(view.detached);
+		// when
+		view = null;
+		for (int i = 0; (i < 50) && (detached.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		// then
+		assertThat(detached.get()).isNull();
+
+	}
+
+	@ModuleProvider
+	protected AbstractModule moduleProvider() {
+		return new AbstractModule() {
+
+			@Override
+			protected void configure() {
+				bind(I18NTranslator.class).to(DeferredI18NTranslator.class);
+			}
+
+		};
+	}
+}
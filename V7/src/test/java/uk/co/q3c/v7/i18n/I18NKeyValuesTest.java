@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Locale;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.co.q3c.v7.base.navigate.StandardPageKey;
+
+public class I18NKeyValuesTest {
+
+	Locale germanSwitzerland = new Locale("de", "CH");
+
+	@Before
+	public void setup() {
+		I18NKeyValues.clear();
+	}
+
+	/**
+	 * Every key has the same value as its bundle gives, including those inherited from parent bundles
+	 */
+	@Test
+	public void sameAsBundle() {
+
+		// given
+		Locale[] locales = { Locale.UK, Locale.GERMAN, germanSwitzerland };
+		// then
+		for (Locale locale : locales) {
+			for (LabelKey key : LabelKey.values()) {
+				assertThat(I18NKeyValues.valueOf(key, locale)).isEqualTo(key.getBundle(locale).getValue(key));
+			}
+			for (DescriptionKey key : DescriptionKey.values()) {
+				assertThat(I18NKeyValues.valueOf(key, locale)).isEqualTo(key.getBundle(locale).getValue(key));
+			}
+			for (MessageKey key : MessageKey.values()) {
+				assertThat(I18NKeyValues.valueOf(key, locale)).isEqualTo(key.getBundle(locale).getValue(key));
+			}
+			for (TestLabelKey key : TestLabelKey.values()) {
+				assertThat(I18NKeyValues.valueOf(key, locale)).isEqualTo(key.getBundle(locale).getValue(key));
+			}
+		}
+
+	}
+
+	@Test
+	public void fallback() {
+
+		// given
+		// when
+		// then inherited from the parent bundle
+		assertThat(I18NKeyValues.valueOf(LabelKey.Cancel, germanSwitzerland)).isEqualTo("Stornieren");
+		// not in any bundle, Translate uses the key name
+		assertThat(I18NKeyValues.valueOf(LabelKey.Ok, germanSwitzerland)).isNull();
+		// no value at all, left to the key to provide its own default
+		assertThat(I18NKeyValues.valueOf(StandardPageKey.System_Account, Locale.UK)).isNull();
+		assertThat(StandardPageKey.System_Account.getValue(Locale.UK)).isEqualTo("System Account");
+
+	}
+
+	@Test
+	public void tablePerLocale() {
+
+		// given
+		assertThat(LabelKey.Cancel.getValue(Locale.UK)).isNull();
+		// when
+		String german = LabelKey.Cancel.getValue(Locale.GERMAN);
+		// then
+		assertThat(german).isEqualTo("Stornieren");
+		assertThat(LabelKey.Cancel.getValue(Locale.UK)).isNull();
+
+	}
+
+	@Test
+	public void localesBounded() {
+
+		// given
+		int requested = I18NKeyValues.MAX_LOCALES + 10;
+		// when
+		for (int i = 0; i < requested; i++) {
+			Locale locale = new Locale("de", "CH", "v" + i);
+			// then the values are the same whether or not the Locale is held
+			assertThat(I18NKeyValues.valueOf(LabelKey.Cancel, locale)).isEqualTo("Stornieren");
+			assertThat(I18NKeyValues.valueOf(LabelKey.Ok, locale)).isNull();
+		}
+		// then
+		assertThat(I18NKeyValues.cachedLocales()).isEqualTo(I18NKeyValues.MAX_LOCALES);
+
+	}
+
+}
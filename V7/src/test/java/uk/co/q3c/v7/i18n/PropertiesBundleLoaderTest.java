@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertiesBundleLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	PropertiesBundleLoader<LabelKey> loader;
+
+	@Before
+	public void setup() {
+		loader = new PropertiesBundleLoader<>(LabelKey.class, folder.getRoot(), "Labels");
+	}
+
+	@After
+	public void teardown() {
+		loader.close();
+		I18NKeyValues.publish(LabelKey.class, Collections.<Locale, String[]> emptyMap());
+	}
+
+	@Test
+	public void load() throws IOException {
+
+		// given
+		write("Labels.properties", "Yes=Yes\nNo=No");
+		write("Labels_de.properties", "Cancel=Abbrechen\nSmall=Gr\u00f6\u00dfe\nBig=Gro\u00df");
+		write("Labels_fr.txt", "Cancel=Annuler");
+		// when
+		boolean loaded = loader.load();
+		// then
+		assertThat(loaded).isTrue();
+		assertThat(LabelKey.Cancel.getValue(Locale.GERMAN)).isEqualTo("Abbrechen");
+		assertThat(LabelKey.Small.getValue(Locale.GERMANY)).isEqualTo("Gr\u00f6\u00dfe");
+		assertThat(LabelKey.Yes.getValue(Locale.GERMAN)).isEqualTo("Yes");
+		assertThat(LabelKey.Cancel.getValue(Locale.FRENCH)).isNull();
+		// compiled bundle used where the files have no value
+		assertThat(LabelKey.First_Name.getValue(Locale.GERMAN)).isEqualTo("Vorname");
+		assertThat(loader.getProblems()).hasSize(1);
+		assertThat(loader.getProblems().get(0)).contains("Big");
+
+	}
+
+	@Test
+	public void localeOf() {
+
+		// given
+
+		// when
+
+		// then
+		assertThat(loader.localeOf("Labels.properties")).isEqualTo(Locale.ROOT);
+		assertThat(loader.localeOf("Labels_de.properties")).isEqualTo(Locale.GERMAN);
+		assertThat(loader.localeOf("Labels_de_CH.properties")).isEqualTo(new Locale("de", "CH"));
+		assertThat(loader.localeOf("LabelsExtra.properties")).isNull();
+		assertThat(loader.localeOf("Labels_de.properties.bak")).isNull();
+
+	}
+
+	@Test
+	public void reloadedOnChange() throws Exception {
+
+		// given
+		write("Labels_de.properties", "Cancel=Abbrechen");
+		loader.watch();
+		assertThat(LabelKey.Cancel.getValue(Locale.GERMAN)).isEqualTo("Abbrechen");
+		// when
+		write("Labels_de.properties", "Cancel=Absagen");
+		// then
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!"Absagen".equals(LabelKey.Cancel.getValue(Locale.GERMAN)) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(20);
+		}
+		assertThat(LabelKey.Cancel.getValue(Locale.GERMAN)).isEqualTo("Absagen");
+
+	}
+
+	@Test
+	public void removedValuesRevertToBundle() {
+
+		// given
+		write("Labels_de.properties", "Cancel=Abbrechen");
+		loader.load();
+		// when
+		new File(folder.getRoot(), "Labels_de.properties").delete();
+		loader.load();
+		// then
+		assertThat(LabelKey.Cancel.getValue(Locale.GERMAN)).isEqualTo("Stornieren");
+
+	}
+
+	@Test
+	public void mergedByLevel() {
+
+		// given
+		write("Labels.properties", "Cancel=Dismiss\nFirst_Name=Given name");
+		write("Labels_de_CH.properties", "First_Name=Vorname CH");
+		// when
+		loader.load();
+		// then an external root value is used where there is no more specific value
+		assertThat(LabelKey.Cancel.getValue(Locale.UK)).isEqualTo("Dismiss");
+		// but does not hide the value compiled into Labels_de
+		assertThat(LabelKey.Cancel.getValue(Locale.GERMAN)).isEqualTo("Stornieren");
+		assertThat(LabelKey.First_Name.getValue(Locale.GERMAN)).isEqualTo("Vorname");
+		// a more specific external value hides a less specific compiled one
+		assertThat(LabelKey.First_Name.getValue(new Locale("de", "CH"))).isEqualTo("Vorname CH");
+
+	}
+
+	private void write(String name, String content) {
+		try {
+			Files.write(new File(folder.getRoot(), name).toPath(), content.getBytes(Charset.forName("UTF-8")));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
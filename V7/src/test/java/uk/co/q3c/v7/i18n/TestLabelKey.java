@@ -27,7 +27,7 @@ public enum TestLabelKey implements I18NKey<TestLabels> {
 
 	@Override
 	public String getValue(Locale locale) {
-		return getBundle(locale).getValue(this);
+		return I18NKeyValues.valueOf(this, locale);
 	}
 
 	@Override
@@ -50,6 +50,22 @@ public class TranslateTest {
 		assertThat(translate.from(LabelKey.Ok, germanSwitzerland)).isEqualTo("Ok");
 	}
 
+	@Test
+	public void withArguments() {
+
+		// given
+		// when
+		String first = translate.from(MessageKey.invalidURI, Locale.UK, "private/wiggly");
+		String second = translate.from(MessageKey.invalidURI, Locale.UK, "public/home");
+		// then
+		assertThat(first).isEqualTo("private/wiggly is not a valid page");
+		assertThat(second).isEqualTo("public/home is not a valid page");
+		// expanded as java.text.MessageFormat does, extra arguments ignored and numbers formatted
+		assertThat(translate.from(MessageKey.invalidURI, Locale.UK, "a", "b")).isEqualTo("a is not a valid page");
+		assertThat(translate.from(MessageKey.invalidURI, Locale.UK, 12345)).isEqualTo(
+				java.text.MessageFormat.format("{0} is not a valid page", 12345));
+	}
+
 	@ModuleProvider
 	protected AbstractModule moduleProvider() {
 		return new AbstractModule() {
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2013 David Sowerby
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package uk.co.q3c.v7.i18n;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TranslationPlanTest {
+
+	@Test
+	public void stepsAndReuse() {
+
+		// given
+		TranslationPlan plan = TranslationPlan.forClass(I18NTestClass.class);
+		// when
+		List<String> names = new ArrayList<>();
+		for (TranslationPlan.Step step : plan.getSteps()) {
+			names.add(step.getName());
+		}
+		// then unannotated components and other fields are left out
+		assertThat(names).containsExactly("buttonWithAnnotation", "label", "table", "demoLabel", "ccs", "cnc", "ccsn",
+				"cncn");
+		assertThat(TranslationPlan.forClass(I18NTestClass.class)).isSameAs(plan);
+
+	}
+
+	@Test
+	public void stepKinds() {
+
+		// given
+		I18NTestClass target = new I18NTestClass();
+		TranslationPlan.Step label = TranslationPlan.forClass(I18NTestClass.class).getSteps().get(1);
+		TranslationPlan.Step table = TranslationPlan.forClass(I18NTestClass.class).getSteps().get(2);
+		// then
+		assertThat(label.isComponent()).isTrue();
+		assertThat(label.isProperty()).isTrue();
+		assertThat(label.isTable()).isFalse();
+		assertThat(label.getAnnotations()).hasSize(1);
+		assertThat(label.get(target)).isSameAs(target.getLabel());
+		assertThat(table.isTable()).isTrue();
+		assertThat(table.get(target)).isSameAs(target.getTable());
+
+	}
+
+}
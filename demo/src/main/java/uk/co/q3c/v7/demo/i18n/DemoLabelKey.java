@@ -16,6 +16,7 @@ import java.util.Locale;
 import java.util.ResourceBundle;
 
 import uk.co.q3c.v7.i18n.I18NKey;
+import uk.co.q3c.v7.i18n.I18NKeyValues;
 
 public enum DemoLabelKey implements I18NKey<DemoLabels> {
 
@@ -30,7 +31,7 @@ public enum DemoLabelKey implements I18NKey<DemoLabels> {
 
 	@Override
 	public String getValue(Locale locale) {
-		return getBundle(locale).getValue(this);
+		return I18NKeyValues.valueOf(this, locale);
 	}
 
 	@Override